@@ -61,6 +61,18 @@ public class Basket extends ArrayList<Product> implements Serializable
     return super.add( pr );     // Call add in ArrayList
   }
 
+  /**
+   * Returns the total price of the products in the basket
+   * @return total in pence, see Money
+   */
+  public long getTotalMinor()
+  {
+    long total = 0;
+    for ( Product pr: this )
+      total += pr.getTotalMinor();
+    return total;
+  }
+
   /**
    * Returns a description of the products in the basket suitable for printing.
    * @return a string description of the basket products
@@ -71,7 +83,7 @@ public class Basket extends ArrayList<Product> implements Serializable
     StringBuilder sb = new StringBuilder(256);
     Formatter     fr = new Formatter(sb, uk);
     String csign = (Currency.getInstance( uk )).getSymbol();
-    double total = 0.00;
+    long   total = 0;                        // Pence
     if ( theOrderNum != 0 )
       fr.format( "Order number: %03d\n", theOrderNum );
       
@@ -83,13 +95,13 @@ public class Basket extends ArrayList<Product> implements Serializable
         fr.format("%-7s",       pr.getProductNum() );
         fr.format("%-14.14s ",  pr.getDescription() );
         fr.format("(%3d) ",     number );
-        fr.format("%s%7.2f",    csign, pr.getPrice() * number );
+        fr.format("%s%7s",      csign, Money.format( pr.getTotalMinor() ) );
         fr.format("\n");
-        total += pr.getPrice() * number;
+        total += pr.getTotalMinor();
       }
       fr.format("----------------------------\n");
       fr.format("Total                       ");
-      fr.format("%s%7.2f\n",    csign, total );
+      fr.format("%s%7s\n",      csign, Money.format( total ) );
       fr.close();
     }
     return sb.toString();
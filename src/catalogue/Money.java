@@ -0,0 +1,98 @@
+package catalogue;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts of money held as a whole number of minor units (pence)
+ *  in a long, so sums of prices are exact and need no objects.
+ * These are the operations on such amounts.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public final class Money
+{
+  public static final int SCALE = 2;                 // Decimal places
+  public static final int MINOR = 100;               // Pence in a pound
+
+  private Money() {}
+
+  /**
+   * Amount in pence of a price in pounds, rounded to the nearest penny
+   * @param pounds Price as a double e.g. 4.99
+   * @return amount in pence e.g. 499
+   */
+  public static long of( double pounds )
+  {
+    return Math.round( pounds * MINOR );
+  }
+
+  /**
+   * Amount in pence of an exact decimal number of pounds
+   * @param pounds Price e.g. from a Decimal column
+   * @return amount in pence
+   * @throws ArithmeticException if not a whole number of pence
+   */
+  public static long of( BigDecimal pounds )
+  {
+    return pounds.movePointRight( SCALE ).longValueExact();
+  }
+
+  /**
+   * Amount in pence of a price typed by a user
+   * @param text Pounds e.g. "4.99", "5" or "0.5"
+   * @return amount in pence
+   * @throws NumberFormatException if not an amount of money
+   */
+  public static long parse( String text )
+  {
+    try
+    {
+      return of( new BigDecimal( text.trim() ) );
+    } catch ( ArithmeticException e )
+    {
+      throw new NumberFormatException( "Not a whole number of pence: " + text );
+    }
+  }
+
+  /**
+   * @param pence amount in pence
+   * @return amount in pounds, only for display or old interfaces
+   */
+  public static double toDouble( long pence )
+  {
+    return (double) pence / MINOR;
+  }
+
+  /**
+   * @param pence amount in pence
+   * @return amount in pounds as a Decimal, for the database
+   */
+  public static BigDecimal toDecimal( long pence )
+  {
+    return BigDecimal.valueOf( pence, SCALE );
+  }
+
+  /**
+   * Price of a number of items
+   * @param pence price of one item
+   * @param number number of items
+   * @return total in pence
+   * @throws ArithmeticException if the total overflows
+   */
+  public static long times( long pence, int number )
+  {
+    return Math.multiplyExact( pence, (long) number );
+  }
+
+  /**
+   * @param pence amount in pence
+   * @return amount in pounds as text e.g. "4.99" or "-0.05"
+   */
+  public static String format( long pence )
+  {
+    long abs = Math.abs( pence );
+    return String.format( "%s%d.%02d", pence < 0 ? "-" : "",
+                          abs / MINOR, abs % MINOR );
+  }
+}
@@ -0,0 +1,80 @@
+package catalogue;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test of the Money class
+ */
+public class MoneyTest
+{
+  @Test
+  public void testParse()
+  {
+    assertEquals( "pounds and pence", 499, Money.parse( "4.99" ) );
+    assertEquals( "whole pounds",     500, Money.parse( "5" ) );
+    assertEquals( "one place",         50, Money.parse( " 0.5 " ) );
+    assertEquals( "trailing zeros",   120, Money.parse( "1.2000" ) );
+    assertEquals( "negative",          -5, Money.parse( "-0.05" ) );
+    for ( String bad : new String[] { "4.999", "", "\u00a34.99", "4,99", "four" } )
+      try
+      {
+        Money.parse( bad );
+        fail( "parsed " + bad );
+      } catch ( NumberFormatException e )
+      {
+        // Expected
+      }
+  }
+
+  @Test
+  public void testRounding()
+  {
+    assertEquals( "nearest penny", 1299, Money.of( 12.99 ) );
+    assertEquals( "not exact as a double", 29, Money.of( 0.29 ) );
+    assertEquals( "half rounded up", 2, Money.of( 0.015 ) );
+    assertEquals( "sum of doubles", 30, Money.of( 0.1 + 0.2 ) );
+    assertEquals( "exact decimal", 1005, Money.of( new BigDecimal( "10.05" ) ) );
+    try
+    {
+      Money.of( new BigDecimal( "10.005" ) );
+      fail( "part of a penny" );
+    } catch ( ArithmeticException e )
+    {
+      // Expected
+    }
+    assertEquals( "times", 2997, Money.times( 999, 3 ) );
+    try
+    {
+      Money.times( Long.MAX_VALUE / 2, 3 );
+      fail( "overflow" );
+    } catch ( ArithmeticException e )
+    {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testToDecimal()
+  {
+    assertEquals( "scale", new BigDecimal( "4.99" ), Money.toDecimal( 499 ) );
+    assertEquals( "whole pounds", new BigDecimal( "5.00" ), Money.toDecimal( 500 ) );
+    assertEquals( "negative", new BigDecimal( "-0.05" ), Money.toDecimal( -5 ) );
+    assertEquals( "round trip", 123456789,
+                  Money.of( Money.toDecimal( 123456789 ) ) );
+    assertEquals( "double", 4.99, Money.toDouble( 499 ), 0.0 );
+  }
+
+  @Test
+  public void testFormat()
+  {
+    assertEquals( "4.99",  Money.format( 499 ) );
+    assertEquals( "0.05",  Money.format( 5 ) );
+    assertEquals( "-0.05", Money.format( -5 ) );
+    assertEquals( "12.00", Money.format( 1200 ) );
+  }
+}
@@ -6,16 +6,17 @@ import java.io.Serializable;
  * Used to hold the following information about
  * a product: Product number, Description, Price and
  * Stock level.
+ * The price is held in pence, see Money.
  * @author  Mike Smith University of Brighton
- * @version 2.0
+ * @version 2.1
  */
 
 public class Product implements Serializable
 {
-  private static final long serialVersionUID = 20092506;
+  private static final long serialVersionUID = 20092507;
   private String theProductNum;       // Product number
   private String theDescription;      // Description of product
-  private double thePrice;            // Price of product
+  private long   thePrice;            // Price of product in pence
   private int    theQuantity;         // Quantity involved
 
   /**
@@ -30,14 +31,39 @@ public class Product implements Serializable
   {
     theProductNum  = aProductNum;     // Product number
     theDescription = aDescription;    // Description of product
-    thePrice       = aPrice;          // Price of product
+    thePrice       = Money.of( aPrice ); // Price of product
     theQuantity    = aQuantity;       // Quantity involved
   }
+
+  /**
+   * Construct a product details with the price in pence
+   * @param aProductNum Product number
+   * @param aDescription Description of product
+   * @param aPrice The price of the product in pence
+   * @param aQuantity The Quantity of the product involved
+   * @return the product
+   */
+  public static Product ofMinor( String aProductNum, String aDescription,
+                                 long aPrice, int aQuantity )
+  {
+    Product pr = new Product( aProductNum, aDescription, 0, aQuantity );
+    pr.thePrice = aPrice;
+    return pr;
+  }
   
   public String getProductNum()  { return theProductNum; }
   public String getDescription() { return theDescription; }
-  public double getPrice()       { return thePrice; }
+  public double getPrice()       { return Money.toDouble( thePrice ); }
+  public long   getPriceMinor()  { return thePrice; }
   public int    getQuantity()    { return theQuantity; }
+
+  /**
+   * @return price of the quantity involved, in pence
+   */
+  public long getTotalMinor()
+  {
+    return Money.times( thePrice, theQuantity );
+  }
   
   public void setProductNum( String aProductNum )
   { 
@@ -50,6 +76,11 @@ public class Product implements Serializable
   }
   
   public void setPrice( double aPrice )
+  { 
+    thePrice = Money.of( aPrice );
+  }
+
+  public void setPriceMinor( long aPrice )
   { 
     thePrice = aPrice;
   }
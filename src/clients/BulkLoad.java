@@ -0,0 +1,235 @@
+package clients;
+
+import catalogue.Money;
+import dbAccess.ConnectionPool;
+import dbAccess.DBAccess;
+import dbAccess.DBAccessFactory;
+import dbAccess.MappedStockRW;
+import middle.LocalMiddleFactory;
+import middle.StockReader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Random;
+
+/**
+ * Replace the catalogue with a large one, for load testing.
+ * The products are either generated or read from a file, and are
+ *  inserted in batches with a commit every COMMIT_EVERY products.
+ * Usage:
+ *   BulkLoad n             generate n products
+ *   BulkLoad -import file  products from file, one per line
+ *                          productNo,description,picture,price,stockLevel
+ *   add -bench m           to then time m random lookups
+ *   BulkLoad -export       write the mapped stock file (catshop.mapped)
+ *                          back to the database tables
+ *   BulkLoad -reimport     refill the mapped stock file from the tables
+ * Run -export and -reimport while the middle tier is stopped.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class BulkLoad
+{
+  private static final int BATCH        = 1000;    // Rows per batch
+  private static final int COMMIT_EVERY = 20000;   // Rows per commit
+  private static final int PICTURES     = 7;       // images/picNNNN.jpg
+
+  private static final String[] WORDS = {
+    "LED", "HD", "TV", "DAB", "Radio", "Toaster", "Watch", "Digital",
+    "Camera", "MP3", "player", "USB", "drive", "Kettle", "Laptop",
+    "Phone", "Speaker", "Cable", "Charger", "Lamp", "Fan", "Heater" };
+
+  private static final String SQL_INSERT_PRODUCT =
+    "insert into ProductTable values ( ?, ?, ?, ? )";
+  private static final String SQL_INSERT_STOCK =
+    "insert into StockTable values ( ?, ? )";
+
+  private static PreparedStatement theProducts = null;
+  private static PreparedStatement theStock    = null;
+  private static Connection        theCon      = null;
+  private static int               theRows     = 0;
+  private static long              theStart    = 0;
+
+  public static void main( String[] args ) throws Exception
+  {
+    int    n       = 0;
+    String file    = null;
+    int    lookups = 0;
+    String mapped  = null;
+    for ( int i = 0; i < args.length; i++ )
+    {
+      switch ( args[i] )
+      {
+        case "-import"   : file    = args[++i];                   break;
+        case "-bench"    : lookups = Integer.parseInt( args[++i] ); break;
+        case "-export"   :
+        case "-reimport" : mapped  = args[i];                     break;
+        default          : n       = Integer.parseInt( args[i] );   break;
+      }
+    }
+    if ( mapped != null )
+    {
+      mapped( mapped );
+      return;
+    }
+    if ( n <= 0 && file == null )
+    {
+      System.err.println( "Usage: BulkLoad n | -import file [-bench m]" +
+                          " | -export | -reimport" );
+      System.exit( -1 );
+    }
+
+    DBAccess dbDriver = (new DBAccessFactory()).getNewDBAccess();
+    dbDriver.loadDriver();
+    ConnectionPool pool = ConnectionPool.getPool( dbDriver ); // Migrates
+    theCon = pool.acquire();
+    try
+    {
+      theCon.setAutoCommit( false );
+      try ( Statement stmt = theCon.createStatement() )
+      {
+        stmt.executeUpdate( "delete from StockTable" );
+        stmt.executeUpdate( "delete from ProductTable" );
+      }
+      theCon.commit();
+      theProducts = theCon.prepareStatement( SQL_INSERT_PRODUCT );
+      theStock    = theCon.prepareStatement( SQL_INSERT_STOCK );
+      theStart    = System.nanoTime();
+      if ( file != null )
+        load( file );
+      else
+        generate( n );
+      flush();
+      theCon.commit();
+      report( "Loaded" );
+    } finally
+    {
+      try
+      {
+        if ( theProducts != null ) theProducts.close();  // Not prepared
+        if ( theStock    != null ) theStock.close();     //  if delete failed
+      } finally
+      {
+        pool.release( theCon );            // Rolls back if failed
+      }
+    }
+    if ( lookups > 0 )
+      bench( theRows, lookups );
+  }
+
+  /**
+   * Copy the mapped stock file to or from the database tables
+   * @param what -export or -reimport
+   */
+  private static void mapped( String what ) throws Exception
+  {
+    if ( new DBAccessFactory().getNewDBAccess().mappedFile() == null )
+    {
+      System.err.println( "BulkLoad: set catshop.mapped to the stock file" );
+      System.exit( -1 );
+    }
+    System.setProperty( "catshop.mapped.export", "0" );  // Only as asked
+    MappedStockRW stock = new MappedStockRW();
+    if ( what.equals( "-export" ) )
+      stock.exportDatabase();
+    else
+      stock.importDatabase();
+    System.out.printf( "%s done%n", what.substring( 1 ) );
+  }
+
+  /**
+   * Generate n products numbered from 1, with the product
+   *  number at least 4 digits wide
+   */
+  private static void generate( int n ) throws SQLException
+  {
+    Random rnd   = new Random( 42 );
+    String fmt   = "%0" + Math.max( 4, String.valueOf( n ).length() ) + "d";
+    for ( int i = 1; i <= n; i++ )
+    {
+      String desc = WORDS[ rnd.nextInt( WORDS.length ) ] + " " +
+                    WORDS[ rnd.nextInt( WORDS.length ) ] + " " + i;
+      add( String.format( fmt, i ), desc,
+           String.format( "images/pic%04d.jpg", 1 + i % PICTURES ),
+           99 + rnd.nextInt( 50000 ),
+           rnd.nextInt( 200 ) );
+    }
+  }
+
+  /**
+   * Read products from a file
+   *  productNo,description,picture,price,stockLevel
+   */
+  private static void load( String file ) throws SQLException, IOException
+  {
+    try ( BufferedReader in = new BufferedReader( new FileReader( file ) ) )
+    {
+      String line;
+      while ( ( line = in.readLine() ) != null )
+      {
+        if ( line.trim().isEmpty() ) continue;
+        String[] f = line.split( "," );
+        add( f[0].trim(), f[1].trim(), f[2].trim(),
+             Money.parse( f[3] ),
+             Integer.parseInt( f[4].trim() ) );
+      }
+    }
+  }
+
+  private static void add( String pNum, String description, String picture,
+                           long price, int stockLevel )
+          throws SQLException
+  {
+    theProducts.setString( 1, pNum );
+    theProducts.setString( 2, description );
+    theProducts.setString( 3, picture );
+    theProducts.setBigDecimal( 4, Money.toDecimal( price ) );
+    theProducts.addBatch();
+    theStock.setString( 1, pNum );
+    theStock.setInt( 2, stockLevel );
+    theStock.addBatch();
+    theRows++;
+    if ( theRows % BATCH == 0 ) flush();
+    if ( theRows % COMMIT_EVERY == 0 )
+    {
+      theCon.commit();
+      report( "Loading" );
+    }
+  }
+
+  private static void flush() throws SQLException
+  {
+    theProducts.executeBatch();              // Before stock, which
+    theStock.executeBatch();                 //  refers to it
+  }
+
+  private static void report( String what )
+  {
+    double secs = ( System.nanoTime() - theStart ) / 1.0e9;
+    System.out.printf( "%s %d products in %.1fs (%.0f rows/s)%n",
+                       what, theRows, secs, 2 * theRows / secs );
+  }
+
+  /**
+   * Time random lookups through the middle tier,
+   *  so includes any cache or snapshot in use
+   */
+  private static void bench( int n, int lookups ) throws Exception
+  {
+    StockReader stock = new LocalMiddleFactory().makeStockReader();
+    String fmt   = "%0" + Math.max( 4, String.valueOf( n ).length() ) + "d";
+    Random rnd   = new Random( 7 );
+    int    found = 0;
+    long   start = System.nanoTime();
+    for ( int i = 0; i < lookups; i++ )
+      if ( stock.lookup( String.format( fmt, 1 + rnd.nextInt( n ) ) )
+                .isPresent() )
+        found++;
+    double secs = ( System.nanoTime() - start ) / 1.0e9;
+    System.out.printf( "Lookups %d (%d found) in %.1fs (%.0f/s)%n",
+                       lookups, found, secs, lookups / secs );
+  }
+}
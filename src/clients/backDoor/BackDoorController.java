@@ -40,6 +40,25 @@ public class BackDoorController
     model.doRStock(pn, quantity);
   }
 
+  /**
+   * Low stock interaction from view
+   * @param level The stock level products are below
+   */
+  public void doLowStock( String level )
+  {
+    model.doLowStock(level);
+  }
+
+  /**
+   * Price range interaction from view
+   * @param from Lowest price
+   * @param to   Highest price
+   */
+  public void doPriceRange( String from, String to )
+  {
+    model.doPriceRange(from, to);
+  }
+
   /**
    * Clear interaction from view
    */
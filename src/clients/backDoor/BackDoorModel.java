@@ -2,13 +2,21 @@ package clients.backDoor;
 
 import catalogue.Basket;
 import catalogue.BetterBasket;
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
 import middle.MiddleFactory;
 import middle.StockException;
 import middle.StockReadWriter;
 
+import javax.swing.*;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
 import java.util.Observable;
+import java.util.Optional;
 
 /**
  * Implements the Model of the back door client
@@ -18,9 +26,13 @@ import java.util.Observable;
 public class BackDoorModel extends Observable
 {
   private Basket      theBasket  = null;            // Bought items
+  private List<Product> theReport = null;           // Listed, else basket
   private String      pn = "";                      // Product being processed
 
   private StockReadWriter theStock     = null;
+  private String      theWatched = null;            // Product queried
+  private long        theWatch   = 0;               //  and its listener
+  private static final int REPORT = 50;             // Products listed
 
   /*
    * Construct the model of the back door client
@@ -49,6 +61,16 @@ public class BackDoorModel extends Observable
     return theBasket;
   }
 
+  /**
+   * Get the details to show, the products listed by the last
+   *  report, or else the basket of products restocked
+   * @return details suitable for printing
+   */
+  public String getDetails()
+  {
+    return theReport != null ? report( theReport ) : theBasket.getDetails();
+  }
+
   /**
    * Check The current stock level
    * @param productNum The product number
@@ -68,13 +90,15 @@ public class BackDoorModel extends Observable
     pn  = productNum.trim();                    // Product no.
     try
     {                 //  & quantity
-      if ( theStock.exists( pn ) )              // Stock Exists?
+      Optional<Product> found =                 // Stock Exists?
+        theStock.lookup( pn );                  //  & details
+      if ( found.isPresent() )                  //
       {                                         // T
-        Product pr = theStock.getDetails( pn ); //  Product
+        Product pr = found.get();               //  Product
         theAction =                             //   Display 
-          String.format( "%s : %7.2f (%2d) ",   //
+          String.format( "%s : %7s (%2d) ",     //
           pr.getDescription(),                  //    description
-          pr.getPrice(),                        //    price
+          Money.format( pr.getPriceMinor() ),   //    price
           pr.getQuantity() );                   //    quantity
       } else {                                  //  F
         theAction =                             //   Inform
@@ -84,9 +108,35 @@ public class BackDoorModel extends Observable
     {
       theAction = e.getMessage();
     }
+    watch( pn );
     setChanged(); notifyObservers(theAction);
   }
 
+  /**
+   * Listen for changes to the product queried, so that the
+   *  details shown are queried again when it changes
+   * @param pNum The product number
+   */
+  private void watch( String pNum )
+  {
+    if ( pNum.equals( theWatched ) ) return;
+    try
+    {
+      if ( theWatched != null )
+        theStock.removeStockListener( theWatch );
+      theWatched = null;
+      theWatch   = theStock.addStockListener(
+        e -> SwingUtilities.invokeLater( () -> {
+               if ( pNum.equals( pn ) ) doQuery( pNum );    // Still shown
+             } ),
+        Collections.singletonList( pNum ) );
+      theWatched = pNum;
+    } catch ( StockException e )
+    {
+      DEBUG.traceA( "BackDoorModel.watch\n%s", e.getMessage() );
+    }
+  }
+
   /**
    * Re stock 
    * @param productNum The product number of the item
@@ -96,6 +146,7 @@ public class BackDoorModel extends Observable
   {
     String theAction = "";
     theBasket = makeBasket();
+    theReport = null;
     pn  = productNum.trim();                    // Product no.
     String pn  = productNum.trim();             // Product no.
     int amount = 0;
@@ -132,6 +183,62 @@ public class BackDoorModel extends Observable
     setChanged(); notifyObservers(theAction);
   }
 
+  /**
+   * List the products with less stock than the level given,
+   *  lowest first
+   * @param level The stock level
+   */
+  public void doLowStock(String level )
+  {
+    String theAction = "";
+    theBasket = makeBasket();
+    theReport = null;
+    try
+    {
+      int below = Integer.parseInt( level.trim() );
+      List<Product> low = theStock.lowStock( below, REPORT );
+      theReport = low;                          // Show products
+      theAction = String.format( "%d with stock below %d",
+                                 low.size(), below );
+    } catch ( NumberFormatException e )
+    {
+      theAction = "Invalid stock level";
+    } catch( StockException e )
+    {
+      theAction = e.getMessage();
+    }
+    setChanged(); notifyObservers(theAction);
+  }
+
+  /**
+   * List the products with a price in the band given,
+   *  cheapest first
+   * @param from Lowest price e.g. 1.50
+   * @param to   Highest price
+   */
+  public void doPriceRange(String from, String to )
+  {
+    String theAction = "";
+    theBasket = makeBasket();
+    theReport = null;
+    try
+    {
+      long min = Money.parse( from );
+      long max = Money.parse( to );
+      List<Product> found = theStock.priceRange( min, max, REPORT );
+      theReport = found;                        // Show products
+      theAction = String.format( "%d priced %s to %s", found.size(),
+                                 Money.format( min ), Money.format( max ) );
+    } catch ( NumberFormatException e )
+    {
+      theAction = "Invalid price";
+    } catch( StockException e )
+    {
+      theAction = e.getMessage();
+    }
+    setChanged(); notifyObservers(theAction);
+  }
+
   /**
    * Clear the product()
    */
@@ -139,10 +246,40 @@ public class BackDoorModel extends Observable
   {
     String theAction = "";
     theBasket.clear();                        // Clear s. list
+    theReport = null;
     theAction = "Enter Product Number";       // Set display
     setChanged(); notifyObservers(theAction);
   }
   
+  /**
+   * The products of a report, each with its stock level and
+   *  price, there is no total as nothing is bought
+   * @param products Products listed
+   * @return details suitable for printing
+   */
+  private static String report( List<Product> products )
+  {
+    Locale uk = Locale.UK;
+    StringBuilder sb = new StringBuilder(256);
+    Formatter     fr = new Formatter(sb, uk);
+    String csign = (Currency.getInstance( uk )).getSymbol();
+    if ( products.size() > 0 )
+    {
+      fr.format("%-7s%-14.14s %5s %8s\n", "Number", "Description",
+                                           "Stock", "Price" );
+      for ( Product pr: products )
+      {
+        fr.format("%-7s",       pr.getProductNum() );
+        fr.format("%-14.14s ",  pr.getDescription() );
+        fr.format("%5d ",       pr.getQuantity() );
+        fr.format("%s%7s",      csign, Money.format( pr.getPriceMinor() ) );
+        fr.format("\n");
+      }
+    }
+    fr.close();
+    return sb.toString();
+  }
+
   /**
    * return an instance of a Basket
    * @return a new instance of a Basket
@@ -19,8 +19,10 @@ public class BackDoorView implements Observer
   private static final String RESTOCK  = "Add";
   private static final String CLEAR    = "Clear";
   private static final String QUERY    = "Query";
+  private static final String LOW      = "Low";
+  private static final String PRICE    = "Price";
  
-  private static final int H = 300;       // Height of window pixels
+  private static final int H = 360;       // Height of window pixels
   private static final int W = 400;       // Width  of window pixels
 
   private final JLabel      theAction  = new JLabel();
@@ -31,6 +33,8 @@ public class BackDoorView implements Observer
   private final JButton     theBtClear = new JButton( CLEAR );
   private final JButton     theBtRStock = new JButton( RESTOCK );
   private final JButton     theBtQuery = new JButton( QUERY );
+  private final JButton     theBtLow   = new JButton( LOW );
+  private final JButton     theBtPrice = new JButton( PRICE );
   
   private StockReadWriter theStock     = null;
   private BackDoorController cont= null;
@@ -75,6 +79,17 @@ public class BackDoorView implements Observer
       e -> cont.doClear() );
     cp.add( theBtClear );                           //  Add to canvas
 
+    theBtLow.setBounds( 16, 25+60*3, 80, 40 );      // Low stock button
+    theBtLow.addActionListener(                     // Call back code
+      e -> cont.doLowStock( theInputNo.getText() ) );
+    cp.add( theBtLow );                             //  Add to canvas
+
+    theBtPrice.setBounds( 16, 25+60*4, 80, 40 );    // Price range button
+    theBtPrice.addActionListener(                   // Call back code
+      e -> cont.doPriceRange( theInput.getText(),
+                              theInputNo.getText() ) );
+    cp.add( theBtPrice );                           //  Add to canvas
+
  
     theAction.setBounds( 110, 25 , 270, 20 );       // Message area
     theAction.setText( "" );                        // Blank
@@ -88,7 +103,7 @@ public class BackDoorView implements Observer
     theInputNo.setText("0");                        // 0
     cp.add( theInputNo );                           //  Add to canvas
 
-    theSP.setBounds( 110, 100, 270, 160 );          // Scrolling pane
+    theSP.setBounds( 110, 100, 270, 220 );          // Scrolling pane
     theOutput.setText( "" );                        //  Blank
     theOutput.setFont( f );                         //  Uses font  
     cp.add( theSP );                                //  Add to canvas
@@ -114,7 +129,7 @@ public class BackDoorView implements Observer
     String        message = (String) arg;
     theAction.setText( message );
     
-    theOutput.setText( model.getBasket().getDetails() );
+    theOutput.setText( model.getDetails() );
     theInput.requestFocus();
   }
 
@@ -2,6 +2,7 @@ package clients.cashier;
 
 import catalogue.Basket;
 import catalogue.BetterBasket;
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
 import middle.*;
@@ -15,6 +16,7 @@ import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Observable;
+import java.util.Optional;
 
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -35,6 +37,7 @@ public class CashierModel extends Observable
 	private Product     theProduct = null;            // Current product
 	private Product     Previous   = null;            // Previous bought product
 	private Basket      theBasket  = null;            // Bought items
+	private long        theReservation = 0;           // Stock held for product
 
 	private String      pn = "";                      // Product being processed
 
@@ -78,17 +81,23 @@ public class CashierModel extends Observable
 		theState  = State.process;                  // State process
 		pn  = productNum.trim();                    // Product no.
 		int    amount  = 1;                         //  & quantity
+		release();                                  // Previous not bought
 		try
 		{
-			if ( theStock.exists( pn ) )              // Stock Exists?
+			Optional<Product> found =                 // Stock Exists?
+					theStock.lookup( pn );                  //  & details
+			if ( found.isPresent() )                  // 
 			{                                         // T
-				Product pr = theStock.getDetails(pn);   //  Get details
+				Product pr = found.get();               //  Get details
 				if ( pr.getQuantity() >= amount )       //  In stock?
+					theReservation =                      //   Hold for
+							theStock.reserveStock( pn, amount ); //   customer
+				if ( theReservation != 0 )              //  Held?
 				{                                       //  T
 					theAction =                           //   Display 
-							String.format( "%s : %7.2f (%2d) ", //
+							String.format( "%s : %7s (%2d) ",   //
 									pr.getDescription(),              //    description
-									pr.getPrice(),                    //    price
+									Money.format( pr.getPriceMinor() ), //  price
 									pr.getQuantity() );               //    quantity     
 					theProduct = pr;                      //   Remember prod.
 					theProduct.setQuantity( amount );     //    & quantity
@@ -124,8 +133,12 @@ public class CashierModel extends Observable
 			{                                         //  with customer
 				theAction = "Check if OK with customer first";
 			} else {
-				boolean stockBought =                   // Buy
-						theStock.buyStock(                    //  however
+				boolean stockBought =                   // Buy reserved
+						theReservation != 0 &&                //  unless
+						theStock.buyReserved( theReservation ); //  expired
+				theReservation = 0;
+				if ( ! stockBought )                    // Buy
+					stockBought = theStock.buyStock(      //  however
 								theProduct.getProductNum(),         //  may fail              
 								theProduct.getQuantity() );         //
 				if ( stockBought )                      // Stock bought
@@ -161,7 +174,7 @@ public class CashierModel extends Observable
 					if(a.getQuantity() < 0) {
 						a.setQuantity(0);
 					}
-					theStock.addStock(a.getProductNum(), 1);
+					theStock.returnStock(a.getProductNum(), 1);
 					break;
 				}
 			}
@@ -181,7 +194,7 @@ public class CashierModel extends Observable
 				for(Product a: theBasket) { //Find product in basket
 					if(a.getProductNum().equals(delete.getText())) {
 						if(a.getQuantity() > 0) {
-							theStock.addStock(a.getProductNum(), 1);
+							theStock.returnStock(a.getProductNum(), 1);
 							a.setQuantity(a.getQuantity() - 1);
 						}						
 						if(a.getQuantity() < 0) {
@@ -260,6 +273,22 @@ public class CashierModel extends Observable
 		setChanged(); notifyObservers("Welcome");
 	}
 
+	/**
+	 * Cancel the stock reserved for a product checked but not bought
+	 */
+	private void release()
+	{
+		if ( theReservation == 0 ) return;
+		try
+		{
+			theStock.cancelReservation( theReservation );
+		} catch ( StockException e )
+		{
+			DEBUG.trace( "CashierModel.release\n%s", e.getMessage() ); // Expires
+		}
+		theReservation = 0;
+	}
+
 	/**
 	 * make a Basket when required
 	 */
@@ -313,10 +342,7 @@ public class CashierModel extends Observable
 	 * Cash System
 	 */
 	private boolean handleCash() {
-		double total = 0.0;
-		for(Product a: theBasket) {
-			total += a.getPrice() * a.getQuantity();
-		}
+		long total = theBasket.getTotalMinor(); // pence
 
 		JPanel panel = new JPanel();
 		panel.add(new JLabel("Enter cash amount:"));
@@ -325,12 +351,19 @@ public class CashierModel extends Observable
 
 		int reply = JOptionPane.showConfirmDialog(null, cash, "Process Cash", JOptionPane.YES_NO_OPTION);
 		if(reply == JOptionPane.YES_OPTION) {
-			if(total - Double.parseDouble(cash.getText()) > 0) {
-				JOptionPane.showMessageDialog(null, "Not Enough Cash! "+(total - Double.parseDouble(cash.getText()))+" Required");
+			long given;
+			try {
+				given = Money.parse(cash.getText());
+			} catch (NumberFormatException e) {
+				JOptionPane.showMessageDialog(null, "Not an amount of cash: "+cash.getText());
+				return false;
+			}
+			if(total - given > 0) {
+				JOptionPane.showMessageDialog(null, "Not Enough Cash! "+Money.format(total - given)+" Required");
 				//handleCash();
 				return false;
 			} 
-			JOptionPane.showMessageDialog(null, "Change Due: "+(total - Double.parseDouble(cash.getText())));
+			JOptionPane.showMessageDialog(null, "Change Due: "+Money.format(given - total));
 			return true;
 			
 		} else {
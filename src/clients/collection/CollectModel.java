@@ -1,5 +1,6 @@
 package clients.collection;
 
+import catalogue.Money;
 import debug.DEBUG;
 import middle.MiddleFactory;
 import middle.OrderProcessing;
@@ -155,7 +156,7 @@ public class CollectModel extends Observable
 	 */
 	private void checkRefund(int on) {
 		if(PickModel.Refunds.containsKey(on)) {
-			JOptionPane.showMessageDialog(null, "Issue CASH Refund to customer of: "+PickModel.Refunds.get(on), 
+			JOptionPane.showMessageDialog(null, "Issue CASH Refund to customer of: "+Money.format(PickModel.Refunds.get(on)), 
 					"Issue Refund", JOptionPane.PLAIN_MESSAGE);
 			PickModel.Refunds.remove(on);
 		}
@@ -1,15 +1,18 @@
 package clients.customer;
 
 import catalogue.Basket;
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
+import middle.AsyncStockReader;
 import middle.MiddleFactory;
 import middle.OrderProcessing;
-import middle.StockException;
-import middle.StockReader;
 
 import javax.swing.*;
+import java.util.List;
 import java.util.Observable;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implements the Model of the customer client
@@ -22,8 +25,9 @@ public class CustomerModel extends Observable
   private Basket      theBasket  = null;          // Bought items
 
   private String      pn = "";                    // Product being processed
+  private static final int PAGE = 10;             // Products found shown
 
-  private StockReader     theStock     = null;
+  private AsyncStockReader theStock    = null;
   private OrderProcessing theOrder     = null;
   private ImageIcon       thePic       = null;
 
@@ -35,7 +39,7 @@ public class CustomerModel extends Observable
   {
     try                                          // 
     {  
-      theStock = mf.makeStockReader();           // Database access
+      theStock = mf.makeAsyncStockReader();      // Database access
     } catch ( Exception e )
     {
       DEBUG.error("CustomerModel.constructor\n" +
@@ -54,43 +58,123 @@ public class CustomerModel extends Observable
   }
 
   /**
-   * Check if the product is in Stock
+   * Check if the product is in Stock.
+   * The details and the picture of the product are asked for
+   *  at the same time, the view is updated (on the Swing event
+   *  thread) when both have arrived.
    * @param productNum The product number
    */
   public void doCheck(String productNum )
   {
     theBasket.clear();                          // Clear s. list
-    String theAction = "";
     pn  = productNum.trim();                    // Product no.
-    int    amount  = 1;                         //  & quantity
-    try
+    if ( ! pn.chars().allMatch( Character::isDigit ) )
+    {                                           // Words not a number
+      doSearch( pn );
+      return;
+    }
+    final String pNum = pn;
+    CompletableFuture<Optional<Product>> details =
+      theStock.lookup( pNum );                  // Stock Exists? & details
+    CompletableFuture<ImageIcon> picture =
+      theStock.getImage( pNum );                //  & picture, in parallel
+    details.thenCombine( picture, ( found, pic ) -> {
+        SwingUtilities.invokeLater( () -> checked( pNum, found, pic ) );
+        return null;
+      } )
+      .exceptionally( e -> {
+        DEBUG.traceA("CustomerClient.doCheck()\n%s",
+        ( e.getCause() != null ? e.getCause() : e ).getMessage() );
+        SwingUtilities.invokeLater( () -> {
+          setChanged(); notifyObservers("");
+        } );
+        return null;
+      } );
+  }
+
+  /**
+   * Find products by the words of their descriptions.
+   * The view is updated (on the Swing event thread) when
+   *  the products found have arrived.
+   * @param words The words typed
+   */
+  private void doSearch( String words )
+  {
+    theStock.search( words, 0, PAGE )
+      .thenAccept( found ->
+        SwingUtilities.invokeLater( () -> searched( words, found ) ) )
+      .exceptionally( e -> {
+        DEBUG.traceA("CustomerClient.doSearch()\n%s",
+        ( e.getCause() != null ? e.getCause() : e ).getMessage() );
+        SwingUtilities.invokeLater( () -> {
+          setChanged(); notifyObservers("");
+        } );
+        return null;
+      } );
+  }
+
+  /**
+   * Show the products found, if only one is found it is
+   *  checked as if its number had been typed
+   * @param words The words searched for
+   * @param found The products found, best match first
+   */
+  private void searched( String words, List<Product> found )
+  {
+    if ( ! words.equals( pn ) ) return;         // Another checked since
+    if ( found.size() == 1 )                    // Just one
     {
-      if ( theStock.exists( pn ) )              // Stock Exists?
-      {                                         // T
-        Product pr = theStock.getDetails( pn ); //  Product
-        if ( pr.getQuantity() >= amount )       //  In stock?
-        { 
-          theAction =                           //   Display 
-            String.format( "%s : %7.2f (%2d) ", //
-              pr.getDescription(),              //    description
-              pr.getPrice(),                    //    price
-              pr.getQuantity() );               //    quantity
-          pr.setQuantity( amount );             //   Require 1
-          theBasket.add( pr );                  //   Add to basket
-          thePic = theStock.getImage( pn );     //    product
-        } else {                                //  F
-          theAction =                           //   Inform
-            pr.getDescription() +               //    product not
-            " not in stock" ;                   //    in stock
-        }
-      } else {                                  // F
-        theAction =                             //  Inform Unknown
-          "Unknown product number " + pn;       //  product number
-      }
-    } catch( StockException e )
+      doCheck( found.get( 0 ).getProductNum() );
+      return;
+    }
+    String theAction;
+    thePic = null;                              // No picture
+    for ( Product pr : found )                  // List those found
     {
-      DEBUG.error("CustomerClient.doCheck()\n%s",
-      e.getMessage() );
+      pr.setQuantity( 1 );
+      theBasket.add( pr );
+    }
+    if ( found.isEmpty() )
+      theAction = "Nothing matches " + words;
+    else
+      theAction = String.format( "%s%d found, enter a product number",
+                                 found.size() == PAGE ? "First " : "",
+                                 found.size() );
+    setChanged(); notifyObservers(theAction);
+  }
+
+  /**
+   * Show the result of checking the product
+   * @param pNum  The product number checked
+   * @param found The product, if it exists
+   * @param pic   Picture of the product
+   */
+  private void checked( String pNum, Optional<Product> found, ImageIcon pic )
+  {
+    if ( ! pNum.equals( pn ) ) return;          // Another checked since
+    String theAction = "";
+    int    amount  = 1;                         //  & quantity
+    if ( found.isPresent() )                    //
+    {                                           // T
+      Product pr = found.get();                 //  Product
+      if ( pr.getQuantity() >= amount )         //  In stock?
+      { 
+        theAction =                             //   Display 
+          String.format( "%s : %7s (%2d) ",     //
+            pr.getDescription(),                //    description
+            Money.format( pr.getPriceMinor() ), //    price
+            pr.getQuantity() );                 //    quantity
+        pr.setQuantity( amount );               //   Require 1
+        theBasket.add( pr );                    //   Add to basket
+        thePic = pic;                           //    product
+      } else {                                  //  F
+        theAction =                             //   Inform
+          pr.getDescription() +                 //    product not
+          " not in stock" ;                     //    in stock
+      }
+    } else {                                    // F
+      theAction =                               //  Inform Unknown
+        "Unknown product number " + pn;         //  product number
     }
     setChanged(); notifyObservers(theAction);
   }
@@ -1,6 +1,7 @@
 package clients.warehousePick;
 
 import catalogue.Basket;
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
 import middle.MiddleFactory;
@@ -33,7 +34,7 @@ public class PickModel extends Observable {
 
 	private StateOf worker = new StateOf();
 	
-	public static TreeMap<Integer,Double> Refunds = new TreeMap<Integer, Double>();
+	public static TreeMap<Integer,Long> Refunds = new TreeMap<Integer, Long>(); // pence
 
 	/*
 	 * Construct the model of the warehouse pick client
@@ -126,7 +127,7 @@ public class PickModel extends Observable {
 	 */
 	public void doPick() throws StockException {
 		boolean end = false;	
-		double counter = 0;
+		long counter = 0; // pence
 
 		while (!end) {
 			JPanel panel = new JPanel();
@@ -148,7 +149,7 @@ public class PickModel extends Observable {
 				boolean found = false;
 				for (Product a : theBasket.get()) { // Find product in basket
 					if (a.getProductNum().equals(delete.getText())) {
-						counter += a.getPrice() * Integer.parseInt(qty.getText());
+						counter += Money.times(a.getPriceMinor(), Integer.parseInt(qty.getText()));
 						theStock.buyStock(delete.getText(), theStock.getDetails(delete.getText()).getQuantity()); //Set stock to 0
 						found = true; // found product in basket
 						break;
@@ -0,0 +1,158 @@
+package dbAccess;
+
+import catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, versioned copy of the catalogue
+ *  (ProductTable joined with StockTable).
+ * Items are held in an array sorted by product number, items changed
+ *  since the array was built are held in a small map that is searched
+ *  first. A change makes a new snapshot that copies only the map,
+ *  once the map is big enough it is merged into a new sorted array.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public final class CatalogueSnapshot
+{
+  /**
+   * One product in the catalogue
+   */
+  public static final class Item
+  {
+    private final String theProductNum;
+    private final String theDescription;
+    private final String thePicture;
+    private final long   thePrice;      // Pence
+    private final int    theStockLevel;
+
+    public Item( String aProductNum, String aDescription, String aPicture,
+                 long aPrice, int aStockLevel )
+    {
+      theProductNum  = aProductNum;
+      theDescription = aDescription;
+      thePicture     = aPicture;
+      thePrice       = aPrice;
+      theStockLevel  = aStockLevel;
+    }
+
+    public String getProductNum()  { return theProductNum; }
+    public String getDescription() { return theDescription; }
+    public String getPicture()     { return thePicture; }
+    public long   getPrice()       { return thePrice; }
+    public int    getStockLevel()  { return theStockLevel; }
+
+    /**
+     * @return a new Product holding the details of this item
+     */
+    public Product toProduct()
+    {
+      return Product.ofMinor( theProductNum, theDescription,
+                              thePrice, theStockLevel );
+    }
+  }
+
+  private static final Comparator<Item> BY_NUMBER =
+    Comparator.comparing( Item::getProductNum );
+  private static final int MIN_CHANGES = 1024;  // Before merge
+
+  private final long              theVersion;   // Of this snapshot
+  private final Item[]            theItems;     // Sorted by number
+  private final Map<String,Item>  theChanged;   // Since sorted
+
+  /**
+   * Create the first version of the catalogue
+   * @param items Every product in the catalogue
+   */
+  public CatalogueSnapshot( Collection<Item> items )
+  {
+    this( 1, sorted( items ), Collections.emptyMap() );
+  }
+
+  private CatalogueSnapshot( long version, Item[] items,
+                             Map<String,Item> changed )
+  {
+    theVersion = version;
+    theItems   = items;
+    theChanged = changed;
+  }
+
+  /**
+   * @return version number of this snapshot, increases on each change
+   */
+  public long getVersion()
+  {
+    return theVersion;
+  }
+
+  /**
+   * @return number of products in the catalogue
+   */
+  public int size()
+  {
+    int added = 0;
+    for ( String pNum : theChanged.keySet() )
+      if ( search( pNum ) < 0 ) added++;
+    return theItems.length + added;
+  }
+
+  /**
+   * Find a product
+   * @param pNum Product number
+   * @return the item or null if no such product
+   */
+  public Item find( String pNum )
+  {
+    Item item = theChanged.get( pNum );
+    if ( item != null ) return item;
+    int at = search( pNum );
+    return at < 0 ? null : theItems[at];
+  }
+
+  /**
+   * Return a new snapshot holding the changed items
+   * @param items Changed (or new) products
+   * @return The next version of the catalogue
+   */
+  public CatalogueSnapshot with( Collection<Item> items )
+  {
+    Map<String,Item> changed = new HashMap<>( theChanged );
+    for ( Item item : items )
+      changed.put( item.getProductNum(), item );
+    if ( changed.size() < Math.max( MIN_CHANGES,
+                                    (int) Math.sqrt( theItems.length ) ) )
+      return new CatalogueSnapshot( theVersion + 1, theItems,
+                                    Collections.unmodifiableMap( changed ) );
+
+    List<Item> all = new ArrayList<>( theItems.length + changed.size() );
+    for ( Item item : theItems )              // Merge changes
+      if ( ! changed.containsKey( item.getProductNum() ) )
+        all.add( item );
+    all.addAll( changed.values() );
+    return new CatalogueSnapshot( theVersion + 1, sorted( all ),
+                                  Collections.emptyMap() );
+  }
+
+  private int search( String pNum )
+  {
+    return Arrays.binarySearch( theItems,
+                                new Item( pNum, null, null, 0, 0 ),
+                                BY_NUMBER );
+  }
+
+  private static Item[] sorted( Collection<Item> items )
+  {
+    Item[] res = items.toArray( new Item[ items.size() ] );
+    Arrays.sort( res, BY_NUMBER );
+    return res;
+  }
+}
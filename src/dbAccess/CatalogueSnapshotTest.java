@@ -0,0 +1,97 @@
+package dbAccess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A JUnit test of the CatalogueSnapshot class
+ */
+public class CatalogueSnapshotTest
+{
+  private static final int MANY = 3000;             // Past a merge
+
+  private CatalogueSnapshot theFirst = null;
+
+  @Before
+  public void setUp()
+  {
+    theFirst = new CatalogueSnapshot( Arrays.asList(
+                 item( "0003", 300, 3 ),
+                 item( "0001", 100, 1 ),
+                 item( "0002", 200, 2 ) ) );
+  }
+
+  @Test
+  public void testFind()
+  {
+    assertEquals( "version", 1, theFirst.getVersion() );
+    assertEquals( "size", 3, theFirst.size() );
+    assertEquals( "price", 200, theFirst.find( "0002" ).getPrice() );
+    assertEquals( "level", 3, theFirst.find( "0003" ).getStockLevel() );
+    assertNull( "unknown product", theFirst.find( "0004" ) );
+    assertEquals( "product", 100,
+                  theFirst.find( "0001" ).toProduct().getPriceMinor() );
+  }
+
+  @Test
+  public void testWith()
+  {
+    CatalogueSnapshot next = theFirst.with( Arrays.asList(
+                               item( "0002", 250, 0 ),
+                               item( "0000", 50, 5 ) ) );
+    assertEquals( "version", 2, next.getVersion() );
+    assertEquals( "changed", 250, next.find( "0002" ).getPrice() );
+    assertEquals( "added", 5, next.find( "0000" ).getStockLevel() );
+    assertEquals( "size", 4, next.size() );
+
+    assertEquals( "old snapshot changed", 200, theFirst.find( "0002" ).getPrice() );
+    assertNull( "old snapshot changed", theFirst.find( "0000" ) );
+    assertEquals( "old size", 3, theFirst.size() );
+
+    CatalogueSnapshot again = next.with(
+                                Collections.singletonList( item( "0002", 275, 1 ) ) );
+    assertEquals( "version", 3, again.getVersion() );
+    assertEquals( "changed twice", 275, again.find( "0002" ).getPrice() );
+    assertEquals( "size", 4, again.size() );
+  }
+
+  /**
+   * Enough changes are merged into a new sorted array
+   */
+  @Test
+  public void testMerge()
+  {
+    CatalogueSnapshot snap = theFirst;
+    for ( int i = 0; i < MANY; i++ )
+    {
+      List<CatalogueSnapshot.Item> items = new ArrayList<>();
+      items.add( item( String.format( "N%04d", MANY - i ), i, i ) );
+      items.add( item( "0002", 1000 + i, i ) );
+      snap = snap.with( items );
+    }
+    assertEquals( "version", 1 + MANY, snap.getVersion() );
+    assertEquals( "size", 3 + MANY, snap.size() );
+    assertEquals( "changed", 1000 + MANY - 1, snap.find( "0002" ).getPrice() );
+    assertEquals( "not changed", 300, snap.find( "0003" ).getPrice() );
+    for ( int i = 0; i < MANY; i++ )
+      assertEquals( "added " + i, i,
+                    snap.find( String.format( "N%04d", MANY - i ) ).getStockLevel() );
+    assertNull( "unknown product", snap.find( "N0000" ) );
+  }
+
+  private static CatalogueSnapshot.Item item( String pNum, long price,
+                                              int level )
+  {
+    return new CatalogueSnapshot.Item( pNum, "Product " + pNum,
+                                       "images/Pic" + pNum + ".jpg",
+                                       price, level );
+  }
+}
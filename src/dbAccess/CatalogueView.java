@@ -0,0 +1,135 @@
+package dbAccess;
+
+import catalogue.Money;
+import debug.DEBUG;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the current snapshot of the catalogue for a database.
+ * The whole catalogue is read when the view is created, after that
+ *  a product is read again when it has been changed (and committed)
+ *  and a new snapshot replaces the current one.
+ * Readers take the current snapshot without locking.
+ * Only changes made through StockRW in this process are seen.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class CatalogueView
+{
+  private static final Map<String,CatalogueView> theViews = new HashMap<>();
+
+  private static final String SQL_ALL =
+    "select ProductTable.productNo, description, picture, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  StockTable.productNo   = ProductTable.productNo";
+  private static final String SQL_ONE =
+    "select ProductTable.productNo, description, picture, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  ProductTable.productNo = ? " +
+    "  and    StockTable.productNo   = ProductTable.productNo";
+
+  private final ConnectionPool             thePool;
+  private volatile CatalogueSnapshot       theSnapshot;   // Current
+
+  /**
+   * Return the view of the catalogue held in the database,
+   *  reading the whole catalogue when first asked for.
+   * @param dbDriver Database holding the catalogue
+   * @param pool     Connections to that database
+   * @return The view of the catalogue
+   * @throws SQLException if problem reading the catalogue
+   */
+  static CatalogueView getView( DBAccess dbDriver, ConnectionPool pool )
+         throws SQLException
+  {
+    synchronized ( theViews )
+    {
+      CatalogueView view = theViews.get( dbDriver.urlOfDatabase() );
+      if ( view == null )
+      {
+        view = new CatalogueView( pool );
+        theViews.put( dbDriver.urlOfDatabase(), view );
+      }
+      return view;
+    }
+  }
+
+  private CatalogueView( ConnectionPool pool )
+          throws SQLException
+  {
+    thePool = pool;
+    long start = System.currentTimeMillis();
+    List<CatalogueSnapshot.Item> items = new ArrayList<>();
+    Connection con = pool.acquire();
+    try
+    {
+      PreparedStatement stmt = pool.prepare( con, SQL_ALL );
+      stmt.setFetchSize( 1000 );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        while ( rs.next() )
+          items.add( item( rs ) );
+      }
+    } finally
+    {
+      pool.release( con );
+    }
+    theSnapshot = new CatalogueSnapshot( items );
+    DEBUG.trace( "CatalogueView: %d products read in %dms",
+                 items.size(), System.currentTimeMillis() - start );
+  }
+
+  /**
+   * @return the current snapshot of the catalogue
+   */
+  CatalogueSnapshot current()
+  {
+    return theSnapshot;
+  }
+
+  /**
+   * Read the products again after they have been changed
+   *  and make a new snapshot holding them.
+   * Must be called after the change is committed.
+   * @param con   Connection to use
+   * @param pNums Products changed
+   * @throws SQLException if problem
+   */
+  synchronized void refresh( Connection con, Collection<String> pNums )
+               throws SQLException
+  {
+    List<CatalogueSnapshot.Item> items = new ArrayList<>();
+    PreparedStatement stmt = thePool.prepare( con, SQL_ONE );
+    for ( String pNum : pNums )
+    {
+      stmt.setString( 1, pNum );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        if ( rs.next() )
+          items.add( item( rs ) );
+      }
+    }
+    if ( ! items.isEmpty() )
+      theSnapshot = theSnapshot.with( items );
+  }
+
+  private static CatalogueSnapshot.Item item( ResultSet rs )
+          throws SQLException
+  {
+    return new CatalogueSnapshot.Item( rs.getString( "productNo" ).trim(),
+                                       rs.getString( "description" ),
+                                       rs.getString( "picture" ),
+                                       Money.of( rs.getBigDecimal( "price" ) ),
+                                       rs.getInt( "stockLevel" ) );
+  }
+}
@@ -0,0 +1,282 @@
+package dbAccess;
+
+import debug.DEBUG;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of connections to the database.
+ * Connections are opened on demand up to the size given by
+ *  DBAccess.poolSize(), after which a caller waits
+ *  (at most DBAccess.poolTimeout() ms) for a connection to be returned.
+ * One pool is shared by all users of the same database url.
+ * Read only requests may use a separate pool, see getReadPool(),
+ *  so browsing does not take connections needed by purchases.
+ * Each connection keeps a cache of its prepared statements so
+ *  the SQL is only parsed and planned once per connection.
+ * When the pool is created the schema is brought up to date,
+ *  see SchemaMigrator.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ConnectionPool
+{
+  private static final Map<String,ConnectionPool> thePools = new HashMap<>();
+
+  private static final Map<String,ConnectionPool> theReadPools = new HashMap<>();
+  private static final Map<Connection,Map<String,PreparedStatement>>
+                theStatements = new ConcurrentHashMap<>(); // Per connection
+
+  private final DBAccess                  theDB;        // Database used
+  private final boolean                   theReadOnly;  // Read pool
+  private final int                       theSize;      // Max connections
+  private final long                      theTimeout;   // Max wait ms
+  private final BlockingQueue<Connection> theIdle;      // Free connections
+  private final AtomicInteger             theOpened = new AtomicInteger();
+
+  private final AtomicLong theAcquires    = new AtomicLong(); // Statistics
+  private final AtomicLong theWaits       = new AtomicLong(); //  on how
+  private final AtomicLong theWaitNanos   = new AtomicLong(); //  long users
+  private final AtomicLong theMaxWaitNano = new AtomicLong(); //  wait
+
+  /**
+   * Return the pool of connections for the database,
+   *  creating the pool when first asked for.
+   * @param dbDriver Database to connect to (driver already loaded)
+   * @return The pool of connections to that database
+   * @throws SQLException if can not connect to the database
+   */
+  public static ConnectionPool getPool( DBAccess dbDriver )
+         throws SQLException
+  {
+    synchronized ( thePools )
+    {
+      ConnectionPool pool = thePools.get( dbDriver.urlOfDatabase() );
+      if ( pool == null )
+      {
+        pool = new ConnectionPool( dbDriver, false );
+        thePools.put( dbDriver.urlOfDatabase(), pool );
+      }
+      return pool;
+    }
+  }
+
+  /**
+   * Return the pool of read only connections for the database,
+   *  creating the pool when first asked for.
+   * The connections use the isolation level DBAccess.readIsolation().
+   * The schema is not brought up to date, so getPool() must
+   *  have been called for the database first.
+   * @param dbDriver Database to connect to (driver already loaded)
+   * @return The pool of read only connections to that database
+   * @throws SQLException if can not connect to the database
+   */
+  public static ConnectionPool getReadPool( DBAccess dbDriver )
+         throws SQLException
+  {
+    synchronized ( theReadPools )
+    {
+      ConnectionPool pool = theReadPools.get( dbDriver.urlOfDatabase() );
+      if ( pool == null )
+      {
+        pool = new ConnectionPool( dbDriver, true );
+        theReadPools.put( dbDriver.urlOfDatabase(), pool );
+      }
+      return pool;
+    }
+  }
+
+  private ConnectionPool( DBAccess dbDriver, boolean readOnly )
+          throws SQLException
+  {
+    theDB       = dbDriver;
+    theReadOnly = readOnly;
+    theSize     = Math.max( 1, readOnly ? dbDriver.readPoolSize()
+                                        : dbDriver.poolSize() );
+    theTimeout  = dbDriver.poolTimeout();
+    theIdle     = new ArrayBlockingQueue<>( theSize );
+    Connection con = open();                // Check database is there
+    try
+    {
+      if ( ! readOnly )
+      {
+        dbDriver.prepareDatabase( con );
+        SchemaMigrator.migrate( con );      //  and schema up to date
+      }
+    } finally
+    {
+      release( con );
+    }
+    DEBUG.trace( "ConnectionPool: %s%s size %d", dbDriver.urlOfDatabase(),
+                 readOnly ? " read" : "", theSize );
+    Runtime.getRuntime().addShutdownHook( new Thread( () ->
+      DEBUG.traceA( "ConnectionPool: %s", statistics() ) ) );
+  }
+
+  /**
+   * Take a connection from the pool, waiting if all are in use.
+   * The connection must be given back by calling release()
+   * @return A connection to the database
+   * @throws SQLException if no connection available in time
+   */
+  public Connection acquire() throws SQLException
+  {
+    theAcquires.incrementAndGet();
+    Connection con = theIdle.poll();
+    if ( con == null )
+      con = open();                         // Below limit ?
+    if ( con == null )                      // Must wait
+    {
+      long start    = System.nanoTime();
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos( theTimeout );
+      try
+      {
+        while ( con == null && System.nanoTime() < deadline )
+        {
+          con = theIdle.poll( Math.min( 50, theTimeout ),
+                              TimeUnit.MILLISECONDS );
+          if ( con == null )
+            con = open();                   // One may have been lost
+        }
+      } catch ( InterruptedException e )
+      {
+        Thread.currentThread().interrupt();
+      }
+      long waited = System.nanoTime() - start;
+      theWaits.incrementAndGet();
+      theWaitNanos.addAndGet( waited );
+      theMaxWaitNano.accumulateAndGet( waited, Math::max );
+      DEBUG.trace( "ConnectionPool: waited %.3fms", waited / 1.0e6 );
+      if ( con == null )
+        throw new SQLException( "No free connection after " +
+                                theTimeout + "ms" );
+    }
+    return con;
+  }
+
+  /**
+   * Return a connection to the pool.
+   * A connection that is no longer usable is discarded.
+   * @param con Connection obtained from acquire()
+   */
+  public void release( Connection con )
+  {
+    if ( con == null ) return;
+    try
+    {
+      if ( con.isClosed() )
+      {
+        theStatements.remove( con );
+        theOpened.decrementAndGet();        // Lost
+        return;
+      }
+      if ( ! con.getAutoCommit() )          // Left in a transaction
+      {
+        con.rollback();
+        con.setAutoCommit( true );
+      }
+    } catch ( SQLException e )
+    {
+      close( con );
+      return;
+    }
+    if ( ! theIdle.offer( con ) )           // Should never happen
+      close( con );
+  }
+
+  /**
+   * Return a prepared statement for the SQL, created once and then
+   *  reused for each later request on the same connection.
+   * The statement must not be closed by the caller and
+   *  may only be used while the connection is held.
+   * @param con Connection obtained from acquire()
+   * @param sql SQL with ? for each parameter
+   * @return Prepared statement
+   * @throws SQLException if SQL invalid
+   */
+  public PreparedStatement prepare( Connection con, String sql )
+         throws SQLException
+  {
+    Map<String,PreparedStatement> cache =
+      theStatements.computeIfAbsent( con, c -> new HashMap<>() );
+    PreparedStatement stmt = cache.get( sql );
+    if ( stmt == null )
+    {
+      stmt = con.prepareStatement( sql );
+      cache.put( sql, stmt );
+    }
+    return stmt;
+  }
+
+  /**
+   * Returns a description of how long users of the pool have waited
+   * @return Wait statistics
+   */
+  public String statistics()
+  {
+    long waits = theWaits.get();
+    return String.format(
+      "%s%s open %d/%d acquired %d waited %d avg %.3fms max %.3fms",
+      theDB.urlOfDatabase(), theReadOnly ? " read" : "",
+      theOpened.get(), theSize,
+      theAcquires.get(), waits,
+      waits == 0 ? 0.0 : theWaitNanos.get() / 1.0e6 / waits,
+      theMaxWaitNano.get() / 1.0e6 );
+  }
+
+  /**
+   * Open a new connection if the pool is not yet full
+   * @return new connection or null if pool full
+   */
+  private Connection open() throws SQLException
+  {
+    if ( theOpened.incrementAndGet() > theSize )
+    {
+      theOpened.decrementAndGet();
+      return null;
+    }
+    try
+    {
+      Connection con = DriverManager.getConnection
+                         ( theDB.urlOfDatabase(),
+                           theDB.username(),
+                           theDB.password() );
+      con.setAutoCommit( true );
+      if ( theReadOnly )
+      {
+        con.setReadOnly( true );
+        con.setTransactionIsolation( theDB.readIsolation() );
+      }
+      return con;
+    } catch ( SQLException e )
+    {
+      theOpened.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private void close( Connection con )
+  {
+    theStatements.remove( con );
+    theOpened.decrementAndGet();
+    try
+    {
+      con.close();
+    } catch ( SQLException e )
+    {
+      DEBUG.trace( "ConnectionPool: close %s", e.getMessage() );
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package dbAccess;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test of the ConnectionPool class, run against
+ *  a database held in memory with a pool of two connections
+ */
+public class ConnectionPoolTest
+{
+  private static final int  SIZE    = 2;
+  private static final long TIMEOUT = 200;          // ms
+
+  /**
+   * A database of its own, so the pool is not shared with other tests
+   */
+  private static class SmallPool extends DerbyMemoryAccess
+  {
+    public String urlOfDatabase()
+    {
+      return "jdbc:derby:memory:pooltest;create=true";
+    }
+
+    public int  poolSize()    { return SIZE; }
+    public long poolTimeout() { return TIMEOUT; }
+  }
+
+  private static DBAccess       theDB   = null;
+  private static ConnectionPool thePool = null;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception
+  {
+    theDB = new SmallPool();
+    theDB.loadDriver();
+    thePool = ConnectionPool.getPool( theDB );
+  }
+
+  @Test
+  public void testBounded() throws Exception
+  {
+    Connection first  = thePool.acquire();
+    Connection second = thePool.acquire();
+    long start = System.nanoTime();
+    try
+    {
+      thePool.acquire();
+      fail( "more connections than the pool size" );
+    } catch ( SQLException e )
+    {
+      assertTrue( "did not wait",
+                  System.nanoTime() - start >=
+                    TimeUnit.MILLISECONDS.toNanos( TIMEOUT ) );
+    }
+
+    CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync( () -> {
+      try
+      {
+        return thePool.acquire();
+      } catch ( SQLException e )
+      {
+        throw new IllegalStateException( e );
+      }
+    } );
+    Thread.sleep( TIMEOUT / 4 );
+    thePool.release( first );
+    assertSame( "not given the connection released", first,
+                waiting.get( TIMEOUT * 4, TimeUnit.MILLISECONDS ) );
+    thePool.release( first );
+    thePool.release( second );
+  }
+
+  @Test
+  public void testReleaseRollsBack() throws Exception
+  {
+    update( "create table PoolTest ( id Int )" );
+    try
+    {
+      Connection con = thePool.acquire();
+      con.setAutoCommit( false );
+      try ( Statement stmt = con.createStatement() )
+      {
+        stmt.executeUpdate( "insert into PoolTest values ( 1 )" );
+      }
+      thePool.release( con );                       // Not committed
+
+      Connection again = thePool.acquire();
+      Connection other = thePool.acquire();         // The pool in use
+      try ( Statement stmt = again.createStatement();
+            ResultSet rs = stmt.executeQuery( "select count(*) from PoolTest" ) )
+      {
+        assertTrue( "left in a transaction", again.getAutoCommit() );
+        rs.next();
+        assertEquals( "uncommitted write kept", 0, rs.getInt( 1 ) );
+      } finally
+      {
+        thePool.release( again );
+        thePool.release( other );
+      }
+    } finally
+    {
+      update( "drop table PoolTest" );
+    }
+  }
+
+  @Test
+  public void testClosedDiscarded() throws Exception
+  {
+    Connection lost = thePool.acquire();
+    lost.close();
+    thePool.release( lost );
+    Connection first  = thePool.acquire();
+    Connection second = thePool.acquire();          // Opened in its place
+    assertFalse( "closed connection reused", first.isClosed() );
+    assertFalse( "closed connection reused", second.isClosed() );
+    thePool.release( first );
+    thePool.release( second );
+  }
+
+  @Test
+  public void testPrepareCached() throws Exception
+  {
+    String sql = "select productNo from ProductTable where productNo = ?";
+    Connection con = thePool.acquire();
+    try
+    {
+      assertSame( "prepared again", thePool.prepare( con, sql ),
+                  thePool.prepare( con, sql ) );
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  @Test
+  public void testReadPool() throws Exception
+  {
+    ConnectionPool read = ConnectionPool.getReadPool( theDB );
+    Connection con = read.acquire();
+    try
+    {
+      assertTrue( "not read only", con.isReadOnly() );
+      assertEquals( "isolation", Connection.TRANSACTION_READ_COMMITTED,
+                    con.getTransactionIsolation() );
+    } finally
+    {
+      read.release( con );
+    }
+  }
+
+  private static void update( String sql ) throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try ( Statement stmt = con.createStatement() )
+    {
+      stmt.execute( sql );
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+}
@@ -5,6 +5,11 @@ package dbAccess;
   * @author  Mike Smith University of Brighton
   * @version 2.0
   */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
  
 /**
  * Base class that defines the access to the database driver
@@ -30,4 +35,340 @@ public class DBAccess
   {
     return "";
   }
+
+  /**
+   * Called with the first connection made to the database,
+   *  before the schema is brought up to date.
+   * @param con Connection to the database
+   * @throws SQLException if problem
+   */
+  public void prepareDatabase( Connection con ) throws SQLException
+  {
+  }
+
+  /**
+   * Maximum number of connections held open to the database.
+   * Set by the system property catshop.pool.size
+   * @return size of the connection pool
+   */
+  public int poolSize()
+  {
+    return Integer.getInteger( "catshop.pool.size", 4 );
+  }
+
+  /**
+   * Maximum number of connections held open for read only
+   *  requests, see ConnectionPool.getReadPool().
+   * Set by the system property catshop.pool.read.size
+   * @return size of the read connection pool
+   */
+  public int readPoolSize()
+  {
+    return Integer.getInteger( "catshop.pool.read.size", poolSize() );
+  }
+
+  /**
+   * Isolation level of read only connections, by default only
+   *  committed changes are read, as what is read may be cached.
+   * READ_UNCOMMITTED stops browsing waiting for the locks held by
+   *  purchases, at the cost of reading (and caching) stock levels
+   *  of changes that may then be rolled back.
+   * Set by the system property catshop.read.isolation, one of
+   *  READ_UNCOMMITTED, READ_COMMITTED, REPEATABLE_READ, SERIALIZABLE
+   * @return isolation level as in java.sql.Connection
+   */
+  public int readIsolation()
+  {
+    switch ( System.getProperty( "catshop.read.isolation",
+                                 "READ_COMMITTED" ) )
+    {
+      case "READ_UNCOMMITTED": return Connection.TRANSACTION_READ_UNCOMMITTED;
+      case "REPEATABLE_READ" : return Connection.TRANSACTION_REPEATABLE_READ;
+      case "SERIALIZABLE"    : return Connection.TRANSACTION_SERIALIZABLE;
+      default                : return Connection.TRANSACTION_READ_COMMITTED;
+    }
+  }
+
+  /**
+   * How long to wait for a free connection when all are in use.
+   * Set by the system property catshop.pool.timeout
+   * @return time in milliseconds
+   */
+  public long poolTimeout()
+  {
+    return Long.getLong( "catshop.pool.timeout", 10000 );
+  }
+
+  /**
+   * Should sales be journalled locally and written to the
+   *  database in batches (write-behind).
+   * Set by the system property catshop.writeBehind
+   * @return true if write-behind is used
+   */
+  public boolean writeBehind()
+  {
+    return Boolean.getBoolean( "catshop.writeBehind" );
+  }
+
+  /**
+   * File used to journal sales not yet written to the database
+   * Set by the system property catshop.journal
+   * @return name of the journal file
+   */
+  public String journalFile()
+  {
+    return System.getProperty( "catshop.journal", "stock.journal" );
+  }
+
+  /**
+   * How often journalled sales are written to the database
+   * Set by the system property catshop.journal.flush
+   * @return time in milliseconds
+   */
+  public long journalFlushInterval()
+  {
+    return Long.getLong( "catshop.journal.flush", 1000 );
+  }
+
+  /**
+   * Number of products held in the middle tier product cache,
+   *  0 for no cache.
+   * Set by the system property catshop.cache.size
+   * @return maximum number of products cached
+   */
+  public int cacheSize()
+  {
+    return Integer.getInteger( "catshop.cache.size", 0 );
+  }
+
+  /**
+   * How long a product is held in the product cache
+   *  before it is read again from the database.
+   * Set by the system property catshop.cache.ttl
+   * @return time in milliseconds
+   */
+  public long cacheTTL()
+  {
+    return Long.getLong( "catshop.cache.ttl", 5000 );
+  }
+
+  /**
+   * Should the whole catalogue be held in memory and
+   *  reads answered from it rather than the database.
+   * Set by the system property catshop.snapshot
+   * @return true if the catalogue is held in memory
+   */
+  public boolean snapshot()
+  {
+    return Boolean.getBoolean( "catshop.snapshot" );
+  }
+
+  /**
+   * Size (pixels square) product pictures are scaled to fit,
+   *  the size of the picture area in the customer client.
+   * Set by the system property catshop.image.size
+   * @return size in pixels
+   */
+  public int imageSize()
+  {
+    return Integer.getInteger( "catshop.image.size", 80 );
+  }
+
+  /**
+   * Memory used to hold decoded product pictures.
+   * Set by the system property catshop.image.cache
+   * @return size of the image cache in bytes
+   */
+  public long imageCacheBytes()
+  {
+    return Long.getLong( "catshop.image.cache", 16L * 1024 * 1024 );
+  }
+
+  /**
+   * Number of pages Derby holds in its page cache.
+   * Set by the system property catshop.derby.pageCache
+   * @return pages cached
+   */
+  public int derbyPageCacheSize()
+  {
+    return Integer.getInteger( "catshop.derby.pageCache", 1000 );
+  }
+
+  /**
+   * Size of the buffer Derby uses for its transaction log.
+   * Set by the system property catshop.derby.logBuffer
+   * @return size in bytes
+   */
+  public int derbyLogBufferSize()
+  {
+    return Integer.getInteger( "catshop.derby.logBuffer", 32768 );
+  }
+
+  /**
+   * Should Derby force its log to disk on each commit.
+   * If not, committed changes may be lost in a crash, for testing only.
+   * Set by the system property catshop.derby.durable
+   * @return true if commits are durable
+   */
+  public boolean derbyDurable()
+  {
+    return ! "false".equals( System.getProperty( "catshop.derby.durable" ) );
+  }
+
+  /**
+   * File holding the stock list as fixed size records, used
+   *  instead of the database tables, null if not used.
+   * Set by the system property catshop.mapped
+   * @return name of the file or null
+   */
+  public String mappedFile()
+  {
+    return System.getProperty( "catshop.mapped" );
+  }
+
+  /**
+   * Should each change to the mapped stock file be forced to disk,
+   *  rather than every journalFlushInterval() ms.
+   * Set by the system property catshop.mapped.sync
+   * @return true if forced after each change
+   */
+  public boolean mappedSync()
+  {
+    return Boolean.getBoolean( "catshop.mapped.sync" );
+  }
+
+  /**
+   * How often the mapped stock file is written back to the database
+   *  tables, it is also written back when the program ends.
+   *  0 if only written back by BulkLoad -export.
+   * Set by the system property catshop.mapped.export
+   * @return time in milliseconds
+   */
+  public long mappedExportInterval()
+  {
+    return Long.getLong( "catshop.mapped.export", 60000 );
+  }
+
+  /**
+   * Product numbers of hot (very popular) products, whose stock
+   *  is held in striped counters in the middle tier.
+   * Set by the system property catshop.hot, numbers separated by ,
+   * @return product numbers, empty if none
+   */
+  public List<String> hotProducts()
+  {
+    List<String> res = new ArrayList<>();
+    for ( String pNum : System.getProperty( "catshop.hot", "" ).split( "," ) )
+      if ( ! pNum.trim().isEmpty() )
+        res.add( pNum.trim() );
+    return res;
+  }
+
+  /**
+   * Number of counters the stock of a hot product is split between.
+   * Set by the system property catshop.hot.stripes
+   * @return number of counters
+   */
+  public int hotStripes()
+  {
+    return Integer.getInteger( "catshop.hot.stripes",
+                               Runtime.getRuntime().availableProcessors() );
+  }
+
+  /**
+   * Stock of a hot product taken from the database at a time.
+   * Set by the system property catshop.hot.chunk
+   * @return amount of stock
+   */
+  public int hotChunk()
+  {
+    return Integer.getInteger( "catshop.hot.chunk", 20 );
+  }
+
+  /**
+   * Stock held for a hot product is given back to the database
+   *  when it has not been sold for this long.
+   * Set by the system property catshop.hot.idle
+   * @return time in milliseconds
+   */
+  public long hotIdle()
+  {
+    return Long.getLong( "catshop.hot.idle", 30000 );
+  }
+
+  /**
+   * Stock held for a hot product is given back to the database
+   *  at least this often, even while it sells, so that little
+   *  is lost if the program fails.
+   * Set by the system property catshop.hot.hold
+   * @return time in milliseconds
+   */
+  public long hotHold()
+  {
+    return Long.getLong( "catshop.hot.hold", 300000 );
+  }
+
+  /**
+   * Should writes from different users be committed together in
+   *  one transaction (group commit), see GroupCommitter.
+   * Set by the system property catshop.group
+   * @return true if group commit is used
+   */
+  public boolean groupCommit()
+  {
+    return Boolean.getBoolean( "catshop.group" );
+  }
+
+  /**
+   * How long writes are collected for before they are committed
+   *  together.
+   * Set by the system property catshop.group.window
+   * @return time in milliseconds
+   */
+  public long groupCommitWindow()
+  {
+    return Long.getLong( "catshop.group.window", 2 );
+  }
+
+  /**
+   * Most writes committed together in one transaction.
+   * Set by the system property catshop.group.max
+   * @return number of writes
+   */
+  public int groupCommitMax()
+  {
+    return Integer.getInteger( "catshop.group.max", 64 );
+  }
+
+  /**
+   * Should every sale and return be recorded in the sales ledger,
+   *  see SalesLedger.
+   * Set by the system property catshop.ledger
+   * @return true if sales are recorded
+   */
+  public boolean salesLedger()
+  {
+    return Boolean.getBoolean( "catshop.ledger" );
+  }
+
+  /**
+   * How often the sales recorded are written to the ledger tables.
+   * Set by the system property catshop.ledger.interval
+   * @return time in milliseconds
+   */
+  public long ledgerInterval()
+  {
+    return Long.getLong( "catshop.ledger.interval", 1000 );
+  }
+
+  /**
+   * Most entries kept for the sales ledger while they can not be
+   *  written, the oldest are dropped (and logged) beyond this.
+   * Set by the system property catshop.ledger.backlog
+   * @return number of entries
+   */
+  public int ledgerBacklog()
+  {
+    return Integer.getInteger( "catshop.ledger.backlog", 100000 );
+  }
 }
@@ -33,7 +33,9 @@ public class DBAccessFactory
 
   private static String setEnvironment()
   {
-    theDataBase  = fileToString( "DataBase.txt" ) + theAction;
+    String db    = System.getProperty( "catshop.database" );
+    theDataBase  = ( db != null ? db : fileToString( "DataBase.txt" ) )
+                   + theAction;
     String os    = System.getProperties().getProperty( "os.name" );
     String arch  = System.getProperties().getProperty( "os.arch" );
     String osVer = System.getProperties().getProperty( "os.version" );
@@ -44,13 +46,37 @@ public class DBAccessFactory
   
   /**
    * Return an object to implement system level access to the database.
+   * The database used is named in the file DataBase.txt,
+   *  unless set by the system property catshop.database
    * @return An object to provide system level access to the database
    */
   public DBAccess getNewDBAccess()
   {
     setEnvironment();
     DEBUG.traceA("Using [%s] as database type\n", theDataBase );
-    switch ( theDataBase )
+    return make( theDataBase );
+  }
+
+  /**
+   * Return an object to implement system level access to the
+   *  database used for read only requests (browsing the catalogue),
+   *  named by the system property catshop.database.read
+   *  (for example a copy of the catalogue).
+   * @return An object to provide system level access to the database
+   *         or null if reads use the database of getNewDBAccess()
+   */
+  public DBAccess getReadDBAccess()
+  {
+    String db = System.getProperty( "catshop.database.read" );
+    if ( db == null )
+      return null;
+    DEBUG.traceA("Using [%s] as database type for reads\n", db );
+    return make( db );
+  }
+
+  private static DBAccess make( String name )
+  {
+    switch ( name )
     {
        case "Derby" :
          return new DerbyAccess();       // Derby
@@ -58,6 +84,10 @@ public class DBAccessFactory
        case "DerbyCreate" :
          return new DerbyCreateAccess(); // Derby & create database
     
+       case "DerbyMemory" :
+       case "DerbyMemoryCreate" :
+         return new DerbyMemoryAccess(); // Derby in memory only
+
        case "Access" :
        case "AccessCreate" :
          return new WindowsAccess();     // Access Windows
@@ -67,7 +97,7 @@ public class DBAccessFactory
          return new LinuxAccess();       // MySQL Linux
          
        default:
-         DEBUG.error("DataBase [%s] not known\n", theDataBase );
+         DEBUG.error("DataBase [%s] not known\n", name );
          System.exit(0);
     }
     return new DBAccess();               // Unknown
@@ -18,6 +18,7 @@ class DerbyAccess extends DBAccess
    */
   public void loadDriver() throws Exception
   {
+    DerbyAccess.tune( this );
     Class.forName(DRIVER).newInstance();
   }
 
@@ -29,5 +30,26 @@ class DerbyAccess extends DBAccess
   {
     return URLdb;
   }
-}
 
+  /**
+   * Set the Derby properties from the settings of the database,
+   *  must be called before the driver is loaded.
+   * A property already set (e.g. on the command line) is not changed.
+   * @param db Database settings
+   */
+  static void tune( DBAccess db )
+  {
+    setIfAbsent( "derby.storage.pageCacheSize",
+                 String.valueOf( db.derbyPageCacheSize() ) );
+    setIfAbsent( "derby.storage.logBufferSize",
+                 String.valueOf( db.derbyLogBufferSize() ) );
+    if ( ! db.derbyDurable() )
+      setIfAbsent( "derby.system.durability", "test" );
+  }
+
+  private static void setIfAbsent( String name, String value )
+  {
+    if ( System.getProperty( name ) == null )
+      System.setProperty( name, value );
+  }
+}
@@ -16,6 +16,7 @@ class DerbyCreateAccess extends DBAccess
 
   public void loadDriver() throws Exception
   {
+    DerbyAccess.tune( this );
     Class.forName(DRIVER).newInstance();
   }
 
@@ -0,0 +1,55 @@
+package dbAccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+  * Apache Derby database held only in memory,
+  *  created and filled with the test data (see SeedData)
+  *  when first used. Lost when the program ends.
+  * @author  Mike Smith University of Brighton
+  * @version 1.0
+  */
+ 
+class DerbyMemoryAccess extends DBAccess
+{
+  private static final String URLdb =
+                 "jdbc:derby:memory:catshop;create=true";
+  private static final String DRIVER =
+                 "org.apache.derby.jdbc.EmbeddedDriver";
+
+  /**
+   * Load the Apache Derby database driver
+   */
+  public void loadDriver() throws Exception
+  {
+    DerbyAccess.tune( this );
+    Class.forName(DRIVER).newInstance();
+  }
+
+  /**
+   * Return the url to access the database
+   * @return url to database
+   */
+  public String urlOfDatabase()
+  {
+    return URLdb;
+  }
+
+  /**
+   * Create the tables and test data if not already there
+   * @param con Connection to the database
+   */
+  public void prepareDatabase( Connection con ) throws SQLException
+  {
+    if ( con.getMetaData().getTables( null, null, "PRODUCTTABLE", null )
+            .next() )
+      return;
+    try ( Statement stmt = con.createStatement() )
+    {
+      for ( String sql : SeedData.SQL )
+        stmt.execute( sql );
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package dbAccess;
+
+import debug.DEBUG;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Writes are queued by the callers and run by a single thread, which
+// takes the first write queued, waits up to DBAccess.groupCommitWindow()
+// ms for more, then runs them all in one transaction. Each write has a
+// savepoint, so a write that fails is undone on its own and the rest
+// are still committed. The callers are told their results once the
+// transaction has committed, so one log force serves all of them.
+// If the transaction as a whole fails (for example it is chosen as the
+// victim of a deadlock) it is rolled back and each write is run again
+// in a transaction of its own.
+
+/**
+ * Commits concurrent writes to the database together.
+ * One committer is shared by all users of the same database url.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class GroupCommitter
+{
+  private static final Map<String,GroupCommitter> theCommitters =
+    new HashMap<>();
+
+  /**
+   * A write, run on the connection given, which must not be
+   *  committed or rolled back by the write
+   */
+  interface Write<T>
+  {
+    T apply( Connection con ) throws SQLException;
+  }
+
+  /**
+   * A write queued and the future of its result
+   */
+  private static class Queued<T>
+  {
+    private final Write<T>             theWrite;
+    private final CompletableFuture<T> theResult = new CompletableFuture<>();
+    private T                          theValue;
+
+    private Queued( Write<T> w )
+    {
+      theWrite = w;
+    }
+
+    private void apply( Connection con ) throws SQLException
+    {
+      theValue = theWrite.apply( con );
+    }
+  }
+
+  private final ConnectionPool            thePool;
+  private final long                      theWindow;   // ms
+  private final int                       theMax;      // Writes per commit
+  private final BlockingQueue<Queued<?>>  theQueue = new LinkedBlockingQueue<>();
+  private long                            theCommits = 0;
+  private long                            theWrites  = 0;
+
+  /**
+   * Return the committer for the database
+   * @param dbDriver Database used
+   * @param pool     Connections to the database
+   * @return The committer for that database
+   */
+  static GroupCommitter getCommitter( DBAccess dbDriver, ConnectionPool pool )
+  {
+    synchronized ( theCommitters )
+    {
+      GroupCommitter gc = theCommitters.get( dbDriver.urlOfDatabase() );
+      if ( gc == null )
+      {
+        gc = new GroupCommitter( dbDriver, pool );
+        theCommitters.put( dbDriver.urlOfDatabase(), gc );
+      }
+      return gc;
+    }
+  }
+
+  private GroupCommitter( DBAccess dbDriver, ConnectionPool pool )
+  {
+    thePool   = pool;
+    theWindow = Math.max( 0, dbDriver.groupCommitWindow() );
+    theMax    = Math.max( 1, dbDriver.groupCommitMax() );
+    Thread t = new Thread( this::commitLoop, "GroupCommitter" );
+    t.setDaemon( true );
+    t.start();
+    Runtime.getRuntime().addShutdownHook( new Thread( () ->
+      DEBUG.traceA( "GroupCommitter: %s", statistics() ) ) );
+  }
+
+  /**
+   * Queue the write to be committed with others
+   * @param w The write
+   * @return the result of the write, once committed
+   */
+  <T> CompletableFuture<T> submit( Write<T> w )
+  {
+    Queued<T> q = new Queued<>( w );
+    theQueue.add( q );
+    return q.theResult;
+  }
+
+  /**
+   * Run the write and wait for it to be committed
+   * @param w The write
+   * @return the result of the write
+   * @throws SQLException if the write or the commit fails
+   */
+  <T> T run( Write<T> w ) throws SQLException
+  {
+    try
+    {
+      return submit( w ).get();
+    } catch ( ExecutionException e )
+    {
+      if ( e.getCause() instanceof SQLException )
+        throw (SQLException) e.getCause();
+      throw new SQLException( e.getCause() );
+    } catch ( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new SQLException( "Interrupted waiting for commit" );
+    }
+  }
+
+  /**
+   * @return writes and commits so far
+   */
+  synchronized String statistics()
+  {
+    return String.format( "writes %d commits %d (%.1f per commit)",
+                          theWrites, theCommits,
+                          theCommits == 0 ? 0.0 : (double) theWrites / theCommits );
+  }
+
+  private void commitLoop()
+  {
+    List<Queued<?>> group = new ArrayList<>();
+    while ( true )
+    {
+      try
+      {
+        group.add( theQueue.take() );
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( theWindow );
+        while ( group.size() < theMax )
+        {
+          long wait = end - System.nanoTime();
+          Queued<?> q = wait > 0 ? theQueue.poll( wait, TimeUnit.NANOSECONDS )
+                                 : theQueue.poll();
+          if ( q == null ) break;
+          group.add( q );
+        }
+        commit( group );
+      } catch ( InterruptedException e )
+      {
+        return;
+      } catch ( Throwable e )                         // Never leave a
+      {                                               //  caller waiting
+        for ( Queued<?> q : group )
+          q.theResult.completeExceptionally( e );
+      }
+      group.clear();
+    }
+  }
+
+  /**
+   * Run the writes in one transaction, then tell the callers
+   */
+  private void commit( List<Queued<?>> group ) throws SQLException
+  {
+    Connection con = thePool.acquire();
+    List<Queued<?>> done = new ArrayList<>();
+    try
+    {
+      con.setAutoCommit( false );
+      try
+      {
+        for ( Queued<?> q : group )
+        {
+          Savepoint sp = con.setSavepoint();
+          try
+          {
+            q.apply( con );
+            done.add( q );
+          } catch ( SQLException e )
+          {
+            if ( isTransactionLost( e ) ) throw e;
+            con.rollback( sp );                     // Just this write
+            q.theResult.completeExceptionally( e );
+          }
+        }
+        con.commit();
+      } catch ( SQLException e )
+      {
+        DEBUG.trace( "GroupCommitter: group of %d failed %s",
+                     group.size(), e.getMessage() );
+        con.rollback();
+        done.clear();
+        for ( Queued<?> q : group )                 // One at a time
+          if ( ! q.theResult.isDone() )
+            alone( con, q );
+      }
+      con.setAutoCommit( true );
+    } finally
+    {
+      thePool.release( con );
+    }
+    synchronized ( this )
+    {
+      theWrites  += group.size();
+      theCommits += 1;
+    }
+    for ( Queued<?> q : done )
+      complete( q );
+  }
+
+  /**
+   * Run the write in a transaction of its own
+   */
+  private void alone( Connection con, Queued<?> q )
+  {
+    try
+    {
+      q.apply( con );
+      con.commit();
+      complete( q );
+    } catch ( SQLException e )
+    {
+      try
+      {
+        con.rollback();
+      } catch ( SQLException ignore ) {}
+      q.theResult.completeExceptionally( e );
+    }
+  }
+
+  private static <T> void complete( Queued<T> q )
+  {
+    q.theResult.complete( q.theValue );
+  }
+
+  /**
+   * Deadlock, lock timeout etc roll back the whole transaction
+   */
+  private static boolean isTransactionLost( SQLException e )
+  {
+    String state = e.getSQLState();
+    return state != null && state.startsWith( "40" );
+  }
+}
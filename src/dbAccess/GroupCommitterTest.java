@@ -0,0 +1,216 @@
+package dbAccess;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test of the GroupCommitter class, run against
+ *  a database held in memory
+ */
+public class GroupCommitterTest
+{
+  private static final int  THREADS = 8;
+  private static final int  WRITES  = 50;           // Per thread
+  private static final long WINDOW  = 200;          // ms, writes collected
+  private static final int  MAX     = THREADS;      //  or until this many
+
+  private static final String SQL_CREATE =
+    "create table GroupTest ( id Int not null primary key, who Int )";
+  private static final String SQL_INSERT =
+    "insert into GroupTest values ( ?, ? )";
+  private static final String SQL_WHO =
+    "select who from GroupTest where id = ?";
+
+  private DBAccess       theDB        = null;
+  private ConnectionPool thePool      = null;
+  private GroupCommitter theCommitter = null;
+
+  @BeforeClass
+  public static void setUpClass()
+  {
+    System.setProperty( "catshop.group.window", Long.toString( WINDOW ) );
+    System.setProperty( "catshop.group.max",    Integer.toString( MAX ) );
+  }
+
+  @AfterClass
+  public static void tearDownClass()
+  {
+    System.clearProperty( "catshop.group.window" );
+    System.clearProperty( "catshop.group.max" );
+  }
+
+  @Before
+  public void setUp() throws Exception
+  {
+    theDB = new DerbyMemoryAccess();
+    theDB.loadDriver();
+    thePool      = ConnectionPool.getPool( theDB );
+    theCommitter = GroupCommitter.getCommitter( theDB, thePool );
+    update( SQL_CREATE );
+  }
+
+  @After
+  public void tearDown() throws Exception
+  {
+    update( "drop table GroupTest" );
+  }
+
+  /**
+   * A full group of writes is committed in one transaction,
+   *  a write that fails part way is undone on its own
+   */
+  @Test
+  public void testFailedWriteRolledBack() throws Exception
+  {
+    long before = commits();
+    List<CompletableFuture<Integer>> done = new ArrayList<>();
+    for ( int i = 1; i <= 4; i++ )
+      done.add( theCommitter.submit( insert( i, i ) ) );
+    CompletableFuture<Integer> failed = theCommitter.submit( con -> {
+      insert( 5, 5 ).apply( con );                  // Undone
+      return insert( 1, 5 ).apply( con );           // Duplicate key
+    } );
+    for ( int i = 6; i <= 8; i++ )
+      done.add( theCommitter.submit( insert( i, i ) ) );
+
+    for ( CompletableFuture<Integer> f : done )
+      assertEquals( "write not committed", 1, (int) f.get() );
+    try
+    {
+      failed.get();
+      fail( "failed write committed" );
+    } catch ( ExecutionException e )
+    {
+      assertTrue( "not the write's failure",
+                  e.getCause() instanceof SQLException );
+    }
+    assertEquals( "not one commit", 1, commits() - before );
+    assertEquals( "rows", 7, count() );
+    assertEquals( "first write changed", 1, who( 1 ) );
+    assertEquals( "part of failed write kept", -1, who( 5 ) );
+  }
+
+  /**
+   * Each caller of run() is given the result of its own write,
+   *  and every write is committed
+   */
+  @Test
+  public void testConcurrentRun() throws Exception
+  {
+    long before = commits();
+    List<Throwable> errors = new ArrayList<>();
+    Thread[] threads = new Thread[ THREADS ];
+    for ( int t = 0; t < THREADS; t++ )
+    {
+      int who = t;
+      threads[t] = new Thread( () -> {
+        try
+        {
+          for ( int i = 0; i < WRITES; i++ )
+          {
+            int id = who * WRITES + i;
+            int res = theCommitter.run( con -> {
+              insert( id, who ).apply( con );
+              PreparedStatement get = thePool.prepare( con, SQL_WHO );
+              get.setInt( 1, id );
+              try ( ResultSet rs = get.executeQuery() )
+              {
+                rs.next();
+                return rs.getInt( 1 ) * 1000 + id;
+              }
+            } );
+            if ( res != who * 1000 + id )
+              throw new AssertionError( "result of another write " + res );
+          }
+        } catch ( Throwable e )
+        {
+          synchronized ( errors ) { errors.add( e ); }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread t : threads ) t.join();
+    assertEquals( "writes failed " + errors, 0, errors.size() );
+    assertEquals( "rows", THREADS * WRITES, count() );
+    assertTrue( "writes not grouped",
+                commits() - before < THREADS * WRITES );
+  }
+
+  private GroupCommitter.Write<Integer> insert( int id, int who )
+  {
+    return con -> {
+      PreparedStatement ins = thePool.prepare( con, SQL_INSERT );
+      ins.setInt( 1, id );
+      ins.setInt( 2, who );
+      return ins.executeUpdate();
+    };
+  }
+
+  /**
+   * @return transactions committed so far
+   */
+  private long commits()
+  {
+    Matcher m = Pattern.compile( "commits (\\d+)" )
+                       .matcher( theCommitter.statistics() );
+    assertTrue( "no commits in statistics", m.find() );
+    return Long.parseLong( m.group( 1 ) );
+  }
+
+  private int count() throws SQLException
+  {
+    return query( "select count(*) from GroupTest" );
+  }
+
+  /**
+   * @return who wrote the row, -1 if not there
+   */
+  private int who( int id ) throws SQLException
+  {
+    return query( "select who from GroupTest where id = " + id );
+  }
+
+  private int query( String sql ) throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try ( Statement stmt = con.createStatement();
+          ResultSet rs = stmt.executeQuery( sql ) )
+    {
+      return rs.next() ? rs.getInt( 1 ) : -1;
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  private void update( String sql ) throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try ( Statement stmt = con.createStatement() )
+    {
+      stmt.execute( sql );
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package dbAccess;
+
+import debug.DEBUG;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of product pictures, keyed by product number.
+ * Pictures are held decoded and already scaled to fit the
+ *  picture area of a client (DBAccess.imageSize() pixels square).
+ * The least recently used pictures are removed when the memory
+ *  used by the pictures held goes over DBAccess.imageCacheBytes().
+ * One cache is shared by all users in the same process.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ImageCache
+{
+  private static ImageCache theCache = null;
+
+  private final int   theSize;                  // Pixels square
+  private final long  theMaxBytes;              // Memory allowed
+  private long        theBytes = 0;             // Memory used
+  private final Map<String,Cached> theImages =  // LRU order
+    new LinkedHashMap<>( 16, 0.75f, true );
+
+  private final AtomicLong theHits   = new AtomicLong();
+  private final AtomicLong theMisses = new AtomicLong();
+
+  /**
+   * A picture held in the cache
+   */
+  private static class Cached
+  {
+    private final String    theFilename;
+    private final ImageIcon theIcon;
+    private final long      theBytes;
+
+    private Cached( String filename, ImageIcon icon, long bytes )
+    {
+      theFilename = filename;
+      theIcon     = icon;
+      theBytes    = bytes;
+    }
+  }
+
+  /**
+   * Return the image cache, creating it when first asked for
+   * @param dbDriver Gives the size of the cache and of the pictures
+   * @return The image cache
+   */
+  public static synchronized ImageCache getCache( DBAccess dbDriver )
+  {
+    if ( theCache == null )
+    {
+      theCache = new ImageCache( dbDriver.imageSize(),
+                                 dbDriver.imageCacheBytes() );
+      Runtime.getRuntime().addShutdownHook( new Thread( () ->
+        DEBUG.traceA( "ImageCache: %s", theCache.statistics() ) ) );
+    }
+    return theCache;
+  }
+
+  /**
+   * Create a cache
+   * @param size     Pictures are scaled to fit size x size pixels
+   * @param maxBytes Maximum memory used by the pictures held
+   */
+  public ImageCache( int size, long maxBytes )
+  {
+    theSize     = size;
+    theMaxBytes = maxBytes;
+  }
+
+  /**
+   * Return the cached picture of the product
+   * @param pNum Product number
+   * @return picture or null if not cached
+   */
+  public synchronized ImageIcon get( String pNum )
+  {
+    Cached entry = theImages.get( pNum );
+    ( entry == null ? theMisses : theHits ).incrementAndGet();
+    return entry == null ? null : entry.theIcon;
+  }
+
+  /**
+   * Read, decode and scale the picture of the product
+   *  and hold it in the cache.
+   * The file is not read again if the product already has
+   *  this picture cached.
+   * @param pNum     Product number
+   * @param filename File holding the picture
+   * @return picture scaled to fit the picture area
+   */
+  public ImageIcon load( String pNum, String filename )
+  {
+    synchronized ( this )
+    {
+      Cached entry = theImages.get( pNum );
+      if ( entry != null && entry.theFilename.equals( filename ) )
+        return entry.theIcon;
+    }
+    BufferedImage image = null;
+    try
+    {
+      image = ImageIO.read( new File( filename ) );
+    } catch ( IOException e )
+    {
+      DEBUG.trace( "ImageCache: %s %s", filename, e.getMessage() );
+    }
+    if ( image == null )                        // Not an image
+      return new ImageIcon( filename );         //  so not cached
+    BufferedImage scaled = scale( image );
+    ImageIcon icon = new ImageIcon( scaled );
+    put( pNum, new Cached( filename, icon,
+                           4L * scaled.getWidth() * scaled.getHeight() ) );
+    return icon;
+  }
+
+  /**
+   * Returns the hits and misses of the cache
+   * @return description of cache use
+   */
+  public synchronized String statistics()
+  {
+    long hits   = theHits.get();
+    long misses = theMisses.get();
+    return String.format( "images %d bytes %d/%d hits %d misses %d",
+                          theImages.size(), theBytes, theMaxBytes,
+                          hits, misses );
+  }
+
+  private synchronized void put( String pNum, Cached entry )
+  {
+    Cached old = theImages.put( pNum, entry );
+    if ( old != null ) theBytes -= old.theBytes;
+    theBytes += entry.theBytes;
+    Iterator<Cached> it = theImages.values().iterator();
+    while ( theBytes > theMaxBytes && it.hasNext() )  // Least recent first
+    {
+      theBytes -= it.next().theBytes;
+      it.remove();
+    }
+  }
+
+  /**
+   * Scale the image down to fit the picture area, keeping its shape
+   * @param image Image as read
+   * @return Scaled image
+   */
+  private BufferedImage scale( BufferedImage image )
+  {
+    double ratio = Math.min( 1.0,
+                   Math.min( (double) theSize / image.getWidth(),
+                             (double) theSize / image.getHeight() ) );
+    int w = Math.max( 1, (int) Math.round( image.getWidth()  * ratio ) );
+    int h = Math.max( 1, (int) Math.round( image.getHeight() * ratio ) );
+    BufferedImage res = new BufferedImage( w, h, BufferedImage.TYPE_INT_RGB );
+    Graphics2D g = res.createGraphics();
+    g.setRenderingHint( RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR );
+    g.drawImage( image, 0, 0, w, h, null );
+    g.dispose();
+    return res;
+  }
+}
@@ -0,0 +1,750 @@
+package dbAccess;
+
+/**
+ * Implements Read /Write access to the stock list
+ * The stock list is held in a memory-mapped file
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+import catalogue.Basket;
+import catalogue.Money;
+import catalogue.Product;
+import debug.DEBUG;
+import middle.StockEvents;
+import middle.StockException;
+import middle.StockReadWriter;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The file is a header followed by one fixed size record per product,
+// in the order the products were added:
+//   header  magic, record size, number of records, format (4 ints)
+//   record  productNo (12 chars), description (40 chars),
+//           picture (80 chars), price (long, pence), stockLevel (int)
+// A file of format 0 holds the price as a double of pounds, it is
+// converted to format 1 when opened.
+// Strings are padded with \0, one too long for its field is refused
+// rather than cut short. An index from product number to record,
+// and sorted indexes of the stock levels and prices (see ValueIndex),
+// are built when the file is opened.
+// A change is written straight into the mapped file so is not lost if
+// the program fails, the file is forced to disk every
+// DBAccess.journalFlushInterval() ms, or after each change if
+// DBAccess.mappedSync().
+// The file is filled from the database tables when it is first made,
+// or again by BulkLoad -reimport. exportDatabase() writes it back to
+// them every DBAccess.mappedExportInterval() ms and when the program
+// ends, so reports and the SalesLedger made from the tables are not
+// left behind. BulkLoad -export writes it back on demand.
+// Each change is published to StockEvents once made, the products
+// changed are held from before the change until then.
+
+/**
+  * Implements read/write access to the stock list
+  *  held in a memory-mapped file of fixed size records.
+  */
+public class MappedStockRW implements StockReadWriter
+{
+  private static final int MAGIC    = 0x43534d46;      // "CSMF"
+  private static final int NUM_LEN  = 12;              // Chars
+  private static final int DESC_LEN = 40;              //
+  private static final int PIC_LEN  = 80;              //
+  private static final int O_NUM    = 0;               // Offsets
+  private static final int O_DESC   = O_NUM   + 2 * NUM_LEN;
+  private static final int O_PIC    = O_DESC  + 2 * DESC_LEN;
+  private static final int O_PRICE  = O_PIC   + 2 * PIC_LEN;
+  private static final int O_LEVEL  = O_PRICE + 8;
+  private static final int RECORD   = O_LEVEL + 4;     // Bytes
+  private static final int HEADER   = 16;              // Bytes
+  private static final int H_COUNT  = 8;               // Offset
+  private static final int H_FORMAT = 12;              // Offset
+  private static final int FORMAT   = 1;               // Price in pence
+  private static final int STRIPES  = 64;              // Locks
+
+  private static final String SQL_ALL =
+    "select ProductTable.productNo, description, picture, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  StockTable.productNo   = ProductTable.productNo";
+  private static final String SQL_UPDATE_PRODUCT =
+    "update ProductTable set description = ?, picture = ?, price = ? " +
+    "  where productNo = ?";
+  private static final String SQL_UPDATE_STOCK =
+    "update StockTable set stockLevel = ? where productNo = ?";
+  private static final String SQL_INSERT_PRODUCT =
+    "insert into ProductTable values ( ?, ?, ?, ? )";
+  private static final String SQL_INSERT_STOCK =
+    "insert into StockTable values ( ?, ? )";
+
+  private final DBAccess      theDB;                   // Import/export
+  private final boolean       theSync;                 // Force each change
+  private final ImageCache    theImages;
+  private final FileChannel   theChannel;
+  private volatile MappedByteBuffer theMap;            // Whole file
+  private volatile int        theCount = 0;            // Records
+  private final Map<String,Integer> theIndex = new ConcurrentHashMap<>();
+  private final ReentrantLock[] theLocks = new ReentrantLock[ STRIPES ];
+  private SearchIndex         theSearch = null;        // Made when searched
+  private final ValueIndex    theLevels = new ValueIndex(); // Sorted by
+  private final ValueIndex    thePrices = new ValueIndex(); //  value
+
+  /*
+   * Opens the file DBAccess.mappedFile(), first filling it
+   *  from the database if it does not exist
+   */
+  public MappedStockRW() throws StockException
+  {
+    theDB     = (new DBAccessFactory()).getNewDBAccess();
+    theSync   = theDB.mappedSync();
+    theImages = ImageCache.getCache( theDB );
+    for ( int i = 0; i < STRIPES; i++ )
+      theLocks[i] = new ReentrantLock();
+    File file = new File( theDB.mappedFile() );
+    boolean fresh = ! file.exists();
+    try
+    {
+      theChannel = new RandomAccessFile( file, "rw" ).getChannel();
+      if ( fresh )
+      {
+        map( 1024 );
+        theMap.putInt( 0, MAGIC );
+        theMap.putInt( 4, RECORD );
+        theMap.putInt( H_FORMAT, FORMAT );
+        importDatabase();
+      } else {
+        map( 0 );
+        if ( theMap.getInt( 0 ) != MAGIC || theMap.getInt( 4 ) != RECORD )
+          throw new StockException( "Mapped: " + file + " not a stock file" );
+        theCount = theMap.getInt( H_COUNT );
+        if ( theMap.getInt( H_FORMAT ) == 0 )       // Price as double
+        {
+          for ( int i = 0; i < theCount; i++ )
+            theMap.putLong( offset( i ) + O_PRICE,
+                   Money.of( theMap.getDouble( offset( i ) + O_PRICE ) ) );
+          theMap.putInt( H_FORMAT, FORMAT );
+          force();
+        }
+        if ( theMap.getInt( H_FORMAT ) != FORMAT )
+          throw new StockException( "Mapped: " + file + " format unknown" );
+        for ( int i = 0; i < theCount; i++ )
+        {
+          theIndex.put( getString( i, O_NUM, NUM_LEN ), i );
+          theLevels.add( i, level( i ) );
+          thePrices.add( i, price( i ) );
+        }
+      }
+    } catch ( IOException e )
+    {
+      throw new StockException( "Mapped: " + e.getMessage() );
+    }
+    DEBUG.trace( "MappedStockRW: %s %d products", file, theCount );
+
+    ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread t = new Thread( r, "MappedStockRW flush" );
+        t.setDaemon( true );
+        return t;
+      } );
+    long every = theDB.journalFlushInterval();
+    flusher.scheduleWithFixedDelay( this::force, every, every,
+                                    TimeUnit.MILLISECONDS );
+    long export = theDB.mappedExportInterval();
+    if ( export > 0 )
+      flusher.scheduleWithFixedDelay( this::exportQuietly, export, export,
+                                      TimeUnit.MILLISECONDS );
+    Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+      force();
+      if ( export > 0 ) exportQuietly();
+    } ) );
+  }
+
+  /**
+   * Checks if the product exits in the stock list
+   * @param pNum The product number
+   * @return true if exists otherwise false
+   */
+  public boolean exists( String pNum )
+  {
+    return theIndex.containsKey( pNum.trim() );
+  }
+
+  /**
+   * Returns details about the product in the stock list.
+   *  Assumed to exist.
+   * @param pNum The product number
+   * @return Details in an instance of a Product
+   */
+  public Product getDetails( String pNum )
+  {
+    return lookup( pNum ).orElse( new Product( "0", "", 0.00, 0 ) );
+  }
+
+  /**
+   * Returns details about the product in the stock list
+   * @param pNum The product number
+   * @return Details in an instance of a Product or empty if not found
+   */
+  public Optional<Product> lookup( String pNum )
+  {
+    Integer rec = theIndex.get( pNum.trim() );
+    return Optional.ofNullable( rec == null ? null : read( rec ) );
+  }
+
+  /**
+   * Returns details about many products in the stock list
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+  {
+    Map<String,Product> res = new LinkedHashMap<>();
+    for ( String pNum : pNums )
+    {
+      Integer rec = theIndex.get( pNum.trim() );
+      if ( rec != null )
+        res.put( pNum, read( rec ) );
+    }
+    return res;
+  }
+
+  /**
+   * Finds products by the words of their descriptions,
+   *  the index is made from the records when first searched
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
+   */
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    try
+    {
+      synchronized ( this )
+      {
+        if ( theSearch == null )
+          theSearch = new SearchIndex( into -> {
+            for ( int i = 0; i < theCount; i++ )
+              into.put( getString( i, O_NUM, NUM_LEN ),
+                        getString( i, O_DESC, DESC_LEN ) );
+          } );
+      }
+      return new ArrayList<>( getDetails( theSearch.search( query, from, max ) )
+                                .values() );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "Mapped search: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns the products with least stock, from the index
+   *  of the stock levels
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+  {
+    List<Product> res = new ArrayList<>();
+    for ( int rec : theLevels.range( Long.MIN_VALUE, below - 1L, max ) )
+    {
+      Product pr = read( rec );
+      if ( pr.getQuantity() < below ) res.add( pr );  // Not changed since
+    }
+    return res;
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices, from the
+   *  index of the prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+  {
+    List<Product> res = new ArrayList<>();
+    for ( int rec : thePrices.range( minPrice, maxPrice, max ) )
+    {
+      Product pr = read( rec );
+      if ( pr.getPriceMinor() >= minPrice && pr.getPriceMinor() <= maxPrice )
+        res.add( pr );
+    }
+    return res;
+  }
+
+  /**
+   * Returns 'image' of the product
+   * @param pNum The product number
+   * @return ImageIcon representing the image
+   */
+  public ImageIcon getImage( String pNum )
+  {
+    ImageIcon image = theImages.get( pNum );
+    if ( image != null ) return image;
+    Integer rec = theIndex.get( pNum.trim() );
+    if ( rec == null )
+      return new ImageIcon( "default.jpg" );
+    return theImages.load( pNum, getString( rec, O_PIC, PIC_LEN ) );
+  }
+
+  /**
+   * Customer buys stock, quantity decreased if sucessful.
+   * @param pNum Product number
+   * @param amount Amount of stock bought
+   * @return true if succeeds else false
+   */
+  public boolean buyStock( String pNum, int amount )
+  {
+    DEBUG.trace( "MappedStockRW: buyStock(%s,%d)", pNum, amount );
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      Integer rec = theIndex.get( pNum.trim() );
+      if ( rec == null ) return false;
+      ReentrantLock lock = lockFor( rec );
+      lock.lock();
+      try
+      {
+        int level = level( rec );
+        if ( level < amount ) return false;
+        setLevel( rec, level - amount );
+      } finally
+      {
+        lock.unlock();
+      }
+      changed();
+      StockEvents.sold( pNum, amount );
+      return true;
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Customer buys the whole basket, if any line can not
+   *  be filled nothing is bought.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+  {
+    DEBUG.trace( "MappedStockRW: buyBasket(%d)", bought.size() );
+    List<String> pNums = new ArrayList<>();
+    for ( Product pr : bought )
+      pNums.add( pr.getProductNum() );
+    StockEvents.Held changing = StockEvents.changing( pNums );
+    try
+    {
+      List<Product>        unfilled = new ArrayList<>();
+      Map<Integer,Integer> wanted   = new TreeMap<>();   // Record -> amount
+      for ( Product pr : bought )
+      {
+        Integer rec = theIndex.get( pr.getProductNum().trim() );
+        if ( rec == null )
+          unfilled.add( pr );
+        else
+          wanted.merge( rec, pr.getQuantity(), Integer::sum );
+      }
+      if ( ! unfilled.isEmpty() ) return unfilled;
+
+      List<ReentrantLock> held = new ArrayList<>();
+      try
+      {
+        TreeSet<Integer> stripes = new TreeSet<>();   // Lock in stripe
+        for ( int rec : wanted.keySet() )             //  order so no
+          stripes.add( rec % STRIPES );               //  deadlock
+        for ( int stripe : stripes )
+        {
+          theLocks[ stripe ].lock();
+          held.add( theLocks[ stripe ] );
+        }
+        for ( Product pr : bought )
+        {
+          int rec = theIndex.get( pr.getProductNum().trim() );
+          if ( level( rec ) < wanted.get( rec ) )
+            unfilled.add( pr );
+        }
+        if ( unfilled.isEmpty() )
+          for ( Map.Entry<Integer,Integer> e : wanted.entrySet() )
+            setLevel( e.getKey(), level( e.getKey() ) - e.getValue() );
+      } finally
+      {
+        for ( ReentrantLock lock : held )
+          lock.unlock();
+      }
+      if ( unfilled.isEmpty() )
+      {
+        changed();
+        for ( Product pr : bought )
+          StockEvents.sold( pr.getProductNum(), pr.getQuantity() );
+      }
+      return unfilled;
+    } finally
+    {
+      changing.close();
+    }
+  }
+
+  /**
+   * Adds stock (Re-stocks) to the store.
+   *  Assumed to exist.
+   * @param pNum Product number
+   * @param amount Amount of stock to add
+   */
+  public void addStock( String pNum, int amount )
+         throws StockException
+  {
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      Integer rec = theIndex.get( pNum.trim() );
+      if ( rec == null )
+        throw new StockException( "Mapped addStock: no product " + pNum );
+      ReentrantLock lock = lockFor( rec );
+      lock.lock();
+      try
+      {
+        setLevel( rec, level( rec ) + amount );
+      } finally
+      {
+        lock.unlock();
+      }
+      changed();
+      StockEvents.restocked( pNum, amount );
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Modifies Stock details for a given product number,
+   *  the product is added if not known.
+   * @param detail Product details to change stocklist to
+   * @throws StockException if the description is too long
+   */
+  public void modifyStock( Product detail )
+         throws StockException
+  {
+    checkLength( "description", detail.getDescription(), DESC_LEN );
+    StockEvents.Held held = StockEvents.replacing(
+           Collections.singletonList( detail.getProductNum() ) );
+    try
+    {
+      String pNum = detail.getProductNum().trim();
+      Integer rec = theIndex.get( pNum );
+      if ( rec == null )
+      {
+        append( pNum, detail.getDescription(), "images/Pic" + pNum + ".jpg",
+                detail.getPriceMinor(), detail.getQuantity() );
+        rec = theIndex.get( pNum );             // Or added by another
+      }
+      ReentrantLock lock = lockFor( rec );
+      lock.lock();
+      try
+      {
+        putString( rec, O_DESC, DESC_LEN, detail.getDescription() );
+        setPrice( rec, detail.getPriceMinor() );
+        setLevel( rec, detail.getQuantity() );
+      } finally
+      {
+        lock.unlock();
+      }
+      changed();
+      StockEvents.modified( detail );
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Replace the contents of the file with the products in the database
+   * @throws StockException if problem
+   */
+  public synchronized void importDatabase() throws StockException
+  {
+    Connection     con  = null;
+    ConnectionPool pool = null;
+    try
+    {
+      theDB.loadDriver();
+      pool = ConnectionPool.getPool( theDB );
+      con  = pool.acquire();
+      theIndex.clear();
+      theLevels.clear();
+      thePrices.clear();
+      theCount = 0;
+      try ( ResultSet rs = pool.prepare( con, SQL_ALL ).executeQuery() )
+      {
+        while ( rs.next() )
+          append( rs.getString( "productNo" ).trim(),
+                  rs.getString( "description" ),
+                  rs.getString( "picture" ),
+                  Money.of( rs.getBigDecimal( "price" ) ),
+                  rs.getInt( "stockLevel" ) );
+      }
+      force();
+      DEBUG.traceA( "MappedStockRW: imported %d products", theCount );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL import: " + e.getMessage() );
+    } catch ( StockException e )
+    {
+      throw e;
+    } catch ( Exception e )
+    {
+      throw new StockException( "Can not load database driver." );
+    } finally
+    {
+      if ( pool != null ) pool.release( con );
+    }
+  }
+
+  /**
+   * Write every product in the file to the database tables,
+   *  adding any product not in the database.
+   * @throws StockException if problem
+   */
+  public synchronized void exportDatabase() throws StockException
+  {
+    Connection     con  = null;
+    ConnectionPool pool = null;
+    try
+    {
+      theDB.loadDriver();
+      pool = ConnectionPool.getPool( theDB );
+      con  = pool.acquire();
+      con.setAutoCommit( false );
+      PreparedStatement product = pool.prepare( con, SQL_UPDATE_PRODUCT );
+      PreparedStatement stock   = pool.prepare( con, SQL_UPDATE_STOCK );
+      int count = theCount;
+      for ( int i = 0; i < count; i++ )
+      {
+        Product pr = read( i );
+        product.setString( 1, pr.getDescription() );
+        product.setString( 2, getString( i, O_PIC, PIC_LEN ) );
+        product.setBigDecimal( 3, Money.toDecimal( pr.getPriceMinor() ) );
+        product.setString( 4, pr.getProductNum() );
+        product.addBatch();
+        stock.setInt( 1, pr.getQuantity() );
+        stock.setString( 2, pr.getProductNum() );
+        stock.addBatch();
+      }
+      int[] updated = product.executeBatch();
+      stock.executeBatch();
+
+      PreparedStatement insProduct = pool.prepare( con, SQL_INSERT_PRODUCT );
+      PreparedStatement insStock   = pool.prepare( con, SQL_INSERT_STOCK );
+      int added = 0;
+      for ( int i = 0; i < updated.length; i++ )
+        if ( updated[i] == 0 )                      // Not in database
+        {
+          Product pr = read( i );
+          insProduct.setString( 1, pr.getProductNum() );
+          insProduct.setString( 2, pr.getDescription() );
+          insProduct.setString( 3, getString( i, O_PIC, PIC_LEN ) );
+          insProduct.setBigDecimal( 4, Money.toDecimal( pr.getPriceMinor() ) );
+          insProduct.addBatch();
+          insStock.setString( 1, pr.getProductNum() );
+          insStock.setInt( 2, pr.getQuantity() );
+          insStock.addBatch();
+          added++;
+        }
+      if ( added > 0 )
+      {
+        insProduct.executeBatch();
+        insStock.executeBatch();
+      }
+      con.commit();
+      con.setAutoCommit( true );
+      DEBUG.trace( "MappedStockRW: exported %d products (%d new)",
+                    count, added );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL export: " + e.getMessage() );
+    } catch ( Exception e )
+    {
+      throw new StockException( "Can not load database driver." );
+    } finally
+    {
+      if ( pool != null ) pool.release( con );     // Rolls back if failed
+    }
+  }
+
+  private void exportQuietly()
+  {
+    try
+    {
+      exportDatabase();
+    } catch ( StockException e )
+    {
+      DEBUG.traceA( "MappedStockRW: export failed %s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Add a record to the end of the file, it is indexed
+   *  once it has been written
+   */
+  private synchronized void append( String pNum, String description,
+                                    String picture, long price,
+                                    int stockLevel )
+          throws StockException
+  {
+    checkLength( "product number", pNum, NUM_LEN );
+    checkLength( "description", description, DESC_LEN );
+    checkLength( "picture", picture, PIC_LEN );
+    if ( theIndex.containsKey( pNum ) ) return;   // Added meanwhile
+    int rec = theCount;
+    if ( offset( rec + 1 ) > theMap.capacity() )
+      map( Math.max( 1024, 2 * rec ) );
+    putString( rec, O_NUM,  NUM_LEN,  pNum );
+    putString( rec, O_DESC, DESC_LEN, description );
+    putString( rec, O_PIC,  PIC_LEN,  picture );
+    theMap.putLong( offset( rec ) + O_PRICE, price );
+    theMap.putInt( offset( rec ) + O_LEVEL, stockLevel );
+    theCount = rec + 1;
+    theMap.putInt( H_COUNT, theCount );
+    theLevels.add( rec, stockLevel );
+    thePrices.add( rec, price );
+    theIndex.put( pNum, rec );
+  }
+
+  /**
+   * Map the whole file, first making it large enough for the records.
+   * A buffer mapped before still writes to the same file.
+   */
+  private void map( int records ) throws StockException
+  {
+    try
+    {
+      long size = Math.max( theChannel.size(), offset( records ) );
+      theMap = theChannel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+    } catch ( IOException e )
+    {
+      throw new StockException( "Mapped: " + e.getMessage() );
+    }
+  }
+
+  private Product read( int rec )
+  {
+    ReentrantLock lock = lockFor( rec );
+    lock.lock();
+    try
+    {
+      return Product.ofMinor( getString( rec, O_NUM,  NUM_LEN ),
+                              getString( rec, O_DESC, DESC_LEN ),
+                              price( rec ),
+                              level( rec ) );
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private int level( int rec )
+  {
+    return theMap.getInt( offset( rec ) + O_LEVEL );
+  }
+
+  private void setLevel( int rec, int level )
+  {
+    theLevels.move( rec, level( rec ), level );
+    theMap.putInt( offset( rec ) + O_LEVEL, level );
+  }
+
+  private long price( int rec )
+  {
+    return theMap.getLong( offset( rec ) + O_PRICE );
+  }
+
+  private void setPrice( int rec, long price )
+  {
+    thePrices.move( rec, price( rec ), price );
+    theMap.putLong( offset( rec ) + O_PRICE, price );
+  }
+
+  private String getString( int rec, int at, int len )
+  {
+    MappedByteBuffer map = theMap;
+    StringBuilder res = new StringBuilder( len );
+    for ( int i = 0; i < len; i++ )
+    {
+      char c = map.getChar( offset( rec ) + at + 2 * i );
+      if ( c == 0 ) break;
+      res.append( c );
+    }
+    return res.toString();
+  }
+
+  private void putString( int rec, int at, int len, String s )
+  {
+    MappedByteBuffer map = theMap;
+    String value = s == null ? "" : s;
+    for ( int i = 0; i < len; i++ )
+      map.putChar( offset( rec ) + at + 2 * i,
+                   i < value.length() ? value.charAt( i ) : 0 );
+  }
+
+  /**
+   * A string must fit its field, as it is not cut short
+   */
+  private static void checkLength( String what, String s, int len )
+          throws StockException
+  {
+    if ( s != null && s.length() > len )
+      throw new StockException( String.format(
+        "Mapped: %s longer than %d characters %s", what, len, s ) );
+  }
+
+  private static int offset( int rec )
+  {
+    return HEADER + rec * RECORD;
+  }
+
+  private ReentrantLock lockFor( int rec )
+  {
+    return theLocks[ rec % STRIPES ];
+  }
+
+  private void changed()
+  {
+    if ( theSync ) force();
+  }
+
+  /**
+   * Write changes to disk
+   */
+  private void force()
+  {
+    theMap.force();
+  }
+}
@@ -0,0 +1,203 @@
+package dbAccess;
+
+import catalogue.Product;
+import middle.StockException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test of the MappedStockRW class, the file is first
+ *  filled from the database made by Setup
+ */
+public class MappedStockRWTest
+{
+  private static final String PRODUCT = "0002";     // In the seed data
+  private static final int    RECORD  = 276;        // Bytes
+  private static final int    MORE    = 1100;       // Products added
+
+  private File theDir  = null;                      // Holds the file
+  private File theFile = null;                      // Stock file
+
+  @Before
+  public void setUp() throws Exception
+  {
+    theDir  = Files.createTempDirectory( "mapped" ).toFile();
+    theFile = new File( theDir, "stock.map" );
+    System.setProperty( "catshop.mapped", theFile.getPath() );
+    System.setProperty( "catshop.mapped.export", "0" );   // Leave database
+  }
+
+  @After
+  public void tearDown()
+  {
+    System.clearProperty( "catshop.mapped" );
+    System.clearProperty( "catshop.mapped.export" );
+    File[] left = theDir.listFiles();
+    if ( left != null )
+      for ( File file : left ) file.delete();
+    theDir.delete();
+  }
+
+  @Test
+  public void testTooLong() throws Exception
+  {
+    MappedStockRW stock = new MappedStockRW();
+    Product before = stock.getDetails( PRODUCT );
+    Product after  = stock.getDetails( PRODUCT );
+    after.setDescription( repeat( 'd', 41 ) );
+    after.setQuantity( before.getQuantity() + 1 );
+    try
+    {
+      stock.modifyStock( after );
+      fail( "long description cut short" );
+    } catch ( StockException e )
+    {
+      // Expected
+    }
+    Product now = stock.getDetails( PRODUCT );
+    assertEquals( "description changed",
+                  before.getDescription(), now.getDescription() );
+    assertEquals( "level changed", before.getQuantity(), now.getQuantity() );
+
+    after.setDescription( repeat( 'd', 40 ) );
+    stock.modifyStock( after );
+    assertEquals( "description", repeat( 'd', 40 ),
+                  stock.getDetails( PRODUCT ).getDescription() );
+
+    try
+    {
+      stock.modifyStock( Product.ofMinor( repeat( '9', 13 ), "Long", 100, 1 ) );
+      fail( "long product number cut short" );
+    } catch ( StockException e )
+    {
+      assertFalse( "added", stock.exists( repeat( '9', 12 ) ) );
+    }
+    try
+    {
+      stock.modifyStock( Product.ofMinor( "L001", repeat( 'd', 41 ), 100, 1 ) );
+      fail( "new product with long description added" );
+    } catch ( StockException e )
+    {
+      assertFalse( "added", stock.exists( "L001" ) );
+    }
+  }
+
+  /**
+   * Add more products than the file was first made for, so it is
+   *  mapped again, then open it again
+   */
+  @Test
+  public void testGrowth() throws Exception
+  {
+    MappedStockRW stock = new MappedStockRW();
+    long before = theFile.length();
+    for ( int i = 0; i < MORE; i++ )
+      stock.modifyStock( Product.ofMinor( pNum( i ), "Grown " + i,
+                                          1000 + i, i ) );
+    assertTrue( "file not grown", theFile.length() > before );
+    assertEquals( "first added", "Grown 0",
+                  stock.getDetails( pNum( 0 ) ).getDescription() );
+    assertEquals( "last added", MORE - 1,
+                  stock.getDetails( pNum( MORE - 1 ) ).getQuantity() );
+
+    List<Product> low = stock.lowStock( 1, 10 );
+    assertTrue( "level index", low.stream().anyMatch(
+                  pr -> pr.getProductNum().equals( pNum( 0 ) ) ) );
+    List<Product> band = stock.priceRange( 1000 + MORE - 2, 1000 + MORE, 10 );
+    assertEquals( "price index", 2, band.size() );
+    assertEquals( "cheapest first", pNum( MORE - 2 ),
+                  band.get( 0 ).getProductNum() );
+
+    MappedStockRW again = new MappedStockRW();
+    assertEquals( "seed product lost",
+                  stock.getDetails( PRODUCT ).getDescription(),
+                  again.getDetails( PRODUCT ).getDescription() );
+    assertEquals( "added product lost", 1000 + MORE - 1,
+                  again.getDetails( pNum( MORE - 1 ) ).getPriceMinor() );
+    assertEquals( "price index", 1,
+                  again.priceRange( 1000 + MORE - 1, 1000 + MORE, 10 ).size() );
+  }
+
+  /**
+   * A file of format 0, which holds the price as a double of pounds,
+   *  is converted when opened
+   */
+  @Test
+  public void testFormat0() throws Exception
+  {
+    ByteBuffer buf = ByteBuffer.allocate( 16 + 2 * RECORD );
+    buf.putInt( 0x43534d46 ).putInt( RECORD ).putInt( 2 ).putInt( 0 );
+    record( buf, "F001", "Old toaster", 12.99, 5 );
+    record( buf, "F002", "Old kettle",   0.10, 0 );
+    try ( RandomAccessFile raf = new RandomAccessFile( theFile, "rw" ) )
+    {
+      raf.write( buf.array() );
+    }
+
+    MappedStockRW stock = new MappedStockRW();
+    assertEquals( "products", 2, stock.getDetails(
+                    Arrays.asList( "F001", "F002" ) ).size() );
+    assertEquals( "price", 1299, stock.getDetails( "F001" ).getPriceMinor() );
+    assertEquals( "price", 10,   stock.getDetails( "F002" ).getPriceMinor() );
+    assertEquals( "description", "Old toaster",
+                  stock.getDetails( "F001" ).getDescription() );
+    assertEquals( "low stock", Collections.singletonList( "F002" ),
+                  numbers( stock.lowStock( 1, 10 ) ) );
+
+    try ( RandomAccessFile raf = new RandomAccessFile( theFile, "r" ) )
+    {
+      raf.seek( 12 );
+      assertEquals( "format", 1, raf.readInt() );
+    }
+    assertEquals( "converted again", 1299,
+                  new MappedStockRW().getDetails( "F001" ).getPriceMinor() );
+  }
+
+  private static void record( ByteBuffer buf, String pNum, String desc,
+                              double price, int level )
+  {
+    chars( buf, pNum, 12 );
+    chars( buf, desc, 40 );
+    chars( buf, "images/Pic" + pNum + ".jpg", 80 );
+    buf.putDouble( price ).putInt( level );
+  }
+
+  private static void chars( ByteBuffer buf, String s, int len )
+  {
+    for ( int i = 0; i < len; i++ )
+      buf.putChar( i < s.length() ? s.charAt( i ) : 0 );
+  }
+
+  private static List<String> numbers( List<Product> products )
+  {
+    List<String> res = new ArrayList<>();
+    for ( Product pr : products )
+      res.add( pr.getProductNum() );
+    return res;
+  }
+
+  private static String pNum( int i )
+  {
+    return String.format( "%c%03d", (char) ( 'A' + i / 1000 ), i % 1000 );
+  }
+
+  private static String repeat( char c, int n )
+  {
+    return new String( new char[ n ] ).replace( '\0', c );
+  }
+}
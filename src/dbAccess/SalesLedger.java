@@ -0,0 +1,416 @@
+package dbAccess;
+
+import catalogue.Money;
+import debug.DEBUG;
+import middle.StockChangeEvent;
+import middle.StockEvents;
+import middle.StockException;
+import middle.StockListener;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Every sale and return published to StockEvents is queued here, in
+// the thread making it, and the queue is written to the database every
+// DBAccess.ledgerInterval() ms in one transaction, with one batch of
+// inserts per day.
+// The ledger is partitioned by day, each day's entries are held in a
+// table of their own, SalesLedger_yyyymmdd, made when the first entry
+// for that day is written, in the same transaction as the day is added
+// to SalesLedgerDays (schema migration 6), the list of the tables made.
+// So two programs writing the first entries of a day do not both make
+// its table, the second fails, and writes its entries with the next
+// batch. So a report or a reconciliation of a day
+// reads only that day's table, never the stock tables, and old days
+// can be archived or dropped a table at a time.
+// The tables are only ever inserted into. An entry is the time, the
+// till (see StockEvents), the product, the quantity (negative for a
+// return) and the price of the product when the sale was made.
+// The price of every product is read when the ledger starts and kept
+// up to date from the MODIFIED events, which a recorder sees in the
+// same order as the sales, so queueing an entry never waits for the
+// database. Only a product added since is priced when written.
+// If a write fails the entries are kept and written with the next
+// batch, entries not yet written are lost if the program fails.
+// At most DBAccess.ledgerBacklog() entries are kept, beyond that the
+// oldest are dropped, and the net quantity of each product dropped
+// is logged so that the ledger can be put right by hand.
+
+/**
+ * An append only ledger of the sales and returns made.
+ * One ledger is shared by all users of the same database url.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class SalesLedger implements StockListener
+{
+  private static final Map<String,SalesLedger> theLedgers = new HashMap<>();
+
+  private static final DateTimeFormatter DAY =
+    DateTimeFormatter.ofPattern( "yyyyMMdd" );
+  private static final String TABLE      = "SalesLedger_";
+  private static final String SQL_CREATE =
+    "create table %s (" +
+    "  entry     Bigint generated always as identity primary key," +
+    "  saleTime  Timestamp not null," +
+    "  till      Varchar(40) not null," +
+    "  productNo Varchar(12) not null," +
+    "  quantity  Integer not null," +
+    "  price     Decimal(12,2))";
+  private static final String SQL_INSERT =
+    "insert into %s ( saleTime, till, productNo, quantity, price ) " +
+    "  values ( ?, ?, ?, ?, ? )";
+  private static final String SQL_PRICE =
+    "select price from ProductTable where productNo = ?";
+  private static final String SQL_PRICES =
+    "select productNo, price from ProductTable";
+  private static final String SQL_DAY_GET =
+    "select day from SalesLedgerDays where day = ?";
+  private static final String SQL_DAY_ADD =
+    "insert into SalesLedgerDays values ( ?, current_timestamp )";
+  private static final String SQL_TOTALS =
+    "select productNo, sum(quantity) from %s group by productNo";
+
+  /**
+   * A sale (quantity positive) or return (negative)
+   */
+  private static class Entry
+  {
+    private final long   theTime;
+    private final String theTill;
+    private final String theProductNum;
+    private final int    theQuantity;
+    private final Long   thePrice;              // Minor, null if unknown
+
+    private Entry( StockChangeEvent e, int quantity, Long price )
+    {
+      theTime       = e.getTime();
+      theTill       = e.getTill();
+      theProductNum = e.getProductNum();
+      theQuantity   = quantity;
+      thePrice      = price;
+    }
+  }
+
+  private final ConnectionPool                thePool;
+  private final Map<String,Long>              thePrices =   // Minor
+    new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Entry>  theQueue =
+    new ConcurrentLinkedQueue<>();
+  private final List<Entry>                   theFailed = new ArrayList<>();
+  private final Set<String>                   theTables = new HashSet<>();
+  private final int                           theBacklog;   // Most kept
+  private long                                theWritten = 0;
+  private long                                theDropped = 0;
+
+  /**
+   * Start recording the sales and returns made to the ledger
+   *  of the database
+   * @param dbDriver Database holding the ledger
+   * @return The ledger of that database
+   * @throws StockException if problem
+   */
+  public static SalesLedger getLedger( DBAccess dbDriver )
+         throws StockException
+  {
+    synchronized ( theLedgers )
+    {
+      SalesLedger ledger = theLedgers.get( dbDriver.urlOfDatabase() );
+      if ( ledger == null )
+      {
+        try
+        {
+          dbDriver.loadDriver();
+          ledger = new SalesLedger( dbDriver,
+                                    ConnectionPool.getPool( dbDriver ) );
+        } catch ( SQLException e )
+        {
+          throw new StockException( "SQL ledger: " + e.getMessage() );
+        } catch ( Exception e )
+        {
+          throw new StockException( "Can not load database driver." );
+        }
+        theLedgers.put( dbDriver.urlOfDatabase(), ledger );
+      }
+      return ledger;
+    }
+  }
+
+  private SalesLedger( DBAccess dbDriver, ConnectionPool pool )
+          throws SQLException
+  {
+    thePool    = pool;
+    theBacklog = Math.max( 1, dbDriver.ledgerBacklog() );
+    StockEvents.addRecorder( this );              // Before the prices
+    readPrices();                                 //  so none are missed
+    ScheduledExecutorService writer =
+      Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread t = new Thread( r, "SalesLedger" );
+        t.setDaemon( true );
+        return t;
+      } );
+    long every = dbDriver.ledgerInterval();
+    writer.scheduleWithFixedDelay( this::writeQuietly, every, every,
+                                   TimeUnit.MILLISECONDS );
+    Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+      writeQuietly();
+      DEBUG.traceA( "SalesLedger: %d entries written %d dropped",
+                    theWritten, theDropped );
+    } ) );
+  }
+
+  /**
+   * Name of the table holding the entries of a day
+   * @param day The day
+   * @return name of the table
+   */
+  public static String tableFor( LocalDate day )
+  {
+    return TABLE + DAY.format( day );
+  }
+
+  /**
+   * Queue a sale or return at the price of the product now,
+   *  called in the thread making it
+   */
+  public void stockChanged( StockChangeEvent e )
+  {
+    switch ( e.getKind() )
+    {
+      case SOLD :
+        theQueue.add( new Entry( e, e.getAmount(),
+                                 thePrices.get( e.getProductNum() ) ) );
+        break;
+      case RETURNED :
+        theQueue.add( new Entry( e, -e.getAmount(),
+                                 thePrices.get( e.getProductNum() ) ) );
+        break;
+      case MODIFIED :
+        thePrices.put( e.getProductNum(), e.getProduct().getPriceMinor() );
+        break;
+      default :
+        break;
+    }
+  }
+
+  /**
+   * Write the entries queued to the ledger tables
+   * @throws SQLException if problem, the entries are kept
+   */
+  public synchronized void write() throws SQLException
+  {
+    List<Entry> batch = new ArrayList<>( theFailed );
+    theFailed.clear();
+    for ( Entry e = theQueue.poll(); e != null; e = theQueue.poll() )
+      batch.add( e );
+    if ( batch.isEmpty() ) return;
+
+    Map<String,List<Entry>> byDay = new TreeMap<>();
+    for ( Entry e : batch )
+      byDay.computeIfAbsent( tableFor( dayOf( e.theTime ) ),
+                             k -> new ArrayList<>() ).add( e );
+    List<String> made = new ArrayList<>();          // Tables made
+    Connection con = null;
+    try
+    {
+      con = thePool.acquire();                      // Kept if this fails
+      con.setAutoCommit( false );
+      Map<String,BigDecimal> prices = prices( con, batch );
+      for ( Map.Entry<String,List<Entry>> day : byDay.entrySet() )
+      {
+        if ( ! theTables.contains( day.getKey() ) )
+        {
+          create( con, day.getKey(),
+                  dayOf( day.getValue().get( 0 ).theTime ) );
+          made.add( day.getKey() );
+        }
+        PreparedStatement ins =
+          thePool.prepare( con, String.format( SQL_INSERT, day.getKey() ) );
+        for ( Entry e : day.getValue() )
+        {
+          ins.setTimestamp( 1, new Timestamp( e.theTime ) );
+          ins.setString( 2, e.theTill );
+          ins.setString( 3, e.theProductNum );
+          ins.setInt( 4, e.theQuantity );
+          ins.setBigDecimal( 5, e.thePrice != null
+                                  ? Money.toDecimal( e.thePrice )
+                                  : prices.get( e.theProductNum ) );
+          ins.addBatch();
+        }
+        ins.executeBatch();
+      }
+      con.commit();
+      theTables.addAll( made );
+      theWritten += batch.size();
+      DEBUG.trace( "SalesLedger: wrote %d", batch.size() );
+    } catch ( SQLException e )
+    {
+      try
+      {
+        if ( con != null ) con.rollback();          // Tables made too
+      } catch ( SQLException ignore ) {}
+      theFailed.addAll( batch );                    // Try again later
+      dropOverBacklog();
+      throw e;
+    } finally
+    {
+      if ( con != null )
+      {
+        con.setAutoCommit( true );
+        thePool.release( con );
+      }
+    }
+  }
+
+  /**
+   * Net quantity of each product sold on a day, read from
+   *  that day's table only. Entries not yet written are not included.
+   * @param day The day
+   * @return product number to quantity sold less quantity returned
+   * @throws SQLException if problem, no table if nothing sold that day
+   */
+  public Map<String,Integer> totals( LocalDate day ) throws SQLException
+  {
+    Map<String,Integer> res = new TreeMap<>();
+    Connection con = thePool.acquire();
+    try ( Statement stmt = con.createStatement();
+          ResultSet rs = stmt.executeQuery(
+                           String.format( SQL_TOTALS, tableFor( day ) ) ) )
+    {
+      while ( rs.next() )
+        res.put( rs.getString( 1 ), rs.getInt( 2 ) );
+    } finally
+    {
+      thePool.release( con );
+    }
+    return res;
+  }
+
+  /**
+   * Drop the oldest entries kept beyond the backlog, logging
+   *  the net quantity of each product dropped
+   */
+  private void dropOverBacklog()
+  {
+    int over = theFailed.size() - theBacklog;
+    if ( over <= 0 ) return;
+    List<Entry> dropped = theFailed.subList( 0, over );
+    Map<String,Integer> net = new TreeMap<>();
+    for ( Entry e : dropped )
+      net.merge( e.theProductNum, e.theQuantity, Integer::sum );
+    DEBUG.traceA( "SalesLedger: dropped %d entries %s to %s, net sold %s",
+                  over, Instant.ofEpochMilli( dropped.get( 0 ).theTime ),
+                  Instant.ofEpochMilli( dropped.get( over - 1 ).theTime ),
+                  net );
+    dropped.clear();
+    theDropped += over;
+  }
+
+  private void writeQuietly()
+  {
+    try
+    {
+      write();
+    } catch ( SQLException e )
+    {
+      DEBUG.traceA( "SalesLedger: write failed, %d kept\n%s",
+                    theFailed.size(), e.getMessage() );
+    }
+  }
+
+  /**
+   * Read the price of every product, a price already known
+   *  from a MODIFIED event is newer so is kept
+   */
+  private void readPrices() throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try
+    {
+      PreparedStatement stmt = thePool.prepare( con, SQL_PRICES );
+      stmt.setFetchSize( 1000 );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        while ( rs.next() )
+          if ( rs.getBigDecimal( 2 ) != null )
+            thePrices.putIfAbsent( rs.getString( 1 ).trim(),
+                                   Money.of( rs.getBigDecimal( 2 ) ) );
+      }
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  /**
+   * Current price of each product in the batch not priced
+   *  when the sale was made
+   */
+  private Map<String,BigDecimal> prices( Connection con, List<Entry> batch )
+          throws SQLException
+  {
+    Map<String,BigDecimal> res = new HashMap<>();
+    PreparedStatement stmt = thePool.prepare( con, SQL_PRICE );
+    for ( Entry e : batch )
+    {
+      if ( e.thePrice != null || res.containsKey( e.theProductNum ) )
+        continue;
+      stmt.setString( 1, e.theProductNum );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        res.put( e.theProductNum, rs.next() ? rs.getBigDecimal( 1 ) : null );
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Make the table of a day, if not listed in SalesLedgerDays
+   */
+  private void create( Connection con, String table, LocalDate day )
+          throws SQLException
+  {
+    PreparedStatement get = thePool.prepare( con, SQL_DAY_GET );
+    get.setDate( 1, java.sql.Date.valueOf( day ) );
+    try ( ResultSet rs = get.executeQuery() )
+    {
+      if ( rs.next() ) return;                      // Made by another
+    }
+    try ( Statement stmt = con.createStatement() )
+    {
+      stmt.execute( String.format( SQL_CREATE, table ) );
+    }
+    PreparedStatement add = thePool.prepare( con, SQL_DAY_ADD );
+    add.setDate( 1, java.sql.Date.valueOf( day ) );
+    add.executeUpdate();
+    DEBUG.traceA( "SalesLedger: made %s", table );
+  }
+
+  private static LocalDate dayOf( long time )
+  {
+    return Instant.ofEpochMilli( time ).atZone( ZoneId.systemDefault() )
+                  .toLocalDate();
+  }
+}
@@ -0,0 +1,219 @@
+package dbAccess;
+
+import debug.DEBUG;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the schema of the database up to date.
+ * The version of the schema is held in SchemaVersion, one row for
+ *  each migration applied. Each migration is applied in its own
+ *  transaction, so a failed migration leaves the schema at the
+ *  previous version and the data unchanged.
+ * To change the schema add a new migration to the end of MIGRATIONS,
+ *  never change one that has already been released.
+ * A table created by a migration that already exists, as it was
+ *  made by the program before it was a migration, is kept.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class SchemaMigrator
+{
+  /**
+   * Migrations in order, the first string describes the migration
+   *  the rest are the SQL statements to apply it.
+   * Version n of the schema has the first n migrations applied.
+   */
+  private static final String[][] MIGRATIONS = {
+    { "Primary keys on productNo, stock refers to product",
+      "alter table ProductTable alter column productNo not null",
+      "alter table ProductTable add constraint ProductTable_PK " +
+        "primary key (productNo)",
+      "alter table StockTable alter column productNo not null",
+      "alter table StockTable add constraint StockTable_PK " +
+        "primary key (productNo)",
+      "alter table StockTable add constraint StockTable_FK " +
+        "foreign key (productNo) references ProductTable (productNo)" },
+
+    { "productNo widened to Varchar(12), tables rebuilt",
+      "create table ProductTable2 (" +
+        "productNo Varchar(12) not null, description Varchar(40)," +
+        "picture Varchar(80), price Float)",
+      "insert into ProductTable2 " +
+        "select rtrim(productNo), description, picture, price " +
+        "from ProductTable",
+      "create table StockTable2 (" +
+        "productNo Varchar(12) not null, stockLevel Integer)",
+      "insert into StockTable2 " +
+        "select rtrim(productNo), stockLevel from StockTable",
+      "drop table StockTable",
+      "drop table ProductTable",
+      "rename table ProductTable2 to ProductTable",
+      "rename table StockTable2 to StockTable",
+      "alter table ProductTable add constraint ProductTable_PK " +
+        "primary key (productNo)",
+      "alter table StockTable add constraint StockTable_PK " +
+        "primary key (productNo)",
+      "alter table StockTable add constraint StockTable_FK " +
+        "foreign key (productNo) references ProductTable (productNo)" },
+
+    { "price held exactly as Decimal(12,2), rounded to the penny",
+      "alter table ProductTable add column price2 Decimal(12,2)",
+      "update ProductTable set price2 = " +
+        "cast( floor( price * 100 + 0.5 ) as Decimal(14,0) ) / 100",
+      "alter table ProductTable drop column price",
+      "rename column ProductTable.price2 to price" },
+
+    { "Indexes on stock level and price, for low stock and price range",
+      "create index StockTable_Level on StockTable (stockLevel, productNo)",
+      "create index ProductTable_Price on ProductTable (price, productNo)" },
+
+    { "StockJournalMark, the last write-behind sale written",
+      "create table StockJournalMark ( lastSeq BigInt not null )",
+      "insert into StockJournalMark select 0 from SYSIBM.SYSDUMMY1 " +
+        "where not exists ( select * from StockJournalMark )" },
+
+    { "SalesLedgerDays, the days with a SalesLedger_yyyymmdd table",
+      "create table SalesLedgerDays ( day Date not null primary key, " +
+        "made Timestamp )",
+      "insert into SalesLedgerDays " +
+        "select date( substr( tablename, 13, 4 ) || '-' || " +
+        "substr( tablename, 17, 2 ) || '-' || substr( tablename, 19, 2 ) )," +
+        " current_timestamp from sys.systables " +
+        "where tablename like 'SALESLEDGER\\_%' escape '\\' " +
+        "and length( tablename ) = 20" },
+  };
+
+  private static final String CREATE_TABLE = "create table ";
+
+  private static final String SQL_CREATE =
+    "create table SchemaVersion (" +
+    "  version     Integer not null primary key," +
+    "  description Varchar(80)," +
+    "  applied     Timestamp)";
+  private static final String SQL_LOCK =
+    "lock table SchemaVersion in exclusive mode";
+  private static final String SQL_VERSION =
+    "select max(version) from SchemaVersion";
+  private static final String SQL_APPLIED =
+    "insert into SchemaVersion values ( ?, ?, current_timestamp )";
+
+  /**
+   * @return the version of the schema this code expects
+   */
+  public static int latest()
+  {
+    return MIGRATIONS.length;
+  }
+
+  /**
+   * Apply to the database any migrations not yet applied.
+   * Nothing is done if the catalogue tables have not been created.
+   * @param con Connection to the database, not used by anyone else
+   * @return the version of the schema now
+   * @throws SQLException if a migration fails, or the database
+   *         is of a newer version than this code
+   */
+  public static int migrate( Connection con )
+         throws SQLException
+  {
+    if ( ! tableExists( con, "ProductTable" ) )
+    {
+      DEBUG.traceA( "SchemaMigrator: no catalogue, run Setup" );
+      return 0;
+    }
+    boolean autoCommit = con.getAutoCommit();
+    int version = 0;
+    try ( Statement stmt = con.createStatement() )
+    {
+      if ( ! tableExists( con, "SchemaVersion" ) )
+        stmt.execute( SQL_CREATE );
+      con.setAutoCommit( false );
+      version = version( con );
+      while ( version < MIGRATIONS.length )
+      {
+        stmt.execute( SQL_LOCK );
+        if ( version( con ) != version )      // Applied by another
+        {
+          con.commit();
+          version = version( con );
+          continue;
+        }
+        String[] migration = MIGRATIONS[ version ];
+        DEBUG.traceA( "SchemaMigrator: %d %s", version+1, migration[0] );
+        for ( int i = 1; i < migration.length; i++ )
+          if ( madeBefore( con, migration[i] ) )
+            DEBUG.traceA( "SchemaMigrator: kept %s", migration[i] );
+          else
+            stmt.execute( migration[i] );
+        try ( PreparedStatement ins = con.prepareStatement( SQL_APPLIED ) )
+        {
+          ins.setInt( 1, version+1 );
+          ins.setString( 2, migration[0] );
+          ins.executeUpdate();
+        }
+        con.commit();
+        version++;
+      }
+    } catch ( SQLException e )
+    {
+      if ( ! con.getAutoCommit() ) con.rollback();
+      throw new SQLException( "Schema migration " + (version+1) +
+                              " failed: " + e.getMessage(), e );
+    } finally
+    {
+      con.setAutoCommit( autoCommit );
+    }
+    if ( version > MIGRATIONS.length )
+      throw new SQLException( String.format(
+        "Schema version %d is newer than %d, use a newer program",
+        version, MIGRATIONS.length ) );
+    return version;
+  }
+
+  /**
+   * Return the version of the schema of the database
+   * @param con Connection to the database
+   * @return version, 0 if no migrations applied
+   * @throws SQLException if problem
+   */
+  public static int version( Connection con )
+         throws SQLException
+  {
+    if ( ! tableExists( con, "SchemaVersion" ) ) return 0;
+    try ( Statement stmt = con.createStatement();
+          ResultSet rs = stmt.executeQuery( SQL_VERSION ) )
+    {
+      return rs.next() ? rs.getInt( 1 ) : 0;
+    }
+  }
+
+  /**
+   * Is the statement the creation of a table that already exists
+   */
+  private static boolean madeBefore( Connection con, String sql )
+          throws SQLException
+  {
+    if ( ! sql.startsWith( CREATE_TABLE ) ) return false;
+    String name = sql.substring( CREATE_TABLE.length() ).split( "[ (]" )[0];
+    return tableExists( con, name );
+  }
+
+  private static boolean tableExists( Connection con, String name )
+          throws SQLException
+  {
+    DatabaseMetaData md = con.getMetaData();
+    for ( String n : new String[] { name, name.toUpperCase() } )
+      try ( ResultSet rs = md.getTables( null, null, n, null ) )
+      {
+        if ( rs.next() ) return true;
+      }
+    return false;
+  }
+}
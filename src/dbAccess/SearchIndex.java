@@ -0,0 +1,344 @@
+package dbAccess;
+
+import debug.DEBUG;
+import middle.StockChangeEvent;
+import middle.StockEvents;
+import middle.StockListener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Each product is given a document number, and each word of its
+// description (in lower case) a sorted list of the numbers of the
+// products whose descriptions hold it. The words are kept in order,
+// so the words starting with a prefix are next to each other.
+// A search takes the word of the query that matches fewest products,
+// and checks each of those products for the other words of the query,
+// so a search costs about as much as its most selective word.
+// Every word of the query must start a word of the description, a
+// whole word match ranks above a prefix, then shorter descriptions
+// rank first, then those indexed first.
+// The index listens for products modified, so a change to a
+// description made in this program is seen shortly after it is
+// committed. If it falls behind (RESYNC) every product is read again.
+
+/**
+ * An in-memory inverted index of the product descriptions.
+ * One index is shared by all users of the same database url.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class SearchIndex implements StockListener
+{
+  private static final Map<String,SearchIndex> theIndexes = new HashMap<>();
+
+  private static final String SQL_ALL =
+    "select productNo, description from ProductTable";
+  private static final int    MAX_PAGE = 100;         // Results at a time
+  private static final int    EXACT    = 2;           // Score of a word
+  private static final int    PREFIX   = 1;           //
+  private static final long   DOC      = 0xffffffffL; // Of a rank
+
+  /**
+   * Reads every product into the index
+   */
+  interface Source
+  {
+    void read( SearchIndex into ) throws SQLException;
+  }
+
+  /**
+   * Sorted document numbers of the products holding a word
+   */
+  private static class Postings
+  {
+    private int[] theDocs = new int[2];
+    private int   theSize = 0;
+
+    private void add( int doc )
+    {
+      int at = theSize == 0 || theDocs[ theSize-1 ] < doc
+               ? theSize                                   // Usual case
+               : Arrays.binarySearch( theDocs, 0, theSize, doc );
+      if ( at >= 0 && at < theSize ) return;               // Already held
+      if ( at < 0 ) at = -at - 1;
+      if ( theSize == theDocs.length )
+        theDocs = Arrays.copyOf( theDocs, theSize * 2 );
+      System.arraycopy( theDocs, at, theDocs, at+1, theSize - at );
+      theDocs[ at ] = doc;
+      theSize++;
+    }
+
+    private void remove( int doc )
+    {
+      int at = Arrays.binarySearch( theDocs, 0, theSize, doc );
+      if ( at < 0 ) return;
+      System.arraycopy( theDocs, at+1, theDocs, at, theSize - at - 1 );
+      theSize--;
+    }
+  }
+
+  private final Source                         theSource;
+  private final ReadWriteLock                  theLock  =
+    new ReentrantReadWriteLock();
+  private final Map<String,Integer>            theDocs  = new HashMap<>();
+  private final List<String>                   theNums  = new ArrayList<>();
+  private final List<String[]>                 theWords = new ArrayList<>();
+  private final TreeMap<String,Postings>       theIndex = new TreeMap<>();
+
+  /**
+   * Return the index of the products held in the database,
+   *  reading every product when first asked for.
+   * @param dbDriver Database holding the products
+   * @param pool     Connections to that database
+   * @return The index of that database
+   * @throws SQLException if problem reading the products
+   */
+  static SearchIndex getIndex( DBAccess dbDriver, ConnectionPool pool )
+         throws SQLException
+  {
+    synchronized ( theIndexes )
+    {
+      SearchIndex index = theIndexes.get( dbDriver.urlOfDatabase() );
+      if ( index == null )
+      {
+        index = new SearchIndex( into -> readAll( pool, into ) );
+        theIndexes.put( dbDriver.urlOfDatabase(), index );
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Create an index, subscribing to changes before reading
+   *  the products so that none are missed
+   * @param source Reads every product
+   * @throws SQLException if problem reading the products
+   */
+  SearchIndex( Source source ) throws SQLException
+  {
+    theSource = source;
+    long start = System.currentTimeMillis();
+    StockEvents.subscribe( this, null );
+    source.read( this );
+    DEBUG.trace( "SearchIndex: %d products %d words indexed in %dms",
+                 theNums.size(), theIndex.size(),
+                 System.currentTimeMillis() - start );
+  }
+
+  private static void readAll( ConnectionPool pool, SearchIndex into )
+          throws SQLException
+  {
+    Connection con = pool.acquire();
+    try
+    {
+      PreparedStatement stmt = pool.prepare( con, SQL_ALL );
+      stmt.setFetchSize( 1000 );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        while ( rs.next() )
+          into.put( rs.getString( "productNo" ), rs.getString( "description" ) );
+      }
+    } finally
+    {
+      pool.release( con );
+    }
+  }
+
+  /**
+   * Index the description of a product, replacing any
+   *  description held for it
+   * @param pNum        Product number
+   * @param description Description of the product
+   */
+  void put( String pNum, String description )
+  {
+    pNum = pNum.trim();
+    String[] words = words( description );
+    theLock.writeLock().lock();
+    try
+    {
+      Integer doc = theDocs.get( pNum );
+      if ( doc == null )
+      {
+        doc = theNums.size();
+        theDocs.put( pNum, doc );
+        theNums.add( pNum );
+        theWords.add( new String[0] );
+      }
+      String[] old = theWords.get( doc );
+      if ( Arrays.equals( old, words ) ) return;      // Unchanged
+      for ( String w : old )
+      {
+        Postings p = theIndex.get( w );
+        p.remove( doc );
+        if ( p.theSize == 0 ) theIndex.remove( w );
+      }
+      for ( String w : words )
+        theIndex.computeIfAbsent( w, k -> new Postings() ).add( doc );
+      theWords.set( doc, words );
+    } finally
+    {
+      theLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the products whose descriptions hold the words of
+   *  the query, best match first
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return (at most 100)
+   * @return product numbers found
+   */
+  List<String> search( String query, int from, int max )
+  {
+    String[] words = words( query );
+    from = Math.max( 0, from );
+    max  = Math.min( Math.max( 0, max ), MAX_PAGE );
+    if ( words.length == 0 || max == 0 ) return Collections.emptyList();
+    theLock.readLock().lock();
+    try
+    {
+      String rarest = null;                         // Fewest products
+      long   fewest = Long.MAX_VALUE;
+      for ( String w : words )
+      {
+        long n = count( w, fewest );
+        if ( n == 0 ) return Collections.emptyList();
+        if ( n < fewest ) { fewest = n; rarest = w; }
+      }
+      if ( from >= fewest ) return Collections.emptyList(); // Past the end
+      int keep = (int) Math.min( (long) from + max, fewest );
+      PriorityQueue<Long> best =                    // Worst at head
+        new PriorityQueue<>( keep + 1, Collections.reverseOrder() );
+      BitSet seen = new BitSet( theNums.size() );
+      for ( Postings p : startingWith( rarest ).values() )
+        for ( int i = 0; i < p.theSize; i++ )
+        {
+          int doc = p.theDocs[ i ];
+          if ( seen.get( doc ) ) continue;
+          seen.set( doc );
+          String[] found = theWords.get( doc );
+          int score = score( found, words );
+          if ( score == 0 ) continue;
+          long rank = rank( score, found.length, doc );
+          if ( best.size() == keep && rank >= best.peek() ) continue;
+          best.add( rank );
+          if ( best.size() > keep ) best.poll();
+        }
+      List<Long> ranks = new ArrayList<>( best );
+      Collections.sort( ranks );
+      List<String> res = new ArrayList<>();
+      for ( int i = from; i < ranks.size(); i++ )
+        res.add( theNums.get( (int) ( ranks.get( i ) & DOC ) ) );
+      return res;
+    } finally
+    {
+      theLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Keep the index up to date with the products modified
+   */
+  public void stockChanged( StockChangeEvent e )
+  {
+    switch ( e.getKind() )
+    {
+      case MODIFIED :
+        put( e.getProductNum(), e.getProduct().getDescription() );
+        break;
+      case RESYNC :
+        try
+        {
+          theSource.read( this );                   // Puts every product
+        } catch ( SQLException ex )
+        {
+          DEBUG.traceA( "SearchIndex: read again %s", ex.getMessage() );
+        }
+        break;
+      default :
+        break;
+    }
+  }
+
+  /**
+   * Number of products holding a word starting with the prefix,
+   *  counting stops once over limit
+   */
+  private long count( String prefix, long limit )
+  {
+    long n = 0;
+    for ( Postings p : startingWith( prefix ).values() )
+    {
+      n += p.theSize;
+      if ( n > limit ) break;
+    }
+    return n;
+  }
+
+  private NavigableMap<String,Postings> startingWith( String prefix )
+  {
+    return theIndex.subMap( prefix, true, prefix + Character.MAX_VALUE, false );
+  }
+
+  /**
+   * Rank of a product found, lower is better: higher score,
+   *  then fewer words, then indexed first
+   */
+  private static long rank( int score, int words, int doc )
+  {
+    return ( (long) ( Short.MAX_VALUE - score ) << 48 ) |
+           ( (long) Math.min( words, Short.MAX_VALUE ) << 32 ) | doc;
+  }
+
+  /**
+   * Score of a description, 0 if a word of the query does not
+   *  start one of its words
+   */
+  private static int score( String[] words, String[] query )
+  {
+    int total = 0;
+    for ( String q : query )
+    {
+      int best = 0;
+      for ( String w : words )
+        if ( w.equals( q ) ) { best = EXACT; break; }
+        else if ( w.startsWith( q ) ) best = PREFIX;
+      if ( best == 0 ) return 0;
+      total += best;
+    }
+    return total;
+  }
+
+  /**
+   * The different words of the text, in lower case
+   */
+  private static String[] words( String text )
+  {
+    Set<String> words = new LinkedHashSet<>();
+    if ( text != null )
+      for ( String w : text.toLowerCase( Locale.ROOT ).split( "[^\\p{L}\\p{N}]+" ) )
+        if ( ! w.isEmpty() ) words.add( w );
+    return words.toArray( new String[0] );
+  }
+}
@@ -0,0 +1,116 @@
+package dbAccess;
+
+import catalogue.Product;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the SearchIndex class, the change to a
+ *  description is made in the database made by Setup
+ */
+public class SearchIndexTest
+{
+  private static final String PRODUCT = "0002";     // In the seed data
+  private static final long   WAIT    = 5000;       // For an event, ms
+
+  private SearchIndex theIndex = null;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    theIndex = new SearchIndex( into -> {
+      into.put( "1", "Toaster deluxe" );
+      into.put( "2", "Toast rack" );
+      into.put( "3", "Toasted sandwich maker" );
+      into.put( "4", "Toast" );
+      into.put( "5", "Kettle" );
+    } );
+  }
+
+  @Test
+  public void testExactBeforePrefix()
+  {
+    assertEquals( "ranking",
+                  Arrays.asList( "4", "2", "1", "3" ),
+                  theIndex.search( "toast", 0, 10 ) );
+    assertEquals( "every word must match",
+                  Collections.singletonList( "2" ),
+                  theIndex.search( "ra TOAST", 0, 10 ) );
+    assertTrue( "found without a match",
+                theIndex.search( "toasty", 0, 10 ).isEmpty() );
+  }
+
+  @Test
+  public void testPaging()
+  {
+    assertEquals( "second page",
+                  Arrays.asList( "1", "3" ),
+                  theIndex.search( "toast", 2, 2 ) );
+    assertEquals( "last page", Collections.singletonList( "3" ),
+                  theIndex.search( "toast", 3, 2 ) );
+    assertTrue( "past the end", theIndex.search( "toast", 4, 2 ).isEmpty() );
+    assertTrue( "far past the end",
+                theIndex.search( "toast", 1000, 10 ).isEmpty() );
+    assertTrue( "from overflows",
+                theIndex.search( "toast", Integer.MAX_VALUE - 5, 100 ).isEmpty() );
+    assertEquals( "big page", 4, theIndex.search( "toast", 0, 100 ).size() );
+
+    for ( int i = 0; i < 150; i++ )
+      theIndex.put( "k" + i, "Kettle " + i );
+    assertEquals( "page not capped",
+                  100, theIndex.search( "kettle", 0, 1000 ).size() );
+  }
+
+  @Test
+  public void testPutReplaces()
+  {
+    theIndex.put( "5", "Jug" );
+    assertTrue( "old word found", theIndex.search( "kettle", 0, 10 ).isEmpty() );
+    assertEquals( "new word", Collections.singletonList( "5" ),
+                  theIndex.search( "jug", 0, 10 ) );
+  }
+
+  @Test
+  public void testModifiedDescription() throws Exception
+  {
+    StockRW stock  = new StockRW();
+    Product before = stock.getDetails( PRODUCT );
+    Product after  = stock.getDetails( PRODUCT );
+    after.setDescription( before.getDescription() + " Zebrafish" );
+    try
+    {
+      stock.modifyStock( after );
+      assertEquals( "modified description not indexed",
+                    Collections.singletonList( PRODUCT ),
+                    waitFor( "zebra" ) );
+    } finally
+    {
+      stock.modifyStock( before );
+    }
+    assertTrue( "old description still indexed", waitFor( "zebra" ).isEmpty() );
+  }
+
+  /**
+   * Search until the result changes, the index is told of
+   *  changes after they are committed
+   */
+  private List<String> waitFor( String query ) throws InterruptedException
+  {
+    List<String> first = theIndex.search( query, 0, 10 );
+    long until = System.currentTimeMillis() + WAIT;
+    List<String> res = first;
+    while ( res.equals( first ) && System.currentTimeMillis() < until )
+    {
+      Thread.sleep( 20 );
+      res = theIndex.search( query, 0, 10 );
+    }
+    return res;
+  }
+}
@@ -0,0 +1,52 @@
+package dbAccess;
+
+/**
+ * The tables and test data of a new catalogue.
+ * Used by Setup and to seed an in-memory database.
+ * The tables are created as first released, SchemaMigrator then
+ *  brings them up to date.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class SeedData
+{
+  /**
+   * SQL to create and fill ProductTable and StockTable
+   */
+  public static final String[] SQL = {
+
+  "create table ProductTable ("+
+      "productNo      Char(4)," +
+      "description    Varchar(40)," +
+      "picture        Varchar(80)," +
+      "price          Float)",
+
+  "insert into ProductTable values " +
+     "('0001', '40 inch LED HD TV', 'images/pic0001.jpg', 269.00)",
+  "insert into ProductTable values " +
+     "('0002', 'DAB Radio',         'images/pic0002.jpg', 29.99)",
+  "insert into ProductTable values " +
+     "('0003', 'Toaster',           'images/pic0003.jpg', 19.99)",
+  "insert into ProductTable values " +
+     "('0004', 'Watch',             'images/pic0004.jpg', 29.99)",
+  "insert into ProductTable values " +
+     "('0005', 'Digital Camera',    'images/pic0005.jpg', 89.99)",
+  "insert into ProductTable values " +
+     "('0006', 'MP3 player',        'images/pic0006.jpg', 7.99)",
+  "insert into ProductTable values " +
+     "('0007', '32Gb USB2 drive',   'images/pic0007.jpg', 6.99)",
+
+  "create table StockTable ("+
+      "productNo      Char(4)," +
+      "stockLevel     Integer)",
+
+  "insert into StockTable values ( '0001',  90 )",
+  "insert into StockTable values ( '0002',  20 )",
+  "insert into StockTable values ( '0003',  33 )",
+  "insert into StockTable values ( '0004',  10 )",
+  "insert into StockTable values ( '0005',  17 )",
+  "insert into StockTable values ( '0006',  15 )",
+  "insert into StockTable values ( '0007',  01 )",
+  };
+}
@@ -0,0 +1,576 @@
+package dbAccess;
+
+import debug.DEBUG;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind journal of sales.
+ * A sale is checked against and applied to an in-memory view of
+ *  the stock levels, then appended (and forced) to a local journal
+ *  file. Periodically the sales journalled so far are written to
+ *  StockTable in a single transaction, which also records the
+ *  sequence number of the last sale written in StockJournalMark.
+ * On start up any sales in the journal after that mark are replayed,
+ *  so a sale that was journalled survives a crash.
+ * Each line of the journal ends with a checksum of the line, so a
+ *  line only partly written when the program failed is not replayed.
+ * One journal is shared by all users of the same database url.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class StockJournal
+{
+  private static final Map<String,StockJournal> theJournals = new HashMap<>();
+
+  private static final String SQL_LEVEL =
+    "select stockLevel from StockTable where productNo = ?";
+  private static final String SQL_SELL =
+    "update StockTable set stockLevel = stockLevel - ? where productNo = ?";
+  private static final String SQL_MARK_GET =
+    "select lastSeq from StockJournalMark";
+  private static final String SQL_MARK_INSERT =
+    "insert into StockJournalMark values ( 0 )";
+  private static final String SQL_MARK_SET =
+    "update StockJournalMark set lastSeq = ?";
+
+  private final ConnectionPool thePool;             // Database
+  private final File           theFile;             // Current journal
+  private final Map<String,AtomicInteger> theLevels // In-memory view
+                               = new ConcurrentHashMap<>();
+  private Map<String,Integer>  thePending           // Sold, not yet
+                               = new ConcurrentHashMap<>(); //  written
+  private FileChannel          theOut;              // Append to journal
+  private long                 theSeq;              // Last journalled
+  private long                 theWritten;          // Last in database
+
+  // Sales (read lock) run in parallel, taking the write lock
+  //  stops sales while the pending sales are swapped or a
+  //  restock/modify is made. The flush lock is always taken first.
+  private final ReentrantReadWriteLock theLock      = new ReentrantReadWriteLock();
+  private final ReentrantLock          theFlushLock = new ReentrantLock();
+
+  /**
+   * Return the journal for the database, replaying any sales
+   *  left in it when first asked for.
+   * @param dbDriver Database used
+   * @param pool     Connections to the database
+   * @return The journal for that database
+   * @throws SQLException if problem with the database
+   * @throws IOException if problem with the journal file
+   */
+  static StockJournal getJournal( DBAccess dbDriver, ConnectionPool pool )
+         throws SQLException, IOException
+  {
+    synchronized ( theJournals )
+    {
+      StockJournal journal = theJournals.get( dbDriver.urlOfDatabase() );
+      if ( journal == null )
+      {
+        journal = new StockJournal( dbDriver, pool );
+        theJournals.put( dbDriver.urlOfDatabase(), journal );
+      }
+      return journal;
+    }
+  }
+
+  /**
+   * A journal of its own, replaying any sales left in the file.
+   * Only for tests, otherwise use getJournal()
+   * @param dbDriver Database used
+   * @param pool     Connections to the database
+   * @throws SQLException if problem with the database
+   * @throws IOException if problem with the journal file
+   */
+  StockJournal( DBAccess dbDriver, ConnectionPool pool )
+          throws SQLException, IOException
+  {
+    thePool    = pool;
+    theFile    = new File( dbDriver.journalFile() ).getAbsoluteFile();
+    theWritten = replay( readMark() );
+    theSeq     = theWritten;
+    theOut     = openJournal();
+
+    long every = Math.max( 1, dbDriver.journalFlushInterval() );
+    ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread t = new Thread( r, "StockJournal flush" );
+        t.setDaemon( true );
+        return t;
+      } );
+    flusher.scheduleWithFixedDelay( this::flushQuietly,
+                                    every, every, TimeUnit.MILLISECONDS );
+    Runtime.getRuntime().addShutdownHook(
+      new Thread( this::flushQuietly ) );
+  }
+
+  /**
+   * Sell stock if the in-memory stock level allows it.
+   * @param pNum   Product number
+   * @param amount Amount sold
+   * @return true if sold, false if unknown product or not enough stock
+   * @throws SQLException if problem reading the stock level
+   * @throws IOException if the sale could not be journalled
+   */
+  boolean sell( String pNum, int amount )
+          throws SQLException, IOException
+  {
+    theLock.readLock().lock();
+    try
+    {
+      AtomicInteger level = level( pNum );
+      if ( level == null || ! take( level, amount ) )
+        return false;
+      try
+      {
+        append( Collections.singletonList( pNum ),
+                Collections.singletonList( amount ) );
+      } catch ( IOException e )
+      {
+        level.addAndGet( amount );          // Not sold
+        throw e;
+      }
+      thePending.merge( pNum, amount, Integer::sum );
+      return true;
+    } finally
+    {
+      theLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Sell every line or none of them.
+   * @param pNums   Product numbers
+   * @param amounts Amount of each product sold
+   * @return index of the lines that could not be sold, empty if sold
+   * @throws SQLException if problem reading a stock level
+   * @throws IOException if the sales could not be journalled
+   */
+  List<Integer> sellAll( List<String> pNums, List<Integer> amounts )
+                throws SQLException, IOException
+  {
+    List<Integer> unfilled = new ArrayList<>();
+    List<Integer> taken    = new ArrayList<>();
+    theLock.readLock().lock();
+    try
+    {
+      for ( int i = 0; i < pNums.size(); i++ )
+      {
+        AtomicInteger level = level( pNums.get(i) );
+        if ( level != null && take( level, amounts.get(i) ) )
+          taken.add( i );
+        else
+          unfilled.add( i );
+      }
+      try
+      {
+        if ( unfilled.isEmpty() )
+        {
+          List<String>  soldNums    = new ArrayList<>();
+          List<Integer> soldAmounts = new ArrayList<>();
+          for ( int i : taken )
+          {
+            soldNums.add( pNums.get(i) );
+            soldAmounts.add( amounts.get(i) );
+          }
+          append( soldNums, soldAmounts );
+        }
+      } catch ( IOException e )
+      {
+        unfilled.addAll( taken );           // Treat as not sold
+        throw e;
+      } finally
+      {
+        if ( ! unfilled.isEmpty() )         // Put back what was taken
+          for ( int i : taken )
+            theLevels.get( pNums.get(i) ).addAndGet( amounts.get(i) );
+      }
+      if ( unfilled.isEmpty() )
+        for ( int i : taken )
+          thePending.merge( pNums.get(i), amounts.get(i), Integer::sum );
+      return unfilled;
+    } finally
+    {
+      theLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the in-memory stock level, if the product has been sold
+   *  through the journal, this includes sales not yet in the database.
+   * @param pNum Product number
+   * @return stock level or null if not held in memory
+   */
+  Integer knownLevel( String pNum )
+  {
+    AtomicInteger level = theLevels.get( pNum );
+    return level == null ? null : level.get();
+  }
+
+  /**
+   * Returns the products with sales not yet written to the database
+   * @return their product numbers
+   */
+  Set<String> pending()
+  {
+    theLock.readLock().lock();
+    try
+    {
+      return new HashSet<>( thePending.keySet() );
+    } finally
+    {
+      theLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stop sales so the database can be changed directly.
+   * Must be followed by unlockWrites()
+   */
+  void lockWrites()
+  {
+    theFlushLock.lock();
+    theLock.writeLock().lock();
+  }
+
+  void unlockWrites()
+  {
+    theLock.writeLock().unlock();
+    theFlushLock.unlock();
+  }
+
+  /**
+   * Stock added directly to the database (writes locked)
+   * @param pNum   Product number
+   * @param amount Amount added
+   */
+  void restocked( String pNum, int amount )
+  {
+    AtomicInteger level = theLevels.get( pNum );
+    if ( level != null ) level.addAndGet( amount );
+  }
+
+  /**
+   * Stock level set directly in the database, after a flush()
+   *  (writes locked)
+   * @param pNum  Product number
+   * @param level New stock level
+   */
+  void modified( String pNum, int level )
+  {
+    theLevels.put( pNum, new AtomicInteger( level ) );
+  }
+
+  /**
+   * Write all journalled sales to the database in one transaction.
+   * @throws SQLException if the database could not be updated,
+   *         the sales are kept and written by a later flush
+   * @throws IOException if problem with the journal file
+   */
+  void flush() throws SQLException, IOException
+  {
+    theFlushLock.lock();
+    try
+    {
+      Map<String,Integer> batch;
+      long upTo;
+      File done;
+      theLock.writeLock().lock();
+      try
+      {
+        if ( theSeq == theWritten ) return;   // Nothing to write
+        batch      = thePending;
+        thePending = new ConcurrentHashMap<>();
+        upTo       = theSeq;
+        theOut.close();                     // Start new journal
+        done       = new File( theFile.getPath() + "." + upTo );
+        if ( ! theFile.renameTo( done ) )
+          throw new IOException( "Can not rename " + theFile );
+        theOut     = openJournal();
+      } finally
+      {
+        theLock.writeLock().unlock();
+      }
+
+      try
+      {
+        write( batch, upTo );
+      } catch ( SQLException e )
+      {
+        batch.forEach( ( pNum, amount ) ->   // Try again later
+          thePending.merge( pNum, amount, Integer::sum ) );
+        throw e;
+      }
+      theWritten = upTo;
+      for ( File old : journals() )          // Now in the database
+        if ( old != theFile && sequenceOf( old ) <= upTo )
+          old.delete();
+      DEBUG.trace( "StockJournal: flushed %d products up to #%d",
+                   batch.size(), upTo );
+    } finally
+    {
+      theFlushLock.unlock();
+    }
+  }
+
+  private void flushQuietly()
+  {
+    try
+    {
+      flush();
+    } catch ( Exception e )
+    {
+      DEBUG.traceA( "StockJournal: flush failed %s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Decrement the level if there is enough stock
+   */
+  private boolean take( AtomicInteger level, int amount )
+  {
+    while ( true )
+    {
+      int now = level.get();
+      if ( now < amount ) return false;
+      if ( level.compareAndSet( now, now - amount ) ) return true;
+    }
+  }
+
+  /**
+   * Return the in-memory stock level, reading it from
+   *  the database the first time the product is sold.
+   * @return level or null if no such product
+   */
+  private AtomicInteger level( String pNum ) throws SQLException
+  {
+    AtomicInteger level = theLevels.get( pNum );
+    if ( level != null ) return level;
+    Connection con = thePool.acquire();
+    try
+    {
+      PreparedStatement stmt = thePool.prepare( con, SQL_LEVEL );
+      stmt.setString( 1, pNum );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        if ( ! rs.next() ) return null;
+        int inDB = rs.getInt( "stockLevel" );
+        return theLevels.computeIfAbsent( pNum,
+                                          k -> new AtomicInteger( inDB ) );
+      }
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  /**
+   * Append sales to the journal in one write and force it to disk.
+   * The write is serialised, the force is not so that
+   *  sales made at the same time share the cost of the force.
+   */
+  private void append( List<String> pNums, List<Integer> amounts )
+          throws IOException
+  {
+    FileChannel out;
+    synchronized ( this )
+    {
+      StringBuilder lines = new StringBuilder();
+      for ( int i = 0; i < pNums.size(); i++ )
+        lines.append( line( ++theSeq, pNums.get(i), amounts.get(i) ) );
+      theOut.write( ByteBuffer.wrap(
+                      lines.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+      out = theOut;
+    }
+    out.force( false );
+  }
+
+  /**
+   * A line of the journal: sequence number, product number,
+   *  amount sold and the checksum of those, tab separated
+   * @param seq    Sequence number of the sale
+   * @param pNum   Product number
+   * @param amount Amount sold
+   * @return the line, ending with a new line
+   */
+  static String line( long seq, String pNum, int amount )
+  {
+    String sale = String.format( "%d\t%s\t%d", seq, pNum, amount );
+    return sale + "\t" + checksum( sale ) + "\n";
+  }
+
+  private static String checksum( String sale )
+  {
+    CRC32 crc = new CRC32();
+    crc.update( sale.getBytes( StandardCharsets.UTF_8 ) );
+    return Long.toHexString( crc.getValue() );
+  }
+
+  private FileChannel openJournal() throws IOException
+  {
+    return new FileOutputStream( theFile, true ).getChannel();
+  }
+
+  /**
+   * Write sales to the database with the new mark in one transaction
+   */
+  private void write( Map<String,Integer> batch, long upTo )
+          throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try
+    {
+      con.setAutoCommit( false );
+      PreparedStatement sell = thePool.prepare( con, SQL_SELL );
+      for ( Map.Entry<String,Integer> sold : batch.entrySet() )
+      {
+        sell.setInt( 1, sold.getValue() );
+        sell.setString( 2, sold.getKey() );
+        sell.addBatch();
+      }
+      if ( ! batch.isEmpty() ) sell.executeBatch();
+      PreparedStatement mark = thePool.prepare( con, SQL_MARK_SET );
+      mark.setLong( 1, upTo );
+      mark.executeUpdate();
+      con.commit();
+      con.setAutoCommit( true );
+    } finally
+    {
+      thePool.release( con );               // Rolls back if failed
+    }
+  }
+
+  /**
+   * Return the sequence number of the last sale in the database,
+   *  the table holding it is made by SchemaMigrator.
+   */
+  private long readMark() throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try
+    {
+      try ( ResultSet rs = thePool.prepare( con, SQL_MARK_GET ).executeQuery() )
+      {
+        if ( rs.next() ) return rs.getLong( "lastSeq" );
+      }
+      try ( Statement stmt = con.createStatement() )   // Row deleted
+      {
+        stmt.execute( SQL_MARK_INSERT );
+      }
+      return 0;
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  /**
+   * Write any journalled sales after the mark to the database.
+   * A partly written last line (crash during append) is ignored,
+   *  as is any line whose checksum does not match.
+   * @return sequence number of the last sale now in the database
+   */
+  private long replay( long mark ) throws SQLException, IOException
+  {
+    Map<String,Integer> batch = new HashMap<>();
+    long last = mark;
+    List<File> files = journals();
+    for ( File file : files )
+    {
+      try ( BufferedReader in = new BufferedReader( new InputStreamReader(
+              new FileInputStream( file ), StandardCharsets.UTF_8 ) ) )
+      {
+        String line;
+        while ( ( line = in.readLine() ) != null )
+        {
+          String[] field = line.split( "\t" );
+          if ( field.length != 4 || ! field[3].equals(
+                 checksum( field[0] + "\t" + field[1] + "\t" + field[2] ) ) )
+          {
+            DEBUG.traceA( "StockJournal: incomplete [%s]", line );
+            continue;
+          }
+          try
+          {
+            long seq = Long.parseLong( field[0] );
+            int  amount = Integer.parseInt( field[2] );
+            if ( seq <= mark ) continue;
+            batch.merge( field[1], amount, Integer::sum );
+            last = Math.max( last, seq );
+          } catch ( NumberFormatException e )
+          {
+            DEBUG.traceA( "StockJournal: ignored [%s]", line );
+          }
+        }
+      }
+    }
+    if ( last > mark )
+    {
+      DEBUG.traceA( "StockJournal: replayed sales #%d to #%d",
+                    mark + 1, last );
+      write( batch, last );
+    }
+    for ( File file : files )
+      file.delete();
+    return last;
+  }
+
+  /**
+   * Journal files, older (renamed) journals first
+   */
+  private List<File> journals()
+  {
+    TreeMap<Long,File> found = new TreeMap<>();
+    File[] all = theFile.getParentFile().listFiles();
+    if ( all != null )
+      for ( File file : all )
+        if ( file.getName().startsWith( theFile.getName() + "." ) &&
+             sequenceOf( file ) >= 0 )
+          found.put( sequenceOf( file ), file );
+    List<File> res = new ArrayList<>( found.values() );
+    if ( theFile.exists() ) res.add( theFile );
+    return res;
+  }
+
+  private long sequenceOf( File file )
+  {
+    String name = file.getName();
+    try
+    {
+      return Long.parseLong( name.substring( name.lastIndexOf( '.' ) + 1 ) );
+    } catch ( NumberFormatException e )
+    {
+      return -1;
+    }
+  }
+}
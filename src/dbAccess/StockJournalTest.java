@@ -0,0 +1,163 @@
+package dbAccess;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the StockJournal class, run against the
+ *  database made by Setup
+ */
+public class StockJournalTest
+{
+  private static final String PRODUCT = "0002";     // In the seed data
+
+  private DBAccess       theDB   = null;
+  private ConnectionPool thePool = null;
+  private File           theDir  = null;          // Holds the journal
+  private File           theFile = null;          // Journal
+
+  @Before
+  public void setUp() throws Exception
+  {
+    theDir  = Files.createTempDirectory( "journal" ).toFile();
+    theFile = new File( theDir, "stock.journal" );
+    System.setProperty( "catshop.journal", theFile.getPath() );
+    System.setProperty( "catshop.journal.flush", "3600000" );
+    theDB = new DBAccessFactory().getNewDBAccess();
+    theDB.loadDriver();
+    thePool = ConnectionPool.getPool( theDB );
+    setMark( 0 );                                   // Made by Setup
+  }
+
+  @After
+  public void tearDown()
+  {
+    System.clearProperty( "catshop.journal" );
+    System.clearProperty( "catshop.journal.flush" );
+    File[] left = theDir.listFiles();
+    if ( left != null )
+      for ( File file : left ) file.delete();
+    theDir.delete();
+  }
+
+  @Test
+  public void testSellThenFlush() throws Exception
+  {
+    StockJournal journal = new StockJournal( theDB, thePool );
+    int before = level();
+    assertTrue( "sale refused", journal.sell( PRODUCT, 3 ) );
+    assertEquals( "level in memory",
+                  before - 3, (int) journal.knownLevel( PRODUCT ) );
+    assertEquals( "written before flush", before, level() );
+    assertTrue( "not pending", journal.pending().contains( PRODUCT ) );
+
+    journal.flush();
+    assertEquals( "not written by flush", before - 3, level() );
+    assertTrue( "still pending", journal.pending().isEmpty() );
+    assertEquals( "old journals kept", 1, theDir.listFiles().length );
+  }
+
+  @Test
+  public void testSellTooMany() throws Exception
+  {
+    StockJournal journal = new StockJournal( theDB, thePool );
+    int before = level();
+    assertFalse( "sold more than held", journal.sell( PRODUCT, before + 1 ) );
+    assertFalse( "sold unknown product", journal.sell( "x999", 1 ) );
+    assertEquals( "level changed", before, (int) journal.knownLevel( PRODUCT ) );
+  }
+
+  @Test
+  public void testReplay() throws Exception
+  {
+    int before = level();
+    write( StockJournal.line( 1, PRODUCT, 2 ) +
+           StockJournal.line( 2, PRODUCT, 4 ) );
+    new StockJournal( theDB, thePool );
+    assertEquals( "not replayed", before - 6, level() );
+    assertFalse( "journal kept", theFile.exists() && theFile.length() > 0 );
+  }
+
+  @Test
+  public void testReplayAfterMark() throws Exception
+  {
+    int before = level();
+    setMark( 1 );                                   // #1 in database
+    write( StockJournal.line( 1, PRODUCT, 2 ) +
+           StockJournal.line( 2, PRODUCT, 4 ) );
+    new StockJournal( theDB, thePool );
+    assertEquals( "replayed from mark", before - 4, level() );
+  }
+
+  @Test
+  public void testReplaySkipsIncompleteLine() throws Exception
+  {
+    int before = level();
+    String cut = StockJournal.line( 2, PRODUCT, 10 );
+    write( StockJournal.line( 1, PRODUCT, 2 ) +
+           cut.substring( 0, cut.indexOf( "\t10" ) + 2 ) );  // ...\t1
+    new StockJournal( theDB, thePool );
+    assertEquals( "incomplete line replayed", before - 2, level() );
+
+    before = level();
+    write( StockJournal.line( 3, PRODUCT, 1 ) +
+           cut.substring( 0, cut.length() - 2 ) );           // Short sum
+    new StockJournal( theDB, thePool );
+    assertEquals( "incomplete checksum replayed", before - 1, level() );
+  }
+
+  private void write( String lines ) throws IOException
+  {
+    try ( FileOutputStream out = new FileOutputStream( theFile ) )
+    {
+      out.write( lines.getBytes( StandardCharsets.UTF_8 ) );
+    }
+  }
+
+  private int level() throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try
+    {
+      PreparedStatement stmt = con.prepareStatement(
+        "select stockLevel from StockTable where productNo = ?" );
+      stmt.setString( 1, PRODUCT );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        assertTrue( "no product " + PRODUCT, rs.next() );
+        return rs.getInt( 1 );
+      }
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+
+  private void setMark( long seq ) throws SQLException
+  {
+    Connection con = thePool.acquire();
+    try ( Statement stmt = con.createStatement() )
+    {
+      stmt.executeUpdate( "update StockJournalMark set lastSeq = " + seq );
+    } finally
+    {
+      thePool.release( con );
+    }
+  }
+}
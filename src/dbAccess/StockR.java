@@ -7,6 +7,7 @@ package dbAccess;
  * @version 2.0
  */
 
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
 import middle.StockException;
@@ -14,10 +15,29 @@ import middle.StockReader;
 
 import javax.swing.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
-// There can only be 1 ResultSet opened per statement
-// so no simultaneous use of the statement object
-// hence the synchronized methods
+// Connections are taken from a pool for the duration of a call,
+// so different users can access the database at the same time.
+// A connection (and its statements) is only used by one thread at a time.
+// A reader reads through a separate pool of read only connections,
+// whose isolation level may be set lower, see ConnectionPool.getReadPool(),
+// a read/writer (StockRW) reads and writes through the same pool.
+// All SQL is parameterised and prepared once per connection.
+// If DBAccess.snapshot() reads are answered from an in-memory
+// copy of the catalogue, see CatalogueView.
+// Searches use an in-memory index of the descriptions, see SearchIndex.
+// Low stock and price range reports read the first rows of the
+// indexes on stockLevel and price (schema migration 4), so they do not
+// scan the catalogue.
 
 // mySQL
 //    no spaces after SQL statement ;
@@ -27,8 +47,42 @@ import java.sql.*;
   */
 public class StockR implements StockReader
 {
-  private Connection theCon    = null;      // Connection to database
-  private Statement  theStmt   = null;      // Statement object
+  private DBAccess       theDB   = null;    // Database used
+  private ConnectionPool thePool = null;    // Connections to database
+  private ConnectionPool theReadPool = null; //  used for reads
+  private CatalogueView  theView = null;    // In memory, if used
+  private ImageCache     theImages = null;  // Decoded pictures
+  private SearchIndex    theSearch = null;  // Made when first searched
+
+  private static final String SQL_EXISTS =
+    "select price from ProductTable where productNo = ?";
+  private static final String SQL_DETAILS =
+    "select description, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  ProductTable.productNo = ? " +
+    "  and    StockTable.productNo   = ProductTable.productNo";
+  private static final int    IN_LIST = 32;  // Product numbers per query
+  private static final String SQL_DETAILS_IN =
+    "select ProductTable.productNo, description, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  ProductTable.productNo in (" +
+              String.join( ",", Collections.nCopies( IN_LIST, "?" ) ) +
+    "  )" +
+    "  and    StockTable.productNo   = ProductTable.productNo";
+  private static final String SQL_PICTURE =
+    "select picture from ProductTable where productNo = ?";
+  private static final String SQL_LOW_STOCK =      // Uses StockTable_Level
+    "select ProductTable.productNo, description, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  StockTable.stockLevel < ? " +
+    "  and    ProductTable.productNo = StockTable.productNo " +
+    "  order by StockTable.stockLevel, StockTable.productNo";
+  private static final String SQL_PRICE_RANGE =    // Uses ProductTable_Price
+    "select ProductTable.productNo, description, price, stockLevel " +
+    "  from ProductTable, StockTable " +
+    "  where  ProductTable.price between ? and ? " +
+    "  and    StockTable.productNo = ProductTable.productNo " +
+    "  order by ProductTable.price, ProductTable.productNo";
 
   /**
    * Connects to database
@@ -37,19 +91,38 @@ public class StockR implements StockReader
    */
   public StockR()
          throws StockException
+  {
+    this( true );
+  }
+
+  /**
+   * Connects to database
+   * @param readOnly reads use the read only connections
+   * @throws StockException if problem
+   */
+  protected StockR( boolean readOnly )
+         throws StockException
   {
     try
     {
-      DBAccess dbDriver = (new DBAccessFactory()).getNewDBAccess();
+      DBAccessFactory factory = new DBAccessFactory();
+      DBAccess dbDriver = factory.getNewDBAccess();
       dbDriver.loadDriver();
-    
-      theCon  = DriverManager.getConnection
-                  ( dbDriver.urlOfDatabase(), 
-                    dbDriver.username(), 
-                    dbDriver.password() );
-
-      theStmt = theCon.createStatement();
-      theCon.setAutoCommit( true );
+      theDB   = dbDriver;
+      thePool = ConnectionPool.getPool( dbDriver );
+      theReadPool = thePool;
+      if ( readOnly )
+      {
+        DBAccess readDriver = factory.getReadDBAccess();
+        if ( readDriver == null )
+          readDriver = dbDriver;
+        else
+          readDriver.loadDriver();
+        theReadPool = ConnectionPool.getReadPool( readDriver );
+      }
+      theImages = ImageCache.getCache( dbDriver );
+      if ( dbDriver.snapshot() )
+        theView = CatalogueView.getView( dbDriver, thePool );
     }
     catch ( SQLException e )
     {
@@ -61,26 +134,122 @@ public class StockR implements StockReader
     }
   }
 
+  /**
+   * Returns a connection object that is used to process
+   * requests to the DataBase.
+   * Must be handed back by releaseConnectionObject()
+   * @return a connection object
+   * @throws SQLException if no connection is available
+   */
+
+  protected Connection getConnectionObject() throws SQLException
+  {
+    return thePool.acquire();
+  }
 
   /**
-   * Returns a statement object that is used to process SQL statements
-   * @return A statement object used to access the database
+   * Hands back a connection obtained from getConnectionObject()
+   * @param con the connection object
    */
-  
-  protected Statement getStatementObject()
+
+  protected void releaseConnectionObject( Connection con )
   {
-    return theStmt;
+    thePool.release( con );
   }
 
   /**
-   * Returns a connection object that is used to process
-   * requests to the DataBase
+   * Returns a connection object used for reads only.
+   * Must be handed back by releaseReadConnectionObject()
    * @return a connection object
+   * @throws SQLException if no connection is available
+   */
+
+  protected Connection getReadConnectionObject() throws SQLException
+  {
+    return theReadPool.acquire();
+  }
+
+  /**
+   * Hands back a connection obtained from getReadConnectionObject()
+   * @param con the connection object
+   */
+
+  protected void releaseReadConnectionObject( Connection con )
+  {
+    theReadPool.release( con );
+  }
+
+  /**
+   * Returns a prepared statement for the SQL on the connection.
+   * The statement is cached so must not be closed.
+   * @param con connection obtained from getConnectionObject()
+   * @param sql SQL with ? for each parameter
+   * @return a prepared statement
+   * @throws SQLException if problem
+   */
+
+  protected PreparedStatement prepare( Connection con, String sql )
+            throws SQLException
+  {
+    return thePool.prepare( con, sql );
+  }
+
+  /**
+   * Returns the description of the database used
+   * @return the database access object
+   */
+
+  protected DBAccess getDBAccess()
+  {
+    return theDB;
+  }
+
+  /**
+   * Returns the pool of connections used
+   * @return the connection pool
+   */
+
+  public ConnectionPool getConnectionPool()
+  {
+    return thePool;
+  }
+
+  /**
+   * Read again the products changed, so that the in-memory
+   *  catalogue (if used) holds the change.
+   * Must be called after the change is committed.
+   * @param con connection obtained from getConnectionObject()
+   * @param pNums Products changed
+   * @throws SQLException if problem
+   */
+
+  protected void changed( Connection con, Collection<String> pNums )
+            throws SQLException
+  {
+    if ( theView != null )
+      theView.refresh( con, pNums );
+  }
+
+  /**
+   * Read again the products changed, using a connection
+   *  from the pool only if an in-memory catalogue is used.
+   * Must be called after the change is committed.
+   * @param pNums Products changed
+   * @throws SQLException if problem
    */
 
-  protected Connection getConnectionObject()
+  protected void changed( Collection<String> pNums )
+            throws SQLException
   {
-    return theCon;
+    if ( theView == null ) return;
+    Connection con = getConnectionObject();
+    try
+    {
+      theView.refresh( con, pNums );
+    } finally
+    {
+      releaseConnectionObject( con );
+    }
   }
 
   /**
@@ -88,23 +257,43 @@ public class StockR implements StockReader
    * @param pNum The product number
    * @return true if exists otherwise false
    */
-  public synchronized boolean exists( String pNum )
+  public boolean exists( String pNum )
          throws StockException
   {
-    
+    if ( theView != null )
+      return theView.current().find( pNum ) != null;
+    Connection con = null;
     try
     {
-      ResultSet rs   = getStatementObject().executeQuery(
-        "select price from ProductTable " +
-        "  where  ProductTable.productNo = '" + pNum + "'"
-      );
+      con = getReadConnectionObject();
+      return exists( con, pNum );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL exists: " + e.getMessage() );
+    } finally
+    {
+      releaseReadConnectionObject( con );
+    }
+  }
+
+  /**
+   * Checks if the product exits in the stock list
+   * @param con Connection to use
+   * @param pNum The product number
+   * @return true if exists otherwise false
+   * @throws SQLException if problem
+   */
+  protected boolean exists( Connection con, String pNum )
+            throws SQLException
+  {
+    PreparedStatement stmt = prepare( con, SQL_EXISTS );
+    stmt.setString( 1, pNum );
+    try ( ResultSet rs = stmt.executeQuery() )
+    {
       boolean res = rs.next();
       DEBUG.trace( "DB StockR: exists(%s) -> %s", 
                     pNum, ( res ? "T" : "F" ) );
       return res;
-    } catch ( SQLException e )
-    {
-      throw new StockException( "SQL exists: " + e.getMessage() );
     }
   }
 
@@ -114,62 +303,258 @@ public class StockR implements StockReader
    * @param pNum The product number
    * @return Details in an instance of a Product
    */
-  public synchronized Product getDetails( String pNum )
+  public Product getDetails( String pNum )
+         throws StockException
+  {
+    return lookup( pNum ).orElse( new Product( "0", "", 0.00, 0 ) );
+  }
+
+  /**
+   * Returns details about the product in the stock list
+   *  using a single query.
+   * @param pNum The product number
+   * @return Details in an instance of a Product or empty if not found
+   */
+  public Optional<Product> lookup( String pNum )
+         throws StockException
+  {
+    if ( theView != null )
+    {
+      CatalogueSnapshot.Item item = theView.current().find( pNum );
+      return Optional.ofNullable( item == null ? null : item.toProduct() );
+    }
+    Connection con = null;
+    try
+    {
+      con = getReadConnectionObject();
+      PreparedStatement stmt = prepare( con, SQL_DETAILS );
+      stmt.setString( 1, pNum );
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        Product dt = null;
+        if ( rs.next() )
+        {
+          dt = Product.ofMinor( pNum,
+                            rs.getString( "description" ),
+                            Money.of( rs.getBigDecimal( "price" ) ),
+                            rs.getInt( "stockLevel" ) );
+        }
+        DEBUG.trace( "DB StockR: lookup(%s) -> %s",
+                     pNum, ( dt != null ? "T" : "F" ) );
+        return Optional.ofNullable( dt );
+      }
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL lookup: " + e.getMessage() );
+    } finally
+    {
+      releaseReadConnectionObject( con );
+    }
+  }
+
+  /**
+   * Returns details about many products in the stock list.
+   * The product numbers are sent IN_LIST at a time in one query,
+   *  any unused places in the in list repeat the last product number
+   *  so the same prepared statement is always used.
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
          throws StockException
   {
+    Map<String,Product> found = new LinkedHashMap<>();
+    if ( theView != null )
+    {
+      CatalogueSnapshot snapshot = theView.current();  // Same version
+      for ( String pNum : pNums )
+      {
+        CatalogueSnapshot.Item item = snapshot.find( pNum );
+        if ( item != null )
+          found.put( pNum, item.toProduct() );
+      }
+      return found;
+    }
+    if ( pNums.isEmpty() ) return found;
+    Connection con = null;
     try
     {
-      Product   dt = new Product( "0", "", 0.00, 0 );
-      ResultSet rs = getStatementObject().executeQuery(
-        "select description, price, stockLevel " +
-        "  from ProductTable, StockTable " +
-        "  where  ProductTable.productNo = '" + pNum + "' " +
-        "  and    StockTable.productNo   = '" + pNum + "'"
-      );
-      if ( rs.next() )
+      con = getReadConnectionObject();
+      PreparedStatement stmt = prepare( con, SQL_DETAILS_IN );
+      Iterator<String> it = new LinkedHashSet<>( pNums ).iterator();
+      while ( it.hasNext() )
       {
-        dt.setProductNum( pNum );
-        dt.setDescription(rs.getString( "description" ) );
-        dt.setPrice( rs.getDouble( "price" ) );
-        dt.setQuantity( rs.getInt( "stockLevel" ) );
+        String pNum = null;
+        for ( int i = 1; i <= IN_LIST; i++ )
+        {
+          if ( it.hasNext() ) pNum = it.next();
+          stmt.setString( i, pNum );
+        }
+        try ( ResultSet rs = stmt.executeQuery() )
+        {
+          while ( rs.next() )
+          {
+            String no = rs.getString( "productNo" ).trim();
+            found.put( no, Product.ofMinor( no,
+                                        rs.getString( "description" ),
+                                        Money.of( rs.getBigDecimal( "price" ) ),
+                                        rs.getInt( "stockLevel" ) ) );
+          }
+        }
       }
-      rs.close();
-      return dt;
     } catch ( SQLException e )
     {
       throw new StockException( "SQL getDetails: " + e.getMessage() );
+    } finally
+    {
+      releaseReadConnectionObject( con );
     }
+    DEBUG.trace( "DB StockR: getDetails(%d) -> %d",
+                 pNums.size(), found.size() );
+    Map<String,Product> res = new LinkedHashMap<>();
+    for ( String pNum : pNums )                  // Order asked for
+      if ( found.containsKey( pNum ) )
+        res.put( pNum, found.get( pNum ) );
+    return res;
   }
 
   /**
-   * Returns 'image' of the product
-   * @param pNum The product number
-   *  Assumed to exist in database.
-   * @return ImageIcon representing the image
+   * Finds products by the words of their descriptions.
+   * The index of the descriptions is made when first searched.
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
    */
-  public synchronized ImageIcon getImage( String pNum )
+  public List<Product> search( String query, int from, int max )
          throws StockException
   {
-    String filename = "default.jpg";  
     try
     {
-      ResultSet rs   = getStatementObject().executeQuery(
-        "select picture from ProductTable " +
-        "  where  ProductTable.productNo = '" + pNum + "'"
-      );
-      
-      boolean res = rs.next();
-      if ( res )
-        filename = rs.getString( "picture" );
-      rs.close();
+      if ( theSearch == null )
+        theSearch = SearchIndex.getIndex( theDB, theReadPool );
+      List<String> pNums = theSearch.search( query, from, max );
+      DEBUG.trace( "DB StockR: search(%s) -> %d", query, pNums.size() );
+      return new ArrayList<>( getDetails( pNums ).values() );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL search: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns the products with least stock
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    return first( "lowStock", SQL_LOW_STOCK, max, below );
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    return first( "priceRange", SQL_PRICE_RANGE, max,
+                  Money.toDecimal( minPrice ), Money.toDecimal( maxPrice ) );
+  }
+
+  /**
+   * Read the first max products selected by the query
+   * @param name   Of the request, for messages
+   * @param sql    The query, selecting productNo, description,
+   *               price and stockLevel
+   * @param max    Most products to read
+   * @param params Parameters of the query
+   * @return Details of the products, in the order selected
+   */
+  private List<Product> first( String name, String sql, int max,
+                               Object... params )
+          throws StockException
+  {
+    List<Product> res = new ArrayList<>();
+    if ( max <= 0 ) return res;
+    Connection con = null;
+    try
+    {
+      con = getReadConnectionObject();
+      PreparedStatement stmt = prepare( con, sql );
+      for ( int i = 0; i < params.length; i++ )
+        stmt.setObject( i+1, params[i] );
+      stmt.setMaxRows( max );                    // Statement is shared
+      try ( ResultSet rs = stmt.executeQuery() )
+      {
+        while ( rs.next() )
+          res.add( Product.ofMinor( rs.getString( "productNo" ).trim(),
+                                    rs.getString( "description" ),
+                                    Money.of( rs.getBigDecimal( "price" ) ),
+                                    rs.getInt( "stockLevel" ) ) );
+      }
     } catch ( SQLException e )
     {
-      DEBUG.error( "getImage()\n%s\n", e.getMessage() );
-      throw new StockException( "SQL getImage: " + e.getMessage() );
+      throw new StockException( "SQL " + name + ": " + e.getMessage() );
+    } finally
+    {
+      releaseReadConnectionObject( con );
+    }
+    DEBUG.trace( "DB StockR: %s -> %d", name, res.size() );
+    return res;
+  }
+
+  /**
+   * Returns 'image' of the product, scaled to fit the picture area.
+   * Pictures are cached, so a picture already held is
+   *  returned without reading the database or the file.
+   * @param pNum The product number
+   *  Assumed to exist in database.
+   * @return ImageIcon representing the image
+   */
+  public ImageIcon getImage( String pNum )
+         throws StockException
+  {
+    ImageIcon image = theImages.get( pNum );
+    if ( image != null ) return image;
+    String filename = null;
+    if ( theView != null )
+    {
+      CatalogueSnapshot.Item item = theView.current().find( pNum );
+      if ( item != null )
+        filename = item.getPicture();
+    } else {
+      Connection con = null;
+      try
+      {
+        con = getReadConnectionObject();
+        PreparedStatement stmt = prepare( con, SQL_PICTURE );
+        stmt.setString( 1, pNum );
+        try ( ResultSet rs = stmt.executeQuery() )
+        {
+          if ( rs.next() )
+            filename = rs.getString( "picture" );
+        }
+      } catch ( SQLException e )
+      {
+        DEBUG.error( "getImage()\n%s\n", e.getMessage() );
+        throw new StockException( "SQL getImage: " + e.getMessage() );
+      } finally
+      {
+        releaseReadConnectionObject( con );
+      }
     }
     
     //DEBUG.trace( "DB StockR: getImage -> %s", filename );
-    return new ImageIcon( filename );
+    if ( filename == null )                     // No such product
+      return new ImageIcon( "default.jpg" );    //  not cached
+    return theImages.load( pNum, filename );
   }
 
 }
@@ -7,29 +7,117 @@ package dbAccess;
  * @version 2.0
  */
 
+import catalogue.Basket;
+import catalogue.Money;
 import catalogue.Product;
 import debug.DEBUG;
+import middle.StockEvents;
 import middle.StockException;
 import middle.StockReadWriter;
 
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-// There can only be 1 ResultSet opened per statement
-// so no simultaneous use of the statement object
-// hence the synchronized methods
-// 
+// Each call uses its own connection from the pool
+//  the database serialises updates to the same row
+// If DBAccess.groupCommit() single row writes are run by a
+//  GroupCommitter, which commits many of them together
+// All SQL is parameterised and prepared once per connection
+// A product is added or modified by a MERGE of each table, the
+//  merges of a list of products are run as two batches, all in
+//  one transaction
+// Each change is published to StockEvents once committed, the
+//  products changed are held from before the change until then
 
 /**
   * Implements read/write access to the stock database.
   */
 public class StockRW extends StockR implements StockReadWriter 
 {
+  private static final String SQL_BUY =
+    "update StockTable set stockLevel = stockLevel - ? " +
+    "  where productNo = ? and stockLevel >= ?";
+  private static final String SQL_ADD =
+    "update StockTable set stockLevel = stockLevel + ? " +
+    "  where productNo = ?";
+  private static final String SQL_MERGE_PRODUCT =
+    "merge into ProductTable t using SYSIBM.SYSDUMMY1 " +
+    "  on t.productNo = ? " +
+    "  when matched then update set description = ?, price = ? " +
+    "  when not matched then insert values ( ?, ?, ?, ? )";
+  private static final String SQL_MERGE_STOCK =
+    "merge into StockTable t using SYSIBM.SYSDUMMY1 " +
+    "  on t.productNo = ? " +
+    "  when matched then update set stockLevel = ? " +
+    "  when not matched then insert values ( ?, ? )";
+
+  private GroupCommitter theGroup = null;  // If used
+
   /*
    * Connects to database
    */
   public StockRW() throws StockException
   {    
-    super();        // Connection done in StockR's constructor
+    super( false ); // Connection pool setup in StockR's constructor,
+                    //  reads use the write connections
+    if ( getDBAccess().groupCommit() )
+      theGroup = GroupCommitter.getCommitter( getDBAccess(),
+                                              getConnectionPool() );
+  }
+
+  /**
+   * Run the write, committed with others if group commit is
+   *  used otherwise on its own.
+   * @param w The write
+   * @return result of the write
+   * @throws SQLException if problem
+   */
+  private <T> T write( GroupCommitter.Write<T> w )
+          throws SQLException
+  {
+    if ( theGroup != null )
+      return theGroup.run( w );
+    Connection con = null;
+    try
+    {
+      con = getConnectionObject();
+      return w.apply( con );              // Auto commit
+    } finally
+    {
+      releaseConnectionObject( con );
+    }
+  }
+
+  /**
+   * Run the write in a transaction, committed with others
+   *  if group commit is used otherwise on its own.
+   * @param w The write
+   * @return result of the write
+   * @throws SQLException if problem, nothing is written
+   */
+  private <T> T transaction( GroupCommitter.Write<T> w )
+          throws SQLException
+  {
+    if ( theGroup != null )
+      return theGroup.run( w );
+    Connection con = null;
+    try
+    {
+      con = getConnectionObject();
+      con.setAutoCommit( false );
+      T res = w.apply( con );
+      con.commit();
+      con.setAutoCommit( true );
+      return res;
+    } finally
+    {
+      releaseConnectionObject( con );        // Rolls back if failed
+    }
   }
   
   /**
@@ -38,25 +126,97 @@ public class StockRW extends StockR implements StockReadWriter
    * @param amount Amount of stock bought
    * @return true if succeeds else false
    */
-  public synchronized boolean buyStock( String pNum, int amount )
+  public boolean buyStock( String pNum, int amount )
          throws StockException
   {
     DEBUG.trace("DB StockRW: buyStock(%s,%d)", pNum, amount);
-    int updates = 0;
+    StockEvents.Held held = StockEvents.changing( pNum );
     try
     {
-      getStatementObject().executeUpdate(
-        "update StockTable set stockLevel = stockLevel-" + amount +
-        "       where productNo = '" + pNum + "' and " +
-        "             stockLevel >= " + amount + ""
-      );
-      updates = 1; // getStatementObject().getUpdateCount();
-    } catch ( SQLException e )
+      int updates = 0;
+      try
+      {
+        updates = write( con -> {
+          PreparedStatement stmt = prepare( con, SQL_BUY );
+          stmt.setInt( 1, amount );
+          stmt.setString( 2, pNum );
+          stmt.setInt( 3, amount );
+          return stmt.executeUpdate();
+        } );
+        if ( updates > 0 )
+          changed( Collections.singletonList( pNum ) );
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL buyStock: " + e.getMessage() );
+      }
+      DEBUG.trace( "buyStock() updates -> %d", updates );
+      if ( updates > 0 )
+        StockEvents.sold( pNum, amount );
+      return updates > 0;   // sucess ?
+    } finally
     {
-      throw new StockException( "SQL buyStock: " + e.getMessage() );
+      held.close();
+    }
+  }
+
+  /**
+   * Customer buys the whole basket in a single transaction.
+   * If any line can not be filled nothing is bought.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    DEBUG.trace("DB StockRW: buyBasket(%d)", bought.size() );
+    List<Product> unfilled = new ArrayList<>();
+    if ( bought.isEmpty() ) return unfilled;
+    List<String> pNums = new ArrayList<>();
+    for ( Product pr : bought )
+      pNums.add( pr.getProductNum() );
+    StockEvents.Held held = StockEvents.changing( pNums );
+    try
+    {
+      Connection con = null;
+      try
+      {
+        con = getConnectionObject();
+        con.setAutoCommit( false );
+        PreparedStatement stmt = prepare( con, SQL_BUY );
+        for ( Product pr : bought )
+        {
+          stmt.setInt( 1, pr.getQuantity() );
+          stmt.setString( 2, pr.getProductNum() );
+          stmt.setInt( 3, pr.getQuantity() );
+          stmt.addBatch();
+        }
+        int[] updates = stmt.executeBatch();
+        for ( int i = 0; i < updates.length; i++ )
+          if ( updates[i] == 0 )
+            unfilled.add( bought.get( i ) );
+        if ( unfilled.isEmpty() )
+          con.commit();
+        else
+          con.rollback();                         // All or nothing
+        con.setAutoCommit( true );
+        if ( unfilled.isEmpty() )
+          changed( con, pNums );
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL buyBasket: " + e.getMessage() );
+      } finally
+      {
+        releaseConnectionObject( con );        // Rolls back if failed
+      }
+      DEBUG.trace( "buyBasket() unfilled -> %d", unfilled.size() );
+      if ( unfilled.isEmpty() )
+        for ( Product pr : bought )
+          StockEvents.sold( pr.getProductNum(), pr.getQuantity() );
+      return unfilled;
+    } finally
+    {
+      held.close();
     }
-    DEBUG.trace( "buyStock() updates -> %n", updates );
-    return updates > 0;   // sucess ?
   }
 
   /**
@@ -65,69 +225,101 @@ public class StockRW extends StockR implements StockReadWriter
    * @param pNum Product number
    * @param amount Amount of stock to add
    */
-  public synchronized void addStock( String pNum, int amount )
+  public void addStock( String pNum, int amount )
          throws StockException
   {
+    StockEvents.Held held = StockEvents.changing( pNum );
     try
     {
-      getStatementObject().executeUpdate(
-        "update StockTable set stockLevel = stockLevel + " + amount +
-        "         where productNo = '" + pNum + "'"
-      );
-      //getConnectionObject().commit();
-      DEBUG.trace( "DB StockRW: addStock(%s,%d)" , pNum, amount );
-    } catch ( SQLException e )
+      try
+      {
+        write( con -> {
+          PreparedStatement stmt = prepare( con, SQL_ADD );
+          stmt.setInt( 1, amount );
+          stmt.setString( 2, pNum );
+          return stmt.executeUpdate();
+        } );
+        changed( Collections.singletonList( pNum ) );
+        DEBUG.trace( "DB StockRW: addStock(%s,%d)" , pNum, amount );
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL addStock: " + e.getMessage() );
+      }
+      StockEvents.restocked( pNum, amount );
+    } finally
     {
-      throw new StockException( "SQL addStock: " + e.getMessage() );
+      held.close();
     }
   }
 
 
   /**
-   * Modifies Stock details for a given product number.
-   *  Assumed to exist in database.
-   * Information modified: Description, Price
+   * Modifies Stock details for a given product number,
+   *  the product is added if not known.
+   * Information modified: Description, Price, Stock level
    * @param detail Product details to change stocklist to
    */
-  public synchronized void modifyStock( Product detail )
+  public void modifyStock( Product detail )
+         throws StockException
+  {
+    modifyStock( Collections.singletonList( detail ) );
+  }
+
+  /**
+   * Modifies Stock details for each product in the list,
+   *  in a single transaction. Products not known are added.
+   * If any product can not be written nothing is changed.
+   * @param details Product details to change stocklist to
+   */
+  public void modifyStock( List<Product> details )
          throws StockException
   {
-    DEBUG.trace( "DB StockRW: modifyStock(%s)", 
-                 detail.getProductNum() );
+    DEBUG.trace( "DB StockRW: modifyStock(%d)", details.size() );
+    if ( details.isEmpty() ) return;
+    List<String> pNums = new ArrayList<>();
+    for ( Product pr : details )
+      pNums.add( pr.getProductNum() );
+    StockEvents.Held held = StockEvents.replacing( pNums );
     try
     {
-      if ( ! exists( detail.getProductNum() ) )
+      try
+      {
+        transaction( con -> {
+          PreparedStatement product = prepare( con, SQL_MERGE_PRODUCT );
+          PreparedStatement stock   = prepare( con, SQL_MERGE_STOCK );
+          for ( Product pr : details )
+          {
+            String     pNum  = pr.getProductNum();
+            BigDecimal price = Money.toDecimal( pr.getPriceMinor() );
+            product.setString( 1, pNum );
+            product.setString( 2, pr.getDescription() );
+            product.setBigDecimal( 3, price );
+            product.setString( 4, pNum );
+            product.setString( 5, pr.getDescription() );
+            product.setString( 6, "images/Pic" + pNum + ".jpg" );
+            product.setBigDecimal( 7, price );
+            product.addBatch();
+
+            stock.setString( 1, pNum );
+            stock.setInt( 2, pr.getQuantity() );
+            stock.setString( 3, pNum );
+            stock.setInt( 4, pr.getQuantity() );
+            stock.addBatch();
+          }
+          product.executeBatch();                 // Before stock (key)
+          stock.executeBatch();
+          return null;
+        } );
+        changed( pNums );
+      } catch ( SQLException e )
       {
-    	getStatementObject().executeUpdate( 
-         "insert into ProductTable values ('" +
-            detail.getProductNum() + "', " + 
-             "'" + detail.getDescription() + "', " + 
-             "'images/Pic" + detail.getProductNum() + ".jpg', " + 
-             "'" + detail.getPrice() + "' " + ")"
-            );
-    	getStatementObject().executeUpdate( 
-           "insert into StockTable values ('" + 
-           detail.getProductNum() + "', " + 
-           "'" + detail.getQuantity() + "' " + ")"
-           ); 
-      } else {
-    	getStatementObject().executeUpdate(
-          "update ProductTable " +
-          "  set description = '" + detail.getDescription() + "' , " +
-          "      price       = " + detail.getPrice() +
-          "  where productNo = '" + detail.getProductNum() + "' "
-         );
-       
-    	getStatementObject().executeUpdate(
-          "update StockTable set stockLevel = " + detail.getQuantity() +
-          "  where productNo = '" + detail.getProductNum() + "'"
-        );
+        throw new StockException( "SQL modifyStock: " + e.getMessage() );
       }
-      //getConnectionObject().commit();
-      
-    } catch ( SQLException e )
+      for ( Product pr : details )
+        StockEvents.modified( pr );
+    } finally
     {
-      throw new StockException( "SQL modifyStock: " + e.getMessage() );
+      held.close();
     }
   }
 }
@@ -0,0 +1,160 @@
+package dbAccess;
+
+import catalogue.Basket;
+import catalogue.Product;
+import middle.StockChangeEvent;
+import middle.StockEvents;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the changes published by the StockRW class,
+ *  run against the database made by Setup
+ */
+public class StockRWTest
+{
+  private static final List<String> PRODUCTS = Arrays.asList( "0005", "0006" );
+  private static final int  THREADS = 8;
+  private static final int  CHANGES = 100;          // Per thread
+  private static final long WAIT    = 10000;        // For the events, ms
+
+  private StockRW                theStock  = null;
+  private List<Product>          theBefore = new ArrayList<>();
+  private List<StockChangeEvent> theEvents = new ArrayList<>();
+  private long                   theSub    = 0;
+
+  @Before
+  public void setUp() throws Exception
+  {
+    theStock = new StockRW();
+    for ( String pNum : PRODUCTS )
+      theBefore.add( theStock.getDetails( pNum ) );
+  }
+
+  @After
+  public void tearDown() throws Exception
+  {
+    StockEvents.unsubscribe( theSub );
+    theStock.modifyStock( theBefore );
+  }
+
+  /**
+   * Buy, restock, return and modify the same products from many
+   *  threads. Starting from the levels before, and applying each
+   *  change in the order published, must give the levels after.
+   * Amounts taken and added may be published in either order, as
+   *  they add up the same, so a level part way may be below zero.
+   */
+  @Test
+  public void testEventsInOrder() throws Exception
+  {
+    theSub = StockEvents.subscribe( e -> {
+      synchronized ( theEvents ) { theEvents.add( e ); }
+    }, PRODUCTS );
+    AtomicInteger made   = new AtomicInteger();     // Changes published
+    List<Throwable> errors = new ArrayList<>();
+    Thread[] threads = new Thread[ THREADS ];
+    for ( int t = 0; t < THREADS; t++ )
+    {
+      Random rnd = new Random( t );
+      threads[t] = new Thread( () -> {
+        try
+        {
+          for ( int i = 0; i < CHANGES; i++ )
+            made.addAndGet( change( rnd ) );
+        } catch ( Throwable e )
+        {
+          synchronized ( errors ) { errors.add( e ); }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread t : threads ) t.join();
+    assertEquals( "changes failed " + errors, 0, errors.size() );
+
+    long until = System.currentTimeMillis() + WAIT;
+    while ( events().size() < made.get() && System.currentTimeMillis() < until )
+      Thread.sleep( 20 );
+    List<StockChangeEvent> events = events();
+    assertEquals( "events published", made.get(), events.size() );
+
+    Map<String,Integer> level = new HashMap<>();
+    for ( Product pr : theBefore )
+      level.put( pr.getProductNum(), pr.getQuantity() );
+    long seq = 0;
+    for ( StockChangeEvent e : events )
+    {
+      assertFalse( "events lost", e.getKind() == StockChangeEvent.Kind.RESYNC );
+      assertTrue( "out of sequence", e.getSeq() > seq );
+      seq = e.getSeq();
+      String pNum = e.getProductNum();
+      switch ( e.getKind() )
+      {
+        case SOLD      : level.merge( pNum, -e.getAmount(), Integer::sum ); break;
+        case RESTOCKED :
+        case RETURNED  : level.merge( pNum,  e.getAmount(), Integer::sum ); break;
+        case MODIFIED  : level.put( pNum, e.getAmount() );                  break;
+        default        :                                                    break;
+      }
+    }
+    for ( String pNum : PRODUCTS )
+      assertEquals( "levels from events " + pNum,
+                    theStock.getDetails( pNum ).getQuantity(),
+                    (int) level.get( pNum ) );
+  }
+
+  /**
+   * Make a random change
+   * @return the number of events published for it
+   */
+  private int change( Random rnd ) throws Exception
+  {
+    String pNum = PRODUCTS.get( rnd.nextInt( PRODUCTS.size() ) );
+    switch ( rnd.nextInt( 5 ) )
+    {
+      case 0 :
+        return theStock.buyStock( pNum, 1 + rnd.nextInt( 3 ) ) ? 1 : 0;
+      case 1 :
+        theStock.addStock( pNum, 1 + rnd.nextInt( 3 ) );
+        return 1;
+      case 2 :
+        theStock.returnStock( pNum, 1 );
+        return 1;
+      case 3 :
+      {
+        Basket b = new Basket();
+        for ( String p : PRODUCTS )
+          b.add( Product.ofMinor( p, "", 0, 1 ) );
+        return theStock.buyBasket( b ).isEmpty() ? PRODUCTS.size() : 0;
+      }
+      default :
+      {
+        Product pr = theStock.getDetails( pNum );
+        pr.setQuantity( rnd.nextInt( 20 ) );
+        theStock.modifyStock( pr );
+        return 1;
+      }
+    }
+  }
+
+  private List<StockChangeEvent> events()
+  {
+    synchronized ( theEvents )
+    {
+      return new ArrayList<>( theEvents );
+    }
+  }
+}
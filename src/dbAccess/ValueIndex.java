@@ -0,0 +1,104 @@
+package dbAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A sorted index of a value held in each record of the mapped
+ *  stock file (the stock level or the price), so the records with
+ *  the lowest values in a range are found without reading every record.
+ * A value is changed by whoever holds the lock of its record, readers
+ *  do not lock and may miss a record whose value is being changed.
+ * Records with the same value are in record order.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class ValueIndex
+{
+  /**
+   * The value of a record
+   */
+  private static final class Key implements Comparable<Key>
+  {
+    private final long theValue;
+    private final int  theRec;
+
+    private Key( long value, int rec )
+    {
+      theValue = value;
+      theRec   = rec;
+    }
+
+    public int compareTo( Key o )
+    {
+      int c = Long.compare( theValue, o.theValue );
+      return c != 0 ? c : Integer.compare( theRec, o.theRec );
+    }
+
+    public boolean equals( Object o )
+    {
+      return o instanceof Key && compareTo( (Key) o ) == 0;
+    }
+
+    public int hashCode()
+    {
+      return Long.hashCode( theValue ) * 31 + theRec;
+    }
+  }
+
+  private final ConcurrentSkipListSet<Key> theKeys =
+    new ConcurrentSkipListSet<>();
+
+  /**
+   * Index a new record
+   * @param rec   Record number
+   * @param value Its value
+   */
+  void add( int rec, long value )
+  {
+    theKeys.add( new Key( value, rec ) );
+  }
+
+  /**
+   * The value of a record has changed
+   * @param rec  Record number
+   * @param from Value it had
+   * @param to   Value it has now
+   */
+  void move( int rec, long from, long to )
+  {
+    if ( from == to ) return;
+    theKeys.remove( new Key( from, rec ) );
+    theKeys.add( new Key( to, rec ) );
+  }
+
+  /**
+   * Forget every record
+   */
+  void clear()
+  {
+    theKeys.clear();
+  }
+
+  /**
+   * Records with a value in the range, lowest value first
+   * @param from Lowest value
+   * @param to   Highest value
+   * @param max  Most records to return
+   * @return the record numbers
+   */
+  List<Integer> range( long from, long to, int max )
+  {
+    List<Integer> res = new ArrayList<>();
+    if ( from > to ) return res;
+    for ( Key k : theKeys.subSet( new Key( from, Integer.MIN_VALUE ), true,
+                                  new Key( to,   Integer.MAX_VALUE ), true ) )
+    {
+      if ( res.size() >= max ) break;
+      res.add( k.theRec );
+    }
+    return res;
+  }
+}
@@ -0,0 +1,55 @@
+package dbAccess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the ValueIndex class
+ */
+public class ValueIndexTest
+{
+  private ValueIndex theIndex = null;
+
+  @Before
+  public void setUp()
+  {
+    theIndex = new ValueIndex();
+    theIndex.add( 0, 30 );
+    theIndex.add( 1, 10 );
+    theIndex.add( 2, 20 );
+    theIndex.add( 3, 10 );
+  }
+
+  @Test
+  public void testRange()
+  {
+    assertEquals( "lowest first, then record order",
+                  Arrays.asList( 1, 3, 2, 0 ),
+                  theIndex.range( Long.MIN_VALUE, Long.MAX_VALUE, 10 ) );
+    assertEquals( "ends included", Arrays.asList( 1, 3, 2 ),
+                  theIndex.range( 10, 20, 10 ) );
+    assertEquals( "most returned", Arrays.asList( 1, 3 ),
+                  theIndex.range( 0, 100, 2 ) );
+    assertTrue( "none in range", theIndex.range( 11, 19, 10 ).isEmpty() );
+    assertTrue( "from after to", theIndex.range( 20, 10, 10 ).isEmpty() );
+  }
+
+  @Test
+  public void testMove()
+  {
+    theIndex.move( 0, 30, 5 );
+    theIndex.move( 3, 10, 10 );                     // Not changed
+    assertEquals( "moved", Arrays.asList( 0, 1, 3, 2 ),
+                  theIndex.range( Long.MIN_VALUE, Long.MAX_VALUE, 10 ) );
+    assertTrue( "old value kept", theIndex.range( 30, 30, 10 ).isEmpty() );
+
+    theIndex.clear();
+    assertTrue( "not cleared",
+                theIndex.range( Long.MIN_VALUE, Long.MAX_VALUE, 10 ).isEmpty() );
+  }
+}
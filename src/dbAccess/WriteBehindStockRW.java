@@ -0,0 +1,275 @@
+package dbAccess;
+
+/**
+ * Implements Read /Write access to the stock list
+ *  with sales written behind to the database.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+import catalogue.Basket;
+import catalogue.Product;
+import debug.DEBUG;
+import middle.StockEvents;
+import middle.StockException;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Sales are checked against and made to an in-memory view of the
+// stock levels and journalled locally, see StockJournal.
+// Restocks and modifications still go straight to the database.
+// All changes to stock must be made through this object (or another
+// one for the same database) for the in-memory view to be correct.
+// Sales are published to StockEvents once journalled. The products
+// changed are held (see StockEvents) before the journal is locked.
+
+/**
+  * Implements read/write access to the stock database,
+  *  writing sales to the database in periodic batches.
+  */
+public class WriteBehindStockRW extends StockRW
+{
+  private StockJournal theJournal = null;
+
+  /*
+   * Connects to database and replays any journalled sales
+   */
+  public WriteBehindStockRW() throws StockException
+  {
+    super();
+    try
+    {
+      theJournal = StockJournal.getJournal( getDBAccess(),
+                                            getConnectionPool() );
+    } catch ( SQLException e )
+    {
+      throw new StockException( "SQL journal: " + e.getMessage() );
+    } catch ( IOException e )
+    {
+      throw new StockException( "Journal: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns details about the product, the stock level
+   *  includes sales not yet written to the database.
+   * @param pNum The product number
+   * @return Details in an instance of a Product or empty if not found
+   */
+  public Optional<Product> lookup( String pNum )
+         throws StockException
+  {
+    Optional<Product> found = super.lookup( pNum );
+    found.ifPresent( this::currentLevel );
+    return found;
+  }
+
+  /**
+   * Returns details about many products, the stock levels
+   *  include sales not yet written to the database.
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws StockException
+  {
+    Map<String,Product> found = super.getDetails( pNums );
+    found.values().forEach( this::currentLevel );
+    return found;
+  }
+
+  /**
+   * Returns the products with least stock, the stock levels
+   *  include sales not yet written to the database, so products
+   *  with such sales are checked as well.
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    Map<String,Product> found = new LinkedHashMap<>();
+    for ( Product pr : super.lowStock( below, max ) )
+      found.put( pr.getProductNum(), pr );
+    found.putAll( super.getDetails( theJournal.pending() ) );
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : found.values() )
+    {
+      currentLevel( pr );
+      if ( pr.getQuantity() < below ) res.add( pr );
+    }
+    res.sort( Comparator.comparingInt( Product::getQuantity )
+                        .thenComparing( Product::getProductNum ) );
+    return res.size() > max ? new ArrayList<>( res.subList( 0, max ) ) : res;
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices, the stock
+   *  levels include sales not yet written to the database.
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    List<Product> res = super.priceRange( minPrice, maxPrice, max );
+    res.forEach( this::currentLevel );
+    return res;
+  }
+
+  /**
+   * Customer buys stock, the sale is journalled and
+   *  written to the database later.
+   * @param pNum Product number
+   * @param amount Amount of stock bought
+   * @return true if succeeds else false
+   */
+  public boolean buyStock( String pNum, int amount )
+         throws StockException
+  {
+    DEBUG.trace("DB WriteBehindStockRW: buyStock(%s,%d)", pNum, amount);
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      try
+      {
+        boolean sold = theJournal.sell( pNum, amount );
+        if ( sold )
+          StockEvents.sold( pNum, amount );
+        return sold;
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL buyStock: " + e.getMessage() );
+      } catch ( IOException e )
+      {
+        throw new StockException( "Journal buyStock: " + e.getMessage() );
+      }
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Customer buys the whole basket, all lines are journalled
+   *  together or none are.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    List<String>  pNums   = new ArrayList<>();
+    List<Integer> amounts = new ArrayList<>();
+    for ( Product pr : bought )
+    {
+      pNums.add( pr.getProductNum() );
+      amounts.add( pr.getQuantity() );
+    }
+    StockEvents.Held held = StockEvents.changing( pNums );
+    try
+    {
+      try
+      {
+        List<Product> unfilled = new ArrayList<>();
+        for ( int i : theJournal.sellAll( pNums, amounts ) )
+          unfilled.add( bought.get( i ) );
+        if ( unfilled.isEmpty() )
+          for ( Product pr : bought )
+            StockEvents.sold( pr.getProductNum(), pr.getQuantity() );
+        return unfilled;
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL buyBasket: " + e.getMessage() );
+      } catch ( IOException e )
+      {
+        throw new StockException( "Journal buyBasket: " + e.getMessage() );
+      }
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Adds stock (Re-stocks) to the store.
+   * @param pNum Product number
+   * @param amount Amount of stock to add
+   */
+  public void addStock( String pNum, int amount )
+         throws StockException
+  {
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      theJournal.lockWrites();
+      try
+      {
+        super.addStock( pNum, amount );
+        theJournal.restocked( pNum, amount );
+      } finally
+      {
+        theJournal.unlockWrites();
+      }
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Modifies Stock details for each product in the list,
+   *  a single product is modified as a list of one.
+   * Journalled sales are written first so that the
+   *  new stock levels are not reduced by earlier sales.
+   * @param details Product details to change stocklist to
+   */
+  public void modifyStock( List<Product> details )
+         throws StockException
+  {
+    List<String> pNums = new ArrayList<>();
+    for ( Product pr : details )
+      pNums.add( pr.getProductNum() );
+    StockEvents.Held held = StockEvents.replacing( pNums );
+    try
+    {
+      theJournal.lockWrites();
+      try
+      {
+        theJournal.flush();
+        super.modifyStock( details );
+        for ( Product pr : details )
+          theJournal.modified( pr.getProductNum(), pr.getQuantity() );
+      } catch ( SQLException e )
+      {
+        throw new StockException( "SQL modifyStock: " + e.getMessage() );
+      } catch ( IOException e )
+      {
+        throw new StockException( "Journal modifyStock: " + e.getMessage() );
+      } finally
+      {
+        theJournal.unlockWrites();
+      }
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  private void currentLevel( Product pr )
+  {
+    Integer level = theJournal.knownLevel( pr.getProductNum() );
+    if ( level != null ) pr.setQuantity( level );
+  }
+}
@@ -0,0 +1,62 @@
+package middle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking middle tier calls on a pool of threads,
+ *  giving their results as CompletableFutures.
+ * The size of the shared pool is set by the system
+ *  property catshop.async.threads
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class Async
+{
+  private static final AtomicInteger theThreads = new AtomicInteger();
+
+  /**
+   * Pool shared by the async middle tier objects
+   */
+  static final ExecutorService POOL =
+    Executors.newFixedThreadPool( Integer.getInteger( "catshop.async.threads", 8 ),
+      r -> {
+        Thread t = new Thread( r, "Async-" + theThreads.incrementAndGet() );
+        t.setDaemon( true );
+        return t;
+      } );
+
+  /**
+   * A blocking call to the middle tier
+   */
+  interface Call<T>
+  {
+    T call() throws Exception;
+  }
+
+  /**
+   * Run the call on the executor
+   * @param executor Runs the call
+   * @param call     The blocking call
+   * @return result of the call, or completed with the exception
+   *         (e.g. StockException) the call throws
+   */
+  static <T> CompletableFuture<T> run( Executor executor, Call<T> call )
+  {
+    CompletableFuture<T> res = new CompletableFuture<>();
+    executor.execute( () -> {
+      try
+      {
+        res.complete( call.call() );
+      } catch ( Exception e )
+      {
+        res.completeExceptionally( e );
+      }
+    } );
+    return res;
+  }
+}
@@ -0,0 +1,73 @@
+package middle;
+
+import catalogue.Basket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Order processing without waiting, each request is made to
+ *  a (blocking) order processing system on a pool of threads.
+ * Works with local (Order) or remote (F_Order) order processing.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class AsyncOrder implements AsyncOrderProcessing
+{
+  private final OrderProcessing theOrder;       // Orders
+  private final Executor        theExecutor;    // Runs requests
+
+  /**
+   * @param aOrder Order processing, requests run on the shared pool
+   */
+  public AsyncOrder( OrderProcessing aOrder )
+  {
+    this( aOrder, Async.POOL );
+  }
+
+  /**
+   * @param aOrder    Order processing
+   * @param aExecutor Runs the requests
+   */
+  public AsyncOrder( OrderProcessing aOrder, Executor aExecutor )
+  {
+    theOrder    = aOrder;
+    theExecutor = aExecutor;
+  }
+
+  public CompletableFuture<Void> newOrder( Basket bought )
+  {
+    return Async.run( theExecutor,
+                      () -> { theOrder.newOrder( bought ); return null; } );
+  }
+
+  public CompletableFuture<Integer> uniqueNumber()
+  {
+    return Async.run( theExecutor, theOrder::uniqueNumber );
+  }
+
+  public CompletableFuture<Basket> getOrderToPick()
+  {
+    return Async.run( theExecutor, theOrder::getOrderToPick );
+  }
+
+  public CompletableFuture<Boolean> informOrderPicked( int orderNum )
+  {
+    return Async.run( theExecutor,
+                      () -> theOrder.informOrderPicked( orderNum ) );
+  }
+
+  public CompletableFuture<Boolean> informOrderCollected( int orderNum )
+  {
+    return Async.run( theExecutor,
+                      () -> theOrder.informOrderCollected( orderNum ) );
+  }
+
+  public CompletableFuture<Map<String,List<Integer>>> getOrderState()
+  {
+    return Async.run( theExecutor, theOrder::getOrderState );
+  }
+}
@@ -0,0 +1,26 @@
+package middle;
+
+import catalogue.Basket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+  * Interface for order processing without waiting.
+  * Each method returns at once, the future is completed with the
+  *  result or with the OrderException the request failed with.
+  * @author  Mike Smith University of Brighton
+  * @version 1.0
+  */
+
+public interface AsyncOrderProcessing
+{
+                                                            // Used by
+  CompletableFuture<Void>    newOrder(Basket bought);       // Cashier
+  CompletableFuture<Integer> uniqueNumber();                // Cashier
+  CompletableFuture<Basket>  getOrderToPick();              // Picker
+  CompletableFuture<Boolean> informOrderPicked(int orderNum);    // Picker
+  CompletableFuture<Boolean> informOrderCollected(int orderNum); // Collection
+  CompletableFuture<Map<String,List<Integer>>> getOrderState();  // Display
+}
@@ -0,0 +1,94 @@
+package middle;
+
+import catalogue.Product;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Read access to the stock list without waiting, each request
+ *  is made to a (blocking) stock list on a pool of threads.
+ * Works with any stock list, local (e.g. StockR) or remote (F_StockR).
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class AsyncStockR implements AsyncStockReader
+{
+  private final StockReader theStock;           // Stock list
+  private final Executor    theExecutor;        // Runs requests
+
+  /**
+   * @param aStock Stock list, requests run on the shared pool
+   */
+  public AsyncStockR( StockReader aStock )
+  {
+    this( aStock, Async.POOL );
+  }
+
+  /**
+   * @param aStock    Stock list
+   * @param aExecutor Runs the requests
+   */
+  public AsyncStockR( StockReader aStock, Executor aExecutor )
+  {
+    theStock    = aStock;
+    theExecutor = aExecutor;
+  }
+
+  public CompletableFuture<Boolean> exists( String pNum )
+  {
+    return run( () -> theStock.exists( pNum ) );
+  }
+
+  public CompletableFuture<Product> getDetails( String pNum )
+  {
+    return run( () -> theStock.getDetails( pNum ) );
+  }
+
+  public CompletableFuture<Optional<Product>> lookup( String pNum )
+  {
+    return run( () -> theStock.lookup( pNum ) );
+  }
+
+  public CompletableFuture<Map<String,Product>> getDetails(
+                                             Collection<String> pNums )
+  {
+    return run( () -> theStock.getDetails( pNums ) );
+  }
+
+  public CompletableFuture<List<Product>> search( String query,
+                                                  int from, int max )
+  {
+    return run( () -> theStock.search( query, from, max ) );
+  }
+
+  public CompletableFuture<List<Product>> lowStock( int below, int max )
+  {
+    return run( () -> theStock.lowStock( below, max ) );
+  }
+
+  public CompletableFuture<List<Product>> priceRange( long minPrice,
+                                                      long maxPrice, int max )
+  {
+    return run( () -> theStock.priceRange( minPrice, maxPrice, max ) );
+  }
+
+  public CompletableFuture<ImageIcon> getImage( String pNum )
+  {
+    return run( () -> theStock.getImage( pNum ) );
+  }
+
+  /**
+   * Run the request on the executor
+   */
+  <T> CompletableFuture<T> run( Async.Call<T> call )
+  {
+    return Async.run( theExecutor, call );
+  }
+}
@@ -0,0 +1,60 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Read/write access to the stock list without waiting, each request
+ *  is made to a (blocking) stock list on a pool of threads.
+ * Works with any stock list, local (e.g. StockRW) or remote (F_StockRW).
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class AsyncStockRW extends AsyncStockR
+                          implements AsyncStockReadWriter
+{
+  private final StockReadWriter theStock;       // Stock list
+
+  /**
+   * @param aStock Stock list, requests run on the shared pool
+   */
+  public AsyncStockRW( StockReadWriter aStock )
+  {
+    this( aStock, Async.POOL );
+  }
+
+  /**
+   * @param aStock    Stock list
+   * @param aExecutor Runs the requests
+   */
+  public AsyncStockRW( StockReadWriter aStock, Executor aExecutor )
+  {
+    super( aStock, aExecutor );
+    theStock = aStock;
+  }
+
+  public CompletableFuture<Boolean> buyStock( String pNum, int amount )
+  {
+    return run( () -> theStock.buyStock( pNum, amount ) );
+  }
+
+  public CompletableFuture<List<Product>> buyBasket( Basket bought )
+  {
+    return run( () -> theStock.buyBasket( bought ) );
+  }
+
+  public CompletableFuture<Void> addStock( String pNum, int amount )
+  {
+    return run( () -> { theStock.addStock( pNum, amount ); return null; } );
+  }
+
+  public CompletableFuture<Void> modifyStock( Product product )
+  {
+    return run( () -> { theStock.modifyStock( product ); return null; } );
+  }
+}
@@ -0,0 +1,48 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+  * Interface for read/write access to the stock list without waiting.
+  * Each method returns at once, the future is completed with the
+  *  result or with the StockException the request failed with.
+  * @author  Mike Smith University of Brighton
+  * @version 1.0
+  */
+
+public interface AsyncStockReadWriter extends AsyncStockReader
+{
+  /**
+   * Customer buys stock, stock level is thus decremented by amount bought.
+   * @param pNum Product number
+   * @param amount Quantity of product
+   * @return true if succeeds else false
+   */
+  CompletableFuture<Boolean> buyStock(String pNum, int amount);
+
+  /**
+   * Customer buys the whole basket, all lines or none
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  CompletableFuture<List<Product>> buyBasket(Basket bought);
+
+  /**
+   * Adds stock (Restocks) to store.
+   * @param pNum Product number
+   * @param amount Quantity of product
+   * @return completed when done
+   */
+  CompletableFuture<Void> addStock(String pNum, int amount);
+
+  /**
+   * Modifies Stock details for a given product number.
+   * @param product Replace with this version of product
+   * @return completed when done
+   */
+  CompletableFuture<Void> modifyStock(Product product);
+}
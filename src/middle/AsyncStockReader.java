@@ -0,0 +1,84 @@
+package middle;
+
+import catalogue.Product;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+  * Interface for read access to the stock list without waiting.
+  * Each method returns at once, the future is completed with the
+  *  result or with the StockException the request failed with.
+  * @author  Mike Smith University of Brighton
+  * @version 1.0
+  */
+
+public interface AsyncStockReader
+{
+  /**
+   * Checks if the product exits in the stock list
+   * @param pNum Product nymber
+   * @return true if exists otherwise false
+   */
+  CompletableFuture<Boolean> exists(String pNum);
+
+  /**
+   * Returns details about the product in the stock list
+   * @param pNum Product nymber
+   * @return StockNumber, Description, Price, Quantity
+   */
+  CompletableFuture<Product> getDetails(String pNum);
+
+  /**
+   * Returns details about the product in the stock list
+   * @param pNum Product nymber
+   * @return StockNumber, Description, Price, Quantity
+   *         or empty if no such product
+   */
+  CompletableFuture<Optional<Product>> lookup(String pNum);
+
+  /**
+   * Returns details about many products in the stock list
+   * @param pNums Product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  CompletableFuture<Map<String,Product>> getDetails(Collection<String> pNums);
+
+  /**
+   * Finds products by the words of their descriptions
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
+   */
+  CompletableFuture<List<Product>> search(String query, int from, int max);
+
+  /**
+   * Returns the products with least stock
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  CompletableFuture<List<Product>> lowStock(int below, int max);
+
+  /**
+   * Returns the cheapest products in a band of prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  CompletableFuture<List<Product>> priceRange(long minPrice, long maxPrice,
+                                              int max);
+
+  /**
+   * Returns an image of the product in the stock list
+   * @param pNum Product nymber
+   * @return Image
+   */
+  CompletableFuture<ImageIcon> getImage(String pNum);
+}
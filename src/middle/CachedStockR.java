@@ -0,0 +1,170 @@
+package middle;
+
+import catalogue.Product;
+import debug.DEBUG;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read access to the stock list through a cache of product details.
+ * Products not in the cache are read from the stock list
+ *  and remembered.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class CachedStockR implements StockReader
+{
+  private final StockReader  theStock;          // Stock list
+  private final ProductCache theCache;          // Cached products
+
+  /**
+   * @param aStock Stock list read from
+   * @param aCache Cache of products, may be shared
+   */
+  public CachedStockR( StockReader aStock, ProductCache aCache )
+  {
+    theStock = aStock;
+    theCache = aCache;
+  }
+
+  /**
+   * Returns the cache used
+   * @return the cache
+   */
+  public ProductCache getCache()
+  {
+    return theCache;
+  }
+
+  /**
+   * Checks if the product exits in the stock list
+   * @param pNum The product number
+   * @return true if exists otherwise false
+   */
+  public boolean exists( String pNum )
+         throws StockException
+  {
+    return lookup( pNum ).isPresent();
+  }
+
+  /**
+   * Returns details about the product in the stock list.
+   * @param pNum The product number
+   * @return Details in an instance of a Product
+   */
+  public Product getDetails( String pNum )
+         throws StockException
+  {
+    return lookup( pNum ).orElse( new Product( "0", "", 0.00, 0 ) );
+  }
+
+  /**
+   * Returns details about the product, from the cache if held
+   * @param pNum The product number
+   * @return Details in an instance of a Product or empty if not found
+   */
+  public Optional<Product> lookup( String pNum )
+         throws StockException
+  {
+    ProductCache.Cached entry = theCache.get( pNum );
+    if ( entry != null )
+      return Optional.ofNullable( entry.getProduct() );
+    long token = theCache.startRead();
+    Optional<Product> found = theStock.lookup( pNum );
+    theCache.put( pNum, found.orElse( null ), token );
+    DEBUG.trace( "CachedStockR: miss %s", pNum );
+    return found;
+  }
+
+  /**
+   * Returns details about many products, those not cached are
+   *  read in a single request.
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws StockException
+  {
+    Map<String,Product> cached  = new LinkedHashMap<>();
+    List<String>        missing = new ArrayList<>();
+    for ( String pNum : pNums )
+    {
+      ProductCache.Cached entry = theCache.get( pNum );
+      if ( entry == null )
+        missing.add( pNum );
+      else if ( entry.getProduct() != null )
+        cached.put( pNum, entry.getProduct() );
+    }
+    if ( missing.isEmpty() ) return cached;
+
+    long token = theCache.startRead();
+    Map<String,Product> read = theStock.getDetails( missing );
+    for ( String pNum : missing )
+      theCache.put( pNum, read.get( pNum ), token );
+
+    Map<String,Product> res = new LinkedHashMap<>();
+    for ( String pNum : pNums )                 // Order asked for
+    {
+      Product pr = cached.containsKey( pNum ) ? cached.get( pNum )
+                                               : read.get( pNum );
+      if ( pr != null ) res.put( pNum, pr );
+    }
+    return res;
+  }
+
+  /**
+   * Finds products by the words of their descriptions, not cached
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
+   */
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    return theStock.search( query, from, max );
+  }
+
+  /**
+   * Returns the products with least stock, not cached
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    return theStock.lowStock( below, max );
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices, not cached
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    return theStock.priceRange( minPrice, maxPrice, max );
+  }
+
+  /**
+   * Returns an image of the product, not cached
+   * @param pNum The product number
+   * @return Image
+   */
+  public ImageIcon getImage( String pNum )
+         throws StockException
+  {
+    return theStock.getImage( pNum );
+  }
+}
@@ -0,0 +1,117 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+
+import java.util.List;
+
+/**
+ * Read/write access to the stock list through a cache of
+ *  product details.
+ * Every change to stock removes the product from the cache,
+ *  so it is read again, with its new stock level, when next used.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class CachedStockRW extends CachedStockR
+                           implements StockReadWriter
+{
+  private final StockReadWriter theStock;       // Stock list
+
+  /**
+   * @param aStock Stock list read from and written to
+   * @param aCache Cache of products, may be shared
+   */
+  public CachedStockRW( StockReadWriter aStock, ProductCache aCache )
+  {
+    super( aStock, aCache );
+    theStock = aStock;
+  }
+
+  /**
+   * Customer buys stock, quantity decreased if sucessful.
+   * @param pNum Product number
+   * @param amount Amount of stock bought
+   * @return true if succeeds else false
+   */
+  public boolean buyStock( String pNum, int amount )
+         throws StockException
+  {
+    try
+    {
+      return theStock.buyStock( pNum, amount );
+    } finally
+    {
+      getCache().invalidate( pNum );
+    }
+  }
+
+  /**
+   * Customer buys the whole basket in a single request
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    try
+    {
+      return theStock.buyBasket( bought );
+    } finally
+    {
+      for ( Product pr : bought )
+        getCache().invalidate( pr.getProductNum() );
+    }
+  }
+
+  /**
+   * Adds stock (Re-stocks) to the store.
+   * @param pNum Product number
+   * @param amount Amount of stock to add
+   */
+  public void addStock( String pNum, int amount )
+         throws StockException
+  {
+    try
+    {
+      theStock.addStock( pNum, amount );
+    } finally
+    {
+      getCache().invalidate( pNum );
+    }
+  }
+
+  /**
+   * Modifies Stock details for a given product number.
+   * @param detail Product details to change stocklist to
+   */
+  public void modifyStock( Product detail )
+         throws StockException
+  {
+    try
+    {
+      theStock.modifyStock( detail );
+    } finally
+    {
+      getCache().invalidate( detail.getProductNum() );
+    }
+  }
+
+  /**
+   * Modifies Stock details for each product in the list.
+   * @param details Product details to change stocklist to
+   */
+  public void modifyStock( List<Product> details )
+         throws StockException
+  {
+    try
+    {
+      theStock.modifyStock( details );
+    } finally
+    {
+      for ( Product pr : details )
+        getCache().invalidate( pr.getProductNum() );
+    }
+  }
+}
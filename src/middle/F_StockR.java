@@ -11,11 +11,34 @@ package middle;
 
 import catalogue.Product;
 import debug.DEBUG;
+import remote.ImageData;
+import remote.R_StockListener;
 import remote.RemoteStockR_I;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Pictures are held on disk in the directory given by the system
+// property catshop.image.dir, as <hash>.png, with <product>.ref holding
+// the hash of the picture last shown for a product. The middle tier
+// is sent that hash and only returns the picture if it has changed.
+// Only product numbers and hashes made of letters and digits are used
+// as file names, so no file is written outside that directory. The
+// picture of any other product is fetched each time it is shown.
 
 /**
  * Setup connection to the middle tier
@@ -23,15 +46,37 @@ import java.rmi.RemoteException;
 
 public class F_StockR implements StockReader
 {
-  private RemoteStockR_I aR_StockR   = null;
+  private static final Pattern SAFE = Pattern.compile( "[A-Za-z0-9]+" );
+
+  private volatile RemoteStockR_I aR_StockR = null;
   private String         theStockURL = null;
+  private File           theImageDir = null;
+  private final Map<String,String> theImageHashes =
+                                         new ConcurrentHashMap<>();
+  private final Map<Long,R_StockListener> theListeners =
+                                         new ConcurrentHashMap<>();
 
   public F_StockR( String url )
   {
     DEBUG.trace("F_StockR: %s", url );
     theStockURL = url;
+    theImageDir = new File( System.getProperty( "catshop.image.dir",
+                              new File( System.getProperty( "java.io.tmpdir" ),
+                                        "catshop-images" ).getPath() ) );
+    theImageDir.mkdirs();
   }
   
+  /**
+   * Return the remote stock object, connecting if not connected.
+   * Only connecting is synchronized, so several calls can be
+   *  in progress at once.
+   */
+  private synchronized RemoteStockR_I remote() throws StockException
+  {
+    if ( aR_StockR == null ) connect();
+    return aR_StockR;
+  }
+
   private void connect() throws StockException
   {
     try                                             // Setup
@@ -53,14 +98,13 @@ public class F_StockR implements StockReader
    * @return true if exists otherwise false
    */
 
-  public synchronized boolean exists( String number )
+  public boolean exists( String number )
          throws StockException
   {
     DEBUG.trace("F_StockR:exists()" );
     try
     {
-      if ( aR_StockR == null ) connect();
-      return aR_StockR.exists( number );
+      return remote().exists( number );
     } catch ( RemoteException e )
     {
       aR_StockR = null;
@@ -73,36 +117,266 @@ public class F_StockR implements StockReader
    * @return StockNumber, Description, Price, Quantity
    */
 
-  public synchronized Product getDetails( String number )
+  public Product getDetails( String number )
          throws StockException
   {
     DEBUG.trace("F_StockR:getDetails()" );
     try
     {
-      if ( aR_StockR == null ) connect();
-      return aR_StockR.getDetails( number );
+      return remote().getDetails( number );
     } catch ( RemoteException e )
     {
       aR_StockR = null;
       throw new StockException( "Net: " + e.getMessage() );
     }
   }
+
+  /**
+   * Returns details about the product in the stock list
+   *  using a single call to the middle tier
+   * @return StockNumber, Description, Price, Quantity or empty
+   */
+
+  public Optional<Product> lookup( String number )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:lookup()" );
+    try
+    {
+      return Optional.ofNullable( remote().lookup( number ) );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns details about many products in the stock list
+   *  using a single call to the middle tier
+   * @return Map of product number to details
+   */
+
+  public Map<String,Product> getDetails( 
+                                  Collection<String> numbers )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:getDetails(%d)", numbers.size() );
+    try
+    {
+      return remote().getDetails( new ArrayList<>( numbers ) );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+  
   
+  /**
+   * Finds products by the words of their descriptions
+   *  using a single call to the middle tier
+   * @return Details of the products found, best match first
+   */
+
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:search(%s)", query );
+    try
+    {
+      return remote().search( query, from, max );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+  
+  /**
+   * Returns the products with least stock
+   *  using a single call to the middle tier
+   * @return Details of the products, lowest stock level first
+   */
+
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:lowStock(%d)", below );
+    try
+    {
+      return remote().lowStock( below, max );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices
+   *  using a single call to the middle tier
+   * @return Details of the products, cheapest first
+   */
+
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:priceRange(%d,%d)", minPrice, maxPrice );
+    try
+    {
+      return remote().priceRange( minPrice, maxPrice, max );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
   
-  public synchronized ImageIcon getImage( String number )
+  /**
+   * Returns a picture of the product, from the local picture
+   *  cache unless the middle tier has a different picture
+   * @return Picture of the product
+   */
+
+  public ImageIcon getImage( String number )
          throws StockException
   {
     DEBUG.trace("F_StockR:getImage()" );
     try
     {
-      if ( aR_StockR == null ) connect();
-      return aR_StockR.getImage( number );
+      String known = knownImage( number );
+      ImageData data = remote().getImageData( number, known );
+      if ( data == null )
+        return new ImageIcon();                     // No picture
+      if ( ! SAFE.matcher( data.getHash() ).matches() )
+        throw new StockException( "Image cache: bad hash" );
+      File file = new File( theImageDir, data.getHash() + ".png" );
+      File ref  = refFile( number );
+      if ( data.getBytes() != null )
+      {
+        save( file, data.getBytes() );
+        if ( ref != null )
+          save( ref, data.getHash().getBytes( StandardCharsets.UTF_8 ) );
+      }
+      theImageHashes.put( number, data.getHash() );
+      return new ImageIcon( Files.readAllBytes( file.toPath() ) );
     }
     catch ( RemoteException e )
     {
       aR_StockR = null;
       throw new StockException( "Net: " + e.getMessage() );
     }
+    catch ( IOException e )
+    {
+      throw new StockException( "Image cache: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Subscribe to changes to the stock list, the listener is
+   *  made available to the middle tier which calls it
+   * @param l     Listener, told of each change in order
+   * @param pNums Products of interest, null for all
+   * @return subscription number, used to unsubscribe
+   */
+
+  public long addStockListener( StockListener l, Collection<String> pNums )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:addStockListener()" );
+    R_StockListener exported = null;
+    try
+    {
+      exported = new R_StockListener( l );
+      long id = remote().addStockListener( exported,
+                   pNums == null ? null : new ArrayList<>( pNums ) );
+      theListeners.put( id, exported );
+      return id;
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      if ( exported != null ) unexport( exported );
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Stop a listener being told of changes to the stock list
+   * @param id subscription number from addStockListener()
+   */
+
+  public void removeStockListener( long id )
+         throws StockException
+  {
+    DEBUG.trace("F_StockR:removeStockListener()" );
+    R_StockListener exported = theListeners.remove( id );
+    if ( exported == null ) return;
+    unexport( exported );
+    try
+    {
+      remote().removeStockListener( id );
+    } catch ( RemoteException e )
+    {
+      aR_StockR = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  private void unexport( R_StockListener exported )
+  {
+    try
+    {
+      UnicastRemoteObject.unexportObject( exported, true );
+    } catch ( RemoteException e )
+    {
+      DEBUG.traceA( "F_StockR: unexport %s", e.getMessage() );
+    }
+  }
+
+  /**
+   * Return the hash of the picture held for the product
+   * @return hash or null if no picture held
+   */
+  private String knownImage( String number )
+  {
+    String hash = theImageHashes.get( number );
+    try
+    {
+      File ref = refFile( number );
+      if ( hash == null && ref != null && ref.exists() )
+        hash = new String( Files.readAllBytes( ref.toPath() ),
+                           StandardCharsets.UTF_8 );
+    } catch ( IOException e )
+    {
+      hash = null;
+    }
+    if ( hash != null && ( ! SAFE.matcher( hash ).matches() ||
+                           ! new File( theImageDir, hash + ".png" ).exists() ) )
+      hash = null;                                  // Lost
+    return hash;
+  }
+
+  /**
+   * The file holding the hash of the picture of a product
+   * @return the file or null if the product number can not
+   *         be used as a file name
+   */
+  private File refFile( String number )
+  {
+    return SAFE.matcher( number ).matches()
+           ? new File( theImageDir, number + ".ref" ) : null;
+  }
+
+  /**
+   * Write the file so that it is never seen half written
+   */
+  private void save( File file, byte[] bytes ) throws IOException
+  {
+    File tmp = File.createTempFile( "img", ".tmp", theImageDir );
+    Files.write( tmp.toPath(), bytes );
+    Files.move( tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING );
   }
 
 }
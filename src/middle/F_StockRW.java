@@ -9,12 +9,14 @@ package middle;
  * @version 2.0
  */
 
+import catalogue.Basket;
 import catalogue.Product;
 import debug.DEBUG;
 import remote.RemoteStockRW_I;
 
 import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Setup connection to the middle tier
@@ -70,6 +72,28 @@ public class F_StockRW extends F_StockR
     }
   }
 
+  /**
+   * Buys every line of the basket in one call and one transaction
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   * @throws StockException if remote exception
+   */
+
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    DEBUG.trace("F_StockRW:buyBasket()" );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      return aR_StockRW.buyBasket( bought );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
   /**
    * Adds (Restocks) stock to the product list
    * @param number Stock number
@@ -114,4 +138,114 @@ public class F_StockRW extends F_StockR
     }
   }
 
+  /**
+   * Modifies Stock details for each product in the list,
+   *  sent in one call
+   * @param details Stock details to be modified
+   * @throws StockException if remote exception
+   */
+
+  public void modifyStock( List<Product> details )
+              throws StockException
+  {
+    DEBUG.trace("F_StockRW:modifyStock(%d)", details.size() );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      aR_StockRW.modifyStock( details );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Reserves stock on the middle tier for a short time
+   * @param number Stock number
+   * @param amount of stock
+   * @return reservation number, 0 if not enough stock
+   * @throws StockException if remote exception
+   */
+
+  public long reserveStock( String number, int amount )
+         throws StockException
+  {
+    DEBUG.trace("F_StockRW:reserveStock()" );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      return aR_StockRW.reserveStock( number, amount );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Buys the stock reserved
+   * @param id reservation number
+   * @return true if bought, false if the reservation has expired
+   * @throws StockException if remote exception
+   */
+
+  public boolean buyReserved( long id )
+         throws StockException
+  {
+    DEBUG.trace("F_StockRW:buyReserved()" );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      return aR_StockRW.buyReserved( id );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Cancels the stock reserved
+   * @param id reservation number
+   * @throws StockException if remote exception
+   */
+
+  public void cancelReservation( long id )
+         throws StockException
+  {
+    DEBUG.trace("F_StockRW:cancelReservation()" );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      aR_StockRW.cancelReservation( id );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Customer gives back stock bought
+   * @param number product number
+   * @param amount amount given back
+   * @throws StockException if remote exception
+   */
+
+  public void returnStock( String number, int amount )
+         throws StockException
+  {
+    DEBUG.trace("F_StockRW:returnStock()" );
+    try
+    {
+      if ( aR_StockRW == null ) connect();
+      aR_StockRW.returnStock( number, amount );
+    } catch ( RemoteException e )
+    {
+      aR_StockRW = null;
+      throw new StockException( "Net: " + e.getMessage() );
+    }
+  }
+
 }
@@ -0,0 +1,440 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+import debug.DEBUG;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Stock of a hot product is taken from the stock list a chunk at a
+// time and held in a number of stripes (counters). A sale takes stock
+// from the stripe of the thread making it, so sales from different
+// tills do not wait for each other or for the database. Only when a
+// stripe runs out is the stock list used, to take another chunk.
+// The stock list therefore shows less stock than there is, the stock
+// levels returned from here add back the stock held.
+// Stock held is given back to the stock list when a hot product has
+// not been sold for a while, and when the program ends. It is also
+// given back every so often while the product sells, so if the program
+// fails no more than the stock taken since is lost.
+// Stock moved between the counters and the stock list is moved
+// quietly, the sales of hot products are published here instead.
+// The products are held (see StockEvents) before a counter is locked.
+
+/**
+ * Read/write access to the stock list with the stock of
+ *  hot (very popular) products held in striped counters.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class HotStockRW implements StockReadWriter
+{
+  private static final int SPACING = 16;          // Ints, so stripes are
+                                                  //  on different cache lines
+  private final StockReadWriter    theStock;      // Stock list
+  private final int                theStripes;
+  private final int                theChunk;      // Taken at a time
+  private final Map<String,Counter> theHot = new HashMap<>();
+
+  /**
+   * Stock held for one hot product
+   */
+  private class Counter
+  {
+    private final String             thePNum;
+    private final AtomicIntegerArray theHeld =
+      new AtomicIntegerArray( theStripes * SPACING );
+    private volatile long            theLastSale = System.currentTimeMillis();
+    private volatile long            theTakenAt  = 0;   // First held, 0 none
+
+    private Counter( String pNum )
+    {
+      thePNum = pNum;
+    }
+
+    /**
+     * Take amount from the stripe, if it holds enough
+     */
+    private boolean take( int stripe, int amount )
+    {
+      int at = stripe * SPACING;
+      while ( true )
+      {
+        int held = theHeld.get( at );
+        if ( held < amount ) return false;
+        if ( theHeld.compareAndSet( at, held, held - amount ) ) return true;
+      }
+    }
+
+    private void give( int stripe, int amount )
+    {
+      theHeld.addAndGet( stripe * SPACING, amount );
+    }
+
+    /**
+     * Take all the stock held
+     * @return the amount held
+     */
+    private int drain()
+    {
+      int total = 0;
+      for ( int i = 0; i < theStripes; i++ )
+        total += theHeld.getAndSet( i * SPACING, 0 );
+      return total;
+    }
+
+    /**
+     * @return the stock held, may be changing
+     */
+    private int held()
+    {
+      int total = 0;
+      for ( int i = 0; i < theStripes; i++ )
+        total += theHeld.get( i * SPACING );
+      return total;
+    }
+
+    /**
+     * Buy amount, taking more stock from the stock list if
+     *  the stripe of this thread does not hold enough.
+     */
+    private boolean buy( int amount ) throws StockException
+    {
+      theLastSale = System.currentTimeMillis();
+      int stripe = stripe();
+      if ( take( stripe, amount ) ) return true;          // Usual case
+      synchronized ( this )                               // Refill
+      {
+        if ( take( stripe, amount ) ) return true;
+        int want = amount + theChunk;
+        StockEvents.beginQuiet();
+        try
+        {
+          if ( ! theStock.buyStock( thePNum, want ) )     // Not a chunk
+          {
+            give( stripe, drain() );                      // Gather all held
+            int shortBy = amount - held();
+            want = 0;
+            if ( shortBy > 0 && theStock.buyStock( thePNum, shortBy ) )
+              want = shortBy;                             // Just enough
+          }
+        } finally
+        {
+          StockEvents.endQuiet();
+        }
+        if ( want > 0 && theTakenAt == 0 )
+          theTakenAt = System.currentTimeMillis();
+        give( stripe, want );
+        return take( stripe, amount );
+      }
+    }
+
+    /**
+     * Give back to the stock list all the stock held.
+     * The product is held before the counter is locked, the
+     *  order in which sales take them.
+     */
+    private void giveBack() throws StockException
+    {
+      StockEvents.Held changing = StockEvents.changing( thePNum );
+      try
+      {
+        synchronized ( this )
+        {
+          theTakenAt = 0;
+          int held = drain();
+          if ( held == 0 ) return;
+          StockEvents.beginQuiet();
+          try
+          {
+            theStock.addStock( thePNum, held );
+          } finally
+          {
+            StockEvents.endQuiet();
+          }
+        }
+      } finally
+      {
+        changing.close();
+      }
+    }
+  }
+
+  /**
+   * @param aStock   Stock list
+   * @param hot      Product numbers of hot products
+   * @param stripes  Number of counters per product
+   * @param chunk    Stock taken from the stock list at a time
+   * @param idle     Stock held is given back after idle ms without a sale
+   * @param hold     Stock held is given back after hold ms in any case
+   */
+  public HotStockRW( StockReadWriter aStock, Collection<String> hot,
+                     int stripes, int chunk, long idle, long hold )
+  {
+    theStock   = aStock;
+    theStripes = Math.max( 1, stripes );
+    theChunk   = Math.max( 1, chunk );
+    for ( String pNum : hot )
+      theHot.put( pNum.trim(), new Counter( pNum.trim() ) );
+    DEBUG.trace( "HotStockRW: %s stripes %d chunk %d",
+                 theHot.keySet(), theStripes, theChunk );
+
+    ScheduledExecutorService giver =
+      Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread t = new Thread( r, "HotStockRW give back" );
+        t.setDaemon( true );
+        return t;
+      } );
+    long every = Math.max( 1, Math.min( idle, hold ) );
+    giver.scheduleWithFixedDelay( () -> giveBack( idle, hold ), every, every,
+                                  TimeUnit.MILLISECONDS );
+    Runtime.getRuntime().addShutdownHook(
+      new Thread( () -> giveBack( 0, 0 ) ) );
+  }
+
+  public boolean exists( String pNum ) throws StockException
+  {
+    return theStock.exists( pNum );
+  }
+
+  public Product getDetails( String pNum ) throws StockException
+  {
+    return withHeld( theStock.getDetails( pNum ) );
+  }
+
+  public Optional<Product> lookup( String pNum ) throws StockException
+  {
+    return theStock.lookup( pNum ).map( this::withHeld );
+  }
+
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws StockException
+  {
+    Map<String,Product> res = theStock.getDetails( pNums );
+    res.values().forEach( this::withHeld );
+    return res;
+  }
+
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    List<Product> res = theStock.search( query, from, max );
+    res.forEach( this::withHeld );
+    return res;
+  }
+
+  /**
+   * Returns the products with least stock, including the stock
+   *  held for hot products, which may then not be low.
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : theStock.lowStock( below, max + theHot.size() ) )
+      if ( withHeld( pr ).getQuantity() < below )
+        res.add( pr );
+    res.sort( Comparator.comparingInt( Product::getQuantity )
+                        .thenComparing( Product::getProductNum ) );
+    return res.size() > max ? new ArrayList<>( res.subList( 0, max ) ) : res;
+  }
+
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    List<Product> res = theStock.priceRange( minPrice, maxPrice, max );
+    res.forEach( this::withHeld );
+    return res;
+  }
+
+  public ImageIcon getImage( String pNum ) throws StockException
+  {
+    return theStock.getImage( pNum );
+  }
+
+  /**
+   * Customer buys stock, a hot product is bought from the
+   *  stock held for it.
+   * @param pNum Product number
+   * @param amount Amount of stock bought
+   * @return true if succeeds else false
+   */
+  public boolean buyStock( String pNum, int amount )
+         throws StockException
+  {
+    Counter hot = theHot.get( pNum.trim() );
+    if ( hot == null )
+      return theStock.buyStock( pNum, amount );
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      if ( ! hot.buy( amount ) ) return false;
+      StockEvents.sold( pNum, amount );
+      return true;
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Customer buys the whole basket, if any line can not
+   *  be filled nothing is bought.
+   * Hot lines are bought first, and given back if the
+   *  rest of the basket can not be bought.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    List<String> pNums = new ArrayList<>();
+    for ( Product pr : bought )
+      pNums.add( pr.getProductNum() );
+    StockEvents.Held held = StockEvents.changing( pNums );
+    try
+    {
+      List<Product> unfilled = new ArrayList<>();
+      List<Product> taken    = new ArrayList<>();
+      Basket        rest     = new Basket();
+      rest.setOrderNum( bought.getOrderNum() );
+      for ( Product pr : bought )
+      {
+        Counter hot = theHot.get( pr.getProductNum().trim() );
+        if ( hot == null )
+          rest.add( pr );
+        else if ( hot.buy( pr.getQuantity() ) )
+          taken.add( pr );
+        else
+          unfilled.add( pr );
+      }
+      boolean filled = false;
+      try
+      {
+        if ( unfilled.isEmpty() && ! rest.isEmpty() )
+          unfilled.addAll( theStock.buyBasket( rest ) );
+        filled = unfilled.isEmpty();
+      } finally                                           // Even if failed
+      {
+        for ( Product pr : taken )
+          if ( filled )
+            StockEvents.sold( pr.getProductNum(), pr.getQuantity() );
+          else                                            // All or nothing
+            theHot.get( pr.getProductNum().trim() )
+                  .give( stripe(), pr.getQuantity() );
+      }
+      return unfilled;
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Adds stock (Re-stocks) to the store.
+   * @param pNum Product number
+   * @param amount Amount of stock to add
+   */
+  public void addStock( String pNum, int amount )
+         throws StockException
+  {
+    theStock.addStock( pNum, amount );
+  }
+
+  /**
+   * Modifies Stock details for a given product number,
+   *  stock held for a hot product is discarded as the
+   *  new stock level replaces it.
+   * @param detail Product details to change stocklist to
+   */
+  public void modifyStock( Product detail )
+         throws StockException
+  {
+    Counter hot = theHot.get( detail.getProductNum().trim() );
+    if ( hot == null )
+    {
+      theStock.modifyStock( detail );
+      return;
+    }
+    StockEvents.Held held = StockEvents.replacing(
+            Collections.singletonList( detail.getProductNum() ) );
+    try
+    {
+      synchronized ( hot )
+      {
+        hot.drain();
+        theStock.modifyStock( detail );
+      }
+    } finally
+    {
+      held.close();
+    }
+  }
+
+  /**
+   * Modifies Stock details for each product in the list,
+   *  the products not hot are modified together, each hot
+   *  product on its own as its stock is discarded.
+   * @param details Product details to change stocklist to
+   */
+  public void modifyStock( List<Product> details )
+         throws StockException
+  {
+    List<Product> cold = new ArrayList<>();
+    for ( Product pr : details )
+      if ( theHot.containsKey( pr.getProductNum().trim() ) )
+        modifyStock( pr );
+      else
+        cold.add( pr );
+    theStock.modifyStock( cold );
+  }
+
+  /**
+   * Give back the stock held for hot products not sold for idle ms,
+   *  or held for hold ms
+   */
+  private void giveBack( long idle, long hold )
+  {
+    long now = System.currentTimeMillis();
+    for ( Counter hot : theHot.values() )
+      if ( now - hot.theLastSale >= idle ||
+           ( hot.theTakenAt != 0 && now - hot.theTakenAt >= hold ) )
+        try
+        {
+          hot.giveBack();
+        } catch ( StockException e )
+        {
+          DEBUG.traceA( "HotStockRW: give back %s %s",
+                        hot.thePNum, e.getMessage() );
+        }
+  }
+
+  private Product withHeld( Product pr )
+  {
+    Counter hot = theHot.get( pr.getProductNum().trim() );
+    if ( hot != null )
+      pr.setQuantity( pr.getQuantity() + hot.held() );
+    return pr;
+  }
+
+  private int stripe()
+  {
+    return (int) ( Thread.currentThread().getId() % theStripes );
+  }
+}
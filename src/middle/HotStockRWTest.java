@@ -0,0 +1,145 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test of the HotStockRW class, in front of a stock
+ *  list held in memory
+ */
+public class HotStockRWTest
+{
+  private static final String HOT   = "H001";
+  private static final String COLD  = "C001";
+  private static final int    CHUNK = 10;
+  private static final long   NEVER = 3600000;      // ms
+  private static final long   WAIT  = 5000;         // For a give back, ms
+
+  private MemoryStockRW theStock = null;
+
+  @Before
+  public void setUp()
+  {
+    theStock = new MemoryStockRW();
+    theStock.put( HOT,  499, 100 );
+    theStock.put( COLD, 250, 1 );
+  }
+
+  private HotStockRW hot( long idle, long hold )
+  {
+    return new HotStockRW( theStock, Collections.singletonList( HOT ),
+                           1, CHUNK, idle, hold );
+  }
+
+  @Test
+  public void testRefill() throws Exception
+  {
+    HotStockRW stock = hot( NEVER, NEVER );
+    assertTrue( "not bought", stock.buyStock( HOT, 3 ) );
+    assertEquals( "chunk not taken", 100 - 3 - CHUNK, theStock.level( HOT ) );
+    assertEquals( "level with held", 97, stock.getDetails( HOT ).getQuantity() );
+
+    assertTrue( "not bought", stock.buyStock( HOT, CHUNK ) );
+    assertEquals( "taken though held", 87, theStock.level( HOT ) );
+    assertTrue( "not bought", stock.buyStock( HOT, 1 ) );
+    assertEquals( "not refilled", 87 - 1 - CHUNK, theStock.level( HOT ) );
+    assertEquals( "level with held", 86, stock.getDetails( HOT ).getQuantity() );
+  }
+
+  @Test
+  public void testRefillShort() throws Exception
+  {
+    theStock.put( HOT, 499, 5 );
+    HotStockRW stock = hot( NEVER, NEVER );
+    assertTrue( "not bought", stock.buyStock( HOT, 3 ) );   // Not a chunk
+    assertEquals( "more than needed taken", 2, theStock.level( HOT ) );
+    assertFalse( "bought more than held", stock.buyStock( HOT, 5 ) );
+    assertEquals( "level changed", 2, stock.getDetails( HOT ).getQuantity() );
+    assertTrue( "not bought", stock.buyStock( HOT, 2 ) );
+    assertEquals( "level", 0, stock.getDetails( HOT ).getQuantity() );
+  }
+
+  @Test
+  public void testBasketUnfilled() throws Exception
+  {
+    HotStockRW stock = hot( NEVER, NEVER );
+    List<Product> unfilled = stock.buyBasket( basket( 2, 5 ) );
+    assertEquals( "cold line filled", 1, unfilled.size() );
+    assertEquals( "wrong line", COLD, unfilled.get( 0 ).getProductNum() );
+    assertEquals( "hot line bought", 100,
+                  stock.getDetails( HOT ).getQuantity() );
+    assertEquals( "cold line bought", 1, theStock.level( COLD ) );
+
+    assertTrue( "basket not bought", stock.buyBasket( basket( 2, 1 ) ).isEmpty() );
+    assertEquals( "hot line", 98, stock.getDetails( HOT ).getQuantity() );
+    assertEquals( "cold line", 0, theStock.level( COLD ) );
+  }
+
+  @Test
+  public void testBasketFailed() throws Exception
+  {
+    HotStockRW stock = hot( NEVER, NEVER );
+    assertTrue( "not bought", stock.buyStock( HOT, 1 ) );   // Holds a chunk
+    theStock.setFailing( true );
+    try
+    {
+      stock.buyBasket( basket( 2, 1 ) );
+      fail( "failure not passed on" );
+    } catch ( StockException e )
+    {
+      // Expected
+    }
+    theStock.setFailing( false );
+    assertEquals( "hot stock lost", 99, stock.getDetails( HOT ).getQuantity() );
+  }
+
+  @Test
+  public void testGiveBackIdle() throws Exception
+  {
+    HotStockRW stock = hot( 50, NEVER );
+    assertTrue( "not bought", stock.buyStock( HOT, 1 ) );
+    assertEquals( "not given back", 99, waitForLevel( 99 ) );
+    assertEquals( "level", 99, stock.getDetails( HOT ).getQuantity() );
+  }
+
+  @Test
+  public void testGiveBackHeld() throws Exception
+  {
+    HotStockRW stock = hot( NEVER, 50 );                    // Never idle
+    assertTrue( "not bought", stock.buyStock( HOT, 1 ) );
+    assertEquals( "not given back", 99, waitForLevel( 99 ) );
+    assertTrue( "not bought", stock.buyStock( HOT, 1 ) );   // Refilled
+    assertEquals( "level", 98, stock.getDetails( HOT ).getQuantity() );
+  }
+
+  private Basket basket( int hot, int cold )
+  {
+    Basket b = new Basket();
+    b.add( Product.ofMinor( HOT,  "Hot",  499, hot ) );
+    b.add( Product.ofMinor( COLD, "Cold", 250, cold ) );
+    return b;
+  }
+
+  /**
+   * Wait for the level of the hot product in the stock list,
+   *  as stock is given back by another thread
+   */
+  private int waitForLevel( int level ) throws InterruptedException
+  {
+    long until = System.currentTimeMillis() + WAIT;
+    while ( theStock.level( HOT ) != level &&
+            System.currentTimeMillis() < until )
+      Thread.sleep( 10 );
+    return theStock.level( HOT );
+  }
+}
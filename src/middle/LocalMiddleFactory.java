@@ -5,8 +5,14 @@
 
 package middle;
 
+import dbAccess.DBAccess;
+import dbAccess.DBAccessFactory;
+import dbAccess.MappedStockRW;
+import dbAccess.SalesLedger;
 import dbAccess.StockR;
 import dbAccess.StockRW;
+import dbAccess.WriteBehindStockRW;
+import debug.DEBUG;
 import orders.Order;
 
 
@@ -19,31 +25,60 @@ import orders.Order;
 
 public class LocalMiddleFactory implements MiddleFactory
 {
-  private static StockR  aStockR  = null;
-  private static StockRW aStockRW = null;
-  private static Order   aOrder   = null;
+  private static DBAccess        aDB      = null;
+  private static StockReader     aStockR  = null;
+  private static StockReadWriter aStockRW = null;
+  private static ProductCache    aCache   = null;
+  private static Order           aOrder   = null;
   
   /**
    * Return an object to access the database for read only access.
    * All users share this same object.
+   * With write-behind the read/write object is used, as only it
+   *  knows about sales not yet written to the database.
+   * Likewise with a mapped file, which only one object may use,
+   *  and with hot products, as only it knows the stock held for them.
+   * Either way the stock levels read are less the stock reserved.
    */
   
   public StockReader makeStockReader() throws StockException
   {
     if ( aStockR == null )
-      aStockR = new StockR();
+      aStockR = database().writeBehind() || database().mappedFile() != null
+                || ! database().hotProducts().isEmpty()
+                  ? makeStockReadWriter()
+                  : new ReservingStockR( cachedReader( new StockR() ) );
     return aStockR;
   }
 
   /**
    * Return an object to access the database for read/write access.
    * All users share this same object.
+   * Sales and returns made are recorded in the sales ledger.
+   * Stock reserved is kept from other customers, outermost so that
+   *  a reservation is checked against all the stock there is.
    */
   
   public StockReadWriter makeStockReadWriter() throws StockException
   {
     if ( aStockRW == null )
-      aStockRW = new StockRW();
+    {
+      StockReadWriter stock =
+        database().mappedFile() != null
+          ? new MappedStockRW()                     // Already in memory
+          : cachedReadWriter( database().writeBehind()
+                                ? new WriteBehindStockRW()
+                                : new StockRW() );
+      if ( ! database().hotProducts().isEmpty() )
+        stock = new HotStockRW( stock, database().hotProducts(),
+                                database().hotStripes(),
+                                database().hotChunk(),
+                                database().hotIdle(),
+                                database().hotHold() );
+      aStockRW = new ReservingStockRW( stock );
+      if ( database().salesLedger() )
+        SalesLedger.getLedger( database() );        // Records sales made
+    }
     return aStockRW;
   }
   
@@ -58,5 +93,45 @@ public class LocalMiddleFactory implements MiddleFactory
       aOrder = new Order();
     return aOrder;
   }
+
+  /**
+   * Put the product cache, if one is used, in front of the stock list.
+   * The reader and read/writer share the same cache so that
+   *  changes made through the read/writer are seen by both.
+   */
+
+  private static StockReader cachedReader( StockReader stock )
+  {
+    return cache() == null ? stock : new CachedStockR( stock, cache() );
+  }
+
+  private static StockReadWriter cachedReadWriter( StockReadWriter stock )
+  {
+    return cache() == null ? stock : new CachedStockRW( stock, cache() );
+  }
+
+  private static ProductCache cache()
+  {
+    if ( aCache == null && database().cacheSize() > 0 )
+    {
+      aCache = new ProductCache( database().cacheSize(),
+                                 database().cacheTTL() );
+      Runtime.getRuntime().addShutdownHook( new Thread( () ->
+        DEBUG.traceA( "ProductCache: %s", aCache.statistics() ) ) );
+    }
+    return aCache;
+  }
+
+  /**
+   * Return the description of the database in use,
+   *  which says how the middle tier objects are to be made.
+   */
+
+  private static DBAccess database()
+  {
+    if ( aDB == null )
+      aDB = (new DBAccessFactory()).getNewDBAccess();
+    return aDB;
+  }
 }
 
@@ -0,0 +1,179 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * A stock list held in memory, for the tests of the layers
+ *  put in front of the stock list.
+ * Nothing is published, as no layer under a test would.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class MemoryStockRW implements StockReadWriter
+{
+  private final Map<String,Product> theProducts = new TreeMap<>();
+  private volatile boolean          theFailing  = false;
+
+  /**
+   * Add a product to the stock list
+   * @param pNum  Product number
+   * @param price Price in pence
+   * @param level Stock level
+   */
+  synchronized void put( String pNum, long price, int level )
+  {
+    theProducts.put( pNum, Product.ofMinor( pNum, "Product " + pNum,
+                                            price, level ) );
+  }
+
+  /**
+   * @param pNum Product number
+   * @return stock level held here, -1 if not known
+   */
+  synchronized int level( String pNum )
+  {
+    Product pr = theProducts.get( pNum.trim() );
+    return pr == null ? -1 : pr.getQuantity();
+  }
+
+  /**
+   * Make every change to the stock list fail, as if
+   *  the database was not there
+   * @param failing true to fail
+   */
+  void setFailing( boolean failing )
+  {
+    theFailing = failing;
+  }
+
+  public synchronized boolean exists( String pNum )
+  {
+    return theProducts.containsKey( pNum.trim() );
+  }
+
+  public Product getDetails( String pNum )
+  {
+    return lookup( pNum ).orElse( new Product( "0", "", 0.00, 0 ) );
+  }
+
+  public synchronized Optional<Product> lookup( String pNum )
+  {
+    return Optional.ofNullable( theProducts.get( pNum.trim() ) )
+                   .map( this::copy );
+  }
+
+  public synchronized Map<String,Product> getDetails( Collection<String> pNums )
+  {
+    Map<String,Product> res = new LinkedHashMap<>();
+    for ( String pNum : pNums )
+      lookup( pNum ).ifPresent( pr -> res.put( pNum, pr ) );
+    return res;
+  }
+
+  public synchronized List<Product> search( String query, int from, int max )
+  {
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : theProducts.values() )
+      if ( pr.getDescription().contains( query ) ) res.add( copy( pr ) );
+    return page( res, from, max );
+  }
+
+  public synchronized List<Product> lowStock( int below, int max )
+  {
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : theProducts.values() )
+      if ( pr.getQuantity() < below ) res.add( copy( pr ) );
+    res.sort( Comparator.comparingInt( Product::getQuantity ) );
+    return page( res, 0, max );
+  }
+
+  public synchronized List<Product> priceRange( long minPrice, long maxPrice,
+                                                int max )
+  {
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : theProducts.values() )
+      if ( pr.getPriceMinor() >= minPrice && pr.getPriceMinor() <= maxPrice )
+        res.add( copy( pr ) );
+    return page( res, 0, max );
+  }
+
+  public ImageIcon getImage( String pNum )
+  {
+    return null;
+  }
+
+  public synchronized boolean buyStock( String pNum, int amount )
+         throws StockException
+  {
+    failIfAsked();
+    Product pr = theProducts.get( pNum.trim() );
+    if ( pr == null || pr.getQuantity() < amount ) return false;
+    pr.setQuantity( pr.getQuantity() - amount );
+    return true;
+  }
+
+  public synchronized List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    failIfAsked();
+    Map<String,Integer> wanted = new LinkedHashMap<>();
+    for ( Product pr : bought )
+      wanted.merge( pr.getProductNum().trim(), pr.getQuantity(),
+                    Integer::sum );
+    List<Product> unfilled = new ArrayList<>();
+    for ( Product pr : bought )
+    {
+      String key = pr.getProductNum().trim();
+      if ( level( key ) < wanted.get( key ) ) unfilled.add( pr );
+    }
+    if ( unfilled.isEmpty() )
+      for ( Map.Entry<String,Integer> e : wanted.entrySet() )
+        buyStock( e.getKey(), e.getValue() );
+    return unfilled;
+  }
+
+  public synchronized void addStock( String pNum, int amount )
+         throws StockException
+  {
+    failIfAsked();
+    Product pr = theProducts.get( pNum.trim() );
+    if ( pr != null ) pr.setQuantity( pr.getQuantity() + amount );
+  }
+
+  public synchronized void modifyStock( Product detail )
+         throws StockException
+  {
+    failIfAsked();
+    theProducts.put( detail.getProductNum().trim(), copy( detail ) );
+  }
+
+  private void failIfAsked() throws StockException
+  {
+    if ( theFailing ) throw new StockException( "MemoryStockRW: failing" );
+  }
+
+  private Product copy( Product pr )
+  {
+    return Product.ofMinor( pr.getProductNum(), pr.getDescription(),
+                            pr.getPriceMinor(), pr.getQuantity() );
+  }
+
+  private static List<Product> page( List<Product> res, int from, int max )
+  {
+    int to = Math.min( res.size(), from + max );
+    return from >= to ? new ArrayList<>()
+                      : new ArrayList<>( res.subList( from, to ) );
+  }
+}
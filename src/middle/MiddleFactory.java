@@ -37,5 +37,40 @@ public interface MiddleFactory
    */
   public OrderProcessing makeOrderProcessing() throws OrderException;
 
-}
+  /**
+   * Return an object to access the database for read only access
+   *  without waiting for each request
+   * @return instance of AsyncStockReader
+   * @throws StockException if issue
+   */
+  public default AsyncStockReader makeAsyncStockReader()
+         throws StockException
+  {
+    return new AsyncStockR( makeStockReader() );
+  }
+
+  /**
+   * Return an object to access the database for read/write access
+   *  without waiting for each request
+   * @return instance of AsyncStockReadWriter
+   * @throws StockException if issue
+   */
+  public default AsyncStockReadWriter makeAsyncStockReadWriter()
+         throws StockException
+  {
+    return new AsyncStockRW( makeStockReadWriter() );
+  }
+
+  /**
+   * Return an object to access the order processing system
+   *  without waiting for each request
+   * @return instance of AsyncOrderProcessing
+   * @throws OrderException if issue
+   */
+  public default AsyncOrderProcessing makeAsyncOrderProcessing()
+         throws OrderException
+  {
+    return new AsyncOrder( makeOrderProcessing() );
+  }
 
+}
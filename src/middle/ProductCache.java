@@ -0,0 +1,148 @@
+package middle;
+
+import catalogue.Product;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of product details (including stock level).
+ * The least recently used entry is removed when the cache is full
+ *  and an entry is not used once older than its time to live.
+ * Unknown product numbers are also remembered (as a null product).
+ * Products held are copies, so a user changing a product
+ *  that it has been given does not change the cache.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ProductCache
+{
+  /**
+   * A cached lookup, product is null if there is no such product
+   */
+  static class Cached
+  {
+    private final Product theProduct;
+    private final long    theExpires;
+
+    private Cached( Product aProduct, long expires )
+    {
+      theProduct = aProduct;
+      theExpires = expires;
+    }
+
+    /**
+     * @return copy of the product or null if no such product
+     */
+    Product getProduct()
+    {
+      return copy( theProduct );
+    }
+  }
+
+  private final int  theSize;                   // Max entries
+  private final long theTTL;                    // ms
+  private final Map<String,Cached> theEntries;   // LRU order
+  private long       theInvalidations = 0;      // Changes seen
+
+  private final AtomicLong theHits   = new AtomicLong();
+  private final AtomicLong theMisses = new AtomicLong();
+
+  /**
+   * Create a cache
+   * @param size Maximum number of products held
+   * @param ttl  How long (ms) a product is held before read again
+   */
+  public ProductCache( int size, long ttl )
+  {
+    theSize    = size;
+    theTTL     = ttl;
+    theEntries = new LinkedHashMap<String,Cached>( 16, 0.75f, true )
+    {
+      private static final long serialVersionUID = 1;
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String,Cached> e )
+      {
+        return size() > theSize;
+      }
+    };
+  }
+
+  /**
+   * Return the cached lookup of the product
+   * @param pNum Product number
+   * @return the entry or null if not cached
+   */
+  synchronized Cached get( String pNum )
+  {
+    Cached entry = theEntries.get( pNum );
+    if ( entry != null && entry.theExpires < System.currentTimeMillis() )
+    {
+      theEntries.remove( pNum );
+      entry = null;
+    }
+    ( entry == null ? theMisses : theHits ).incrementAndGet();
+    return entry;
+  }
+
+  /**
+   * Returns a token to give to put(), taken before the
+   *  product is read from the stock list
+   * @return the token
+   */
+  synchronized long startRead()
+  {
+    return theInvalidations;
+  }
+
+  /**
+   * Remember the product read from the stock list, unless a
+   *  product was changed while it was being read, as what was
+   *  read may then be out of date.
+   * @param pNum    Product number
+   * @param product Product or null if no such product
+   * @param token   from startRead()
+   */
+  synchronized void put( String pNum, Product product, long token )
+  {
+    if ( token == theInvalidations )
+      theEntries.put( pNum, new Cached( copy( product ),
+                                       System.currentTimeMillis() + theTTL ) );
+  }
+
+  /**
+   * Forget the product as it has been changed
+   * @param pNum Product number
+   */
+  synchronized void invalidate( String pNum )
+  {
+    theInvalidations++;
+    theEntries.remove( pNum );
+  }
+
+  /**
+   * Returns the hits and misses of the cache
+   * @return description of cache use
+   */
+  public synchronized String statistics()
+  {
+    long hits   = theHits.get();
+    long misses = theMisses.get();
+    return String.format( "size %d/%d hits %d misses %d (%.1f%% hit)",
+                          theEntries.size(), theSize, hits, misses,
+                          hits + misses == 0 ? 0.0
+                                             : 100.0 * hits / ( hits + misses ) );
+  }
+
+  public long getHits()   { return theHits.get(); }
+  public long getMisses() { return theMisses.get(); }
+
+  private static Product copy( Product pr )
+  {
+    return pr == null ? null
+                      : Product.ofMinor( pr.getProductNum(), pr.getDescription(),
+                                         pr.getPriceMinor(), pr.getQuantity() );
+  }
+}
@@ -0,0 +1,141 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the ProductCache class, used through CachedStockRW
+ *  in front of a stock list held in memory
+ */
+public class ProductCacheTest
+{
+  private static final long NEVER = 3600000;        // ms
+  private static final long TTL   = 200;            // ms
+
+  private MemoryStockRW theStock = null;
+
+  @Before
+  public void setUp()
+  {
+    theStock = new MemoryStockRW();
+    theStock.put( "C001", 100, 10 );
+    theStock.put( "C002", 200, 20 );
+    theStock.put( "C003", 300, 30 );
+  }
+
+  @Test
+  public void testHit() throws Exception
+  {
+    ProductCache  cache  = new ProductCache( 10, NEVER );
+    CachedStockRW cached = new CachedStockRW( theStock, cache );
+    assertEquals( "level", 10, cached.getDetails( "C001" ).getQuantity() );
+    theStock.put( "C001", 100, 5 );                 // Not through the cache
+    assertEquals( "not cached", 10, cached.getDetails( "C001" ).getQuantity() );
+    assertEquals( "misses", 1, cache.getMisses() );
+    assertEquals( "hits",   1, cache.getHits() );
+
+    cached.getDetails( "C001" ).setQuantity( 99 );  // A copy
+    assertEquals( "cache changed by user", 10,
+                  cached.getDetails( "C001" ).getQuantity() );
+
+    assertFalse( "unknown product", cached.exists( "C999" ) );
+    assertFalse( "unknown product", cached.exists( "C999" ) );
+    assertEquals( "unknown product not remembered", 2, cache.getMisses() );
+  }
+
+  @Test
+  public void testChangesInvalidate() throws Exception
+  {
+    ProductCache  cache  = new ProductCache( 10, NEVER );
+    CachedStockRW cached = new CachedStockRW( theStock, cache );
+    cached.getDetails( "C001" );
+    cached.getDetails( "C002" );
+
+    assertTrue( "not bought", cached.buyStock( "C001", 1 ) );
+    assertEquals( "after buy", 9, cached.getDetails( "C001" ).getQuantity() );
+    cached.addStock( "C001", 5 );
+    assertEquals( "after restock", 14, cached.getDetails( "C001" ).getQuantity() );
+
+    Basket b = new Basket();
+    b.add( Product.ofMinor( "C001", "", 100, 4 ) );
+    b.add( Product.ofMinor( "C002", "", 200, 2 ) );
+    assertTrue( "basket not bought", cached.buyBasket( b ).isEmpty() );
+    assertEquals( "after basket", 10, cached.getDetails( "C001" ).getQuantity() );
+    assertEquals( "after basket", 18, cached.getDetails( "C002" ).getQuantity() );
+
+    Product pr = cached.getDetails( "C002" );
+    pr.setDescription( "Changed" );
+    cached.modifyStock( pr );
+    assertEquals( "after modify", "Changed",
+                  cached.getDetails( "C002" ).getDescription() );
+
+    assertFalse( "unknown product", cached.exists( "C004" ) );
+    cached.modifyStock( Product.ofMinor( "C004", "New", 400, 4 ) );
+    assertTrue( "added product", cached.exists( "C004" ) );
+  }
+
+  @Test
+  public void testFailedChangeInvalidates() throws Exception
+  {
+    ProductCache  cache  = new ProductCache( 10, NEVER );
+    CachedStockRW cached = new CachedStockRW( theStock, cache );
+    cached.getDetails( "C001" );
+    theStock.put( "C001", 100, 7 );                 // Changed elsewhere
+    theStock.setFailing( true );
+    try
+    {
+      cached.buyStock( "C001", 1 );
+    } catch ( StockException e )
+    {
+      // Expected
+    }
+    theStock.setFailing( false );
+    assertEquals( "stale product kept", 7, cached.getDetails( "C001" ).getQuantity() );
+  }
+
+  /**
+   * What is read while a product changes may be out of date,
+   *  so is not kept
+   */
+  @Test
+  public void testChangedWhileRead()
+  {
+    ProductCache cache = new ProductCache( 10, NEVER );
+    long token = cache.startRead();
+    cache.invalidate( "C002" );                     // Another product
+    cache.put( "C001", Product.ofMinor( "C001", "", 100, 10 ), token );
+    assertNull( "kept", cache.get( "C001" ) );
+
+    token = cache.startRead();
+    cache.put( "C001", Product.ofMinor( "C001", "", 100, 10 ), token );
+    assertEquals( "not kept", 10, cache.get( "C001" ).getProduct().getQuantity() );
+  }
+
+  @Test
+  public void testExpiryAndSize() throws Exception
+  {
+    ProductCache  cache  = new ProductCache( 2, TTL );
+    CachedStockRW cached = new CachedStockRW( theStock, cache );
+    cached.getDetails( "C001" );
+    cached.getDetails( "C002" );
+    cached.getDetails( "C001" );                    // Used last
+    cached.getDetails( "C003" );                    // C002 removed
+    assertEquals( "misses", 3, cache.getMisses() );
+    cached.getDetails( "C001" );
+    assertEquals( "used last removed", 3, cache.getMisses() );
+    cached.getDetails( "C002" );
+    assertEquals( "least used kept", 4, cache.getMisses() );
+
+    Thread.sleep( 2 * TTL );
+    theStock.put( "C001", 100, 3 );
+    assertEquals( "expired product used", 3,
+                  cached.getDetails( "C001" ).getQuantity() );
+  }
+}
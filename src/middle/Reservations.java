@@ -0,0 +1,347 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+import debug.DEBUG;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Stock reserved is not taken from the stock list, it is only recorded
+// here, with the total reserved of each product. The stock list only
+// changes when a reservation is bought, so if the program ends, however
+// it ends, only the reservations are lost, never the stock.
+// ReservingStockR takes the stock reserved from the stock levels it
+// returns, and ReservingStockRW will not sell it to anyone else.
+// Checking the stock level and buying are done under the lock of the
+// product's stripe, held alone when any of the product is reserved,
+// shared otherwise, so buying an unreserved product does not wait.
+// A reservation is owned by whoever removes it from the table, so it
+// is either bought or cancelled, never both.
+// The stripes are locked before the products are held (StockEvents).
+
+/**
+ * Short lived reservations of stock, made when a product is
+ *  checked and bought when the customer buys it.
+ * How long a reservation is held (ms) is set by the system
+ *  property catshop.reserve.ttl
+ * @author  Mike Smith University of Brighton
+ * @version 2.0
+ */
+
+class Reservations
+{
+  private static final long TTL =
+    Long.getLong( "catshop.reserve.ttl", 120000 );
+  private static final int  STRIPES = 64;
+
+  private static final AtomicLong theIds = new AtomicLong();
+  private static final Map<Long,Reservation> theTable =
+    new ConcurrentHashMap<>();
+  private static final Map<String,Integer> theReserved =  // Per product
+    new ConcurrentHashMap<>();
+  private static final ReentrantReadWriteLock[] theLocks =
+    new ReentrantReadWriteLock[ STRIPES ];
+
+  static
+  {
+    for ( int i = 0; i < STRIPES; i++ )
+      theLocks[i] = new ReentrantReadWriteLock();
+    ScheduledExecutorService sweeper =
+      Executors.newSingleThreadScheduledExecutor( r -> {
+        Thread t = new Thread( r, "Reservations expire" );
+        t.setDaemon( true );
+        return t;
+      } );
+    long every = Math.max( 100, TTL / 4 );
+    sweeper.scheduleWithFixedDelay( Reservations::expire, every, every,
+                                    TimeUnit.MILLISECONDS );
+  }
+
+  private Reservations() {}
+
+  /**
+   * Stock held for a customer
+   */
+  private static class Reservation
+  {
+    private final String thePNum;
+    private final int    theAmount;
+    private final long   theExpires;
+
+    private Reservation( String pNum, int amount )
+    {
+      thePNum    = pNum;
+      theAmount  = amount;
+      theExpires = System.currentTimeMillis() + TTL;
+    }
+  }
+
+  /**
+   * Reserve stock, the stock list is not changed
+   * @param stock  Stock list, its levels not less any reserved
+   * @param pNum   Product number
+   * @param amount Amount to reserve
+   * @return reservation number, 0 if not enough stock
+   * @throws StockException if issue
+   */
+  static long reserve( StockReadWriter stock, String pNum, int amount )
+         throws StockException
+  {
+    String key = pNum.trim();
+    List<Lock> locked = lock( alone( key ) );
+    try
+    {
+      if ( amount <= 0 || level( stock, key ) - reserved( key ) < amount )
+        return 0;
+      long id = theIds.incrementAndGet();
+      theTable.put( id, new Reservation( key, amount ) );
+      theReserved.merge( key, amount, Integer::sum );
+      DEBUG.trace( "Reservations: %d %s %d", id, key, amount );
+      return id;
+    } finally
+    {
+      unlock( locked );
+    }
+  }
+
+  /**
+   * Buy the stock reserved, only now is the stock list changed
+   * @param stock Stock list, its levels not less any reserved
+   * @param id    reservation number
+   * @return true if bought, false if no longer reserved
+   * @throws StockException if issue
+   */
+  static boolean buy( StockReadWriter stock, long id ) throws StockException
+  {
+    Reservation r = theTable.get( id );
+    if ( r == null ) return false;                  // Expired
+    List<Lock> locked = lock( alone( r.thePNum ) );
+    try
+    {
+      if ( ! theTable.remove( id, r ) ) return false; // Expired meanwhile
+      release( r );
+      if ( level( stock, r.thePNum ) - reserved( r.thePNum ) < r.theAmount )
+        return false;                               // Stock list changed
+      return stock.buyStock( r.thePNum, r.theAmount );
+    } finally
+    {
+      unlock( locked );
+    }
+  }
+
+  /**
+   * Cancel a reservation, the stock list is not changed
+   * @param id reservation number
+   */
+  static void cancel( long id )
+  {
+    Reservation r = theTable.remove( id );
+    if ( r != null ) release( r );
+  }
+
+  /**
+   * Buy stock that is not reserved
+   * @param stock  Stock list, its levels not less any reserved
+   * @param pNum   Product number
+   * @param amount Amount to buy
+   * @return true if bought, false if not enough unreserved stock
+   * @throws StockException if issue
+   */
+  static boolean buyStock( StockReadWriter stock, String pNum, int amount )
+         throws StockException
+  {
+    String key = pNum.trim();
+    List<Lock> locked = lockToBuy( Collections.singletonList( key ) );
+    try
+    {
+      int held = reserved( key );
+      if ( held > 0 && level( stock, key ) - held < amount ) return false;
+      return stock.buyStock( pNum, amount );
+    } finally
+    {
+      unlock( locked );
+    }
+  }
+
+  /**
+   * Buy a basket of stock that is not reserved, all or nothing
+   * @param stock  Stock list, its levels not less any reserved
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   * @throws StockException if issue
+   */
+  static List<Product> buyBasket( StockReadWriter stock, Basket bought )
+         throws StockException
+  {
+    Map<String,Integer> wanted = new LinkedHashMap<>();
+    for ( Product pr : bought )
+      wanted.merge( pr.getProductNum().trim(), pr.getQuantity(),
+                    Integer::sum );
+    List<Lock> locked = lockToBuy( wanted.keySet() );
+    try
+    {
+      List<String> held = new ArrayList<>();
+      for ( String key : wanted.keySet() )
+        if ( reserved( key ) > 0 ) held.add( key );
+      if ( ! held.isEmpty() )
+      {
+        Map<String,Product> levels = stock.getDetails( held );
+        List<Product> unfilled = new ArrayList<>();
+        for ( Product pr : bought )
+        {
+          String  key = pr.getProductNum().trim();
+          Product now = levels.get( key );
+          if ( held.contains( key ) &&
+               ( now == null ||
+                 now.getQuantity() - reserved( key ) < wanted.get( key ) ) )
+            unfilled.add( pr );
+        }
+        if ( ! unfilled.isEmpty() ) return unfilled;
+      }
+      return stock.buyBasket( bought );
+    } finally
+    {
+      unlock( locked );
+    }
+  }
+
+  /**
+   * @param pNum Product number
+   * @return the amount of the product reserved, may be changing
+   */
+  static int reserved( String pNum )
+  {
+    return theReserved.getOrDefault( pNum.trim(), 0 );
+  }
+
+  /**
+   * @return the most reserved of any one product, may be changing
+   */
+  static int mostReserved()
+  {
+    int most = 0;
+    for ( int held : theReserved.values() )
+      most = Math.max( most, held );
+    return most;
+  }
+
+  /**
+   * @return the number of products reserved, may be changing
+   */
+  static int productsReserved()
+  {
+    return theReserved.size();
+  }
+
+  /**
+   * Take the stock reserved from the stock level of the product
+   * @param pr Product, changed
+   * @return the product
+   */
+  static Product available( Product pr )
+  {
+    int held = reserved( pr.getProductNum() );
+    if ( held > 0 )
+      pr.setQuantity( Math.max( 0, pr.getQuantity() - held ) );
+    return pr;
+  }
+
+  /**
+   * Cancel the expired reservations
+   */
+  private static void expire()
+  {
+    long now = System.currentTimeMillis();
+    for ( Map.Entry<Long,Reservation> e : theTable.entrySet() )
+      if ( e.getValue().theExpires <= now &&
+           theTable.remove( e.getKey(), e.getValue() ) )
+      {
+        DEBUG.trace( "Reservations: %d expired", e.getKey() );
+        release( e.getValue() );
+      }
+  }
+
+  private static void release( Reservation r )
+  {
+    theReserved.computeIfPresent( r.thePNum, ( k, held ) ->
+      held > r.theAmount ? held - r.theAmount : null );
+  }
+
+  private static int level( StockReadWriter stock, String pNum )
+          throws StockException
+  {
+    return stock.lookup( pNum ).map( Product::getQuantity ).orElse( 0 );
+  }
+
+  /**
+   * Lock the stripes of the products to buy them, alone for
+   *  those with stock reserved, else shared. Locked again if
+   *  stock is reserved before the stripes are locked.
+   */
+  private static List<Lock> lockToBuy( Collection<String> pNums )
+  {
+    while ( true )
+    {
+      Map<Integer,Boolean> stripes = new TreeMap<>();
+      for ( String pNum : pNums )
+        stripes.merge( stripe( pNum ), reserved( pNum ) > 0,
+                       Boolean::logicalOr );
+      List<Lock> locked = lock( stripes );
+      boolean    ok     = true;
+      for ( String pNum : pNums )
+        if ( ! stripes.get( stripe( pNum ) ) && reserved( pNum ) > 0 )
+          ok = false;                             // Reserved meanwhile
+      if ( ok ) return locked;
+      unlock( locked );
+    }
+  }
+
+  private static Map<Integer,Boolean> alone( String pNum )
+  {
+    Map<Integer,Boolean> stripes = new TreeMap<>();
+    stripes.put( stripe( pNum ), true );
+    return stripes;
+  }
+
+  /**
+   * Lock the stripes in order, so that no two threads wait
+   *  for each other
+   * @param stripes Stripe to whether it is locked alone
+   */
+  private static List<Lock> lock( Map<Integer,Boolean> stripes )
+  {
+    List<Lock> locked = new ArrayList<>();
+    for ( Map.Entry<Integer,Boolean> e : stripes.entrySet() )
+    {
+      ReentrantReadWriteLock rw = theLocks[ e.getKey() ];
+      Lock l = e.getValue() ? rw.writeLock() : rw.readLock();
+      l.lock();
+      locked.add( l );
+    }
+    return locked;
+  }
+
+  private static void unlock( List<Lock> locked )
+  {
+    for ( int i = locked.size() - 1; i >= 0; i-- )
+      locked.get( i ).unlock();
+  }
+
+  private static int stripe( String pNum )
+  {
+    return ( pNum.trim().hashCode() & 0x7fffffff ) % STRIPES;
+  }
+}
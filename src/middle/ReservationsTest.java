@@ -0,0 +1,109 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test of the stock reservations, made through
+ *  ReservingStockRW in front of a stock list held in memory
+ */
+public class ReservationsTest
+{
+  private static final long TTL  = 500;             // ms, reservation held
+  private static final long WAIT = 5000;            // For an expiry, ms
+
+  static                                            // Before Reservations
+  {                                                 //  is loaded
+    System.setProperty( "catshop.reserve.ttl", Long.toString( TTL ) );
+  }
+
+  private final MemoryStockRW theStock = new MemoryStockRW();
+  private final ReservingStockRW theRes = new ReservingStockRW( theStock );
+
+  @Test
+  public void testReserveThenBuy() throws Exception
+  {
+    theStock.put( "R001", 100, 10 );
+    long id = theRes.reserveStock( "R001", 4 );
+    assertTrue( "not reserved", id > 0 );
+    assertEquals( "reserved shown", 6, theRes.getDetails( "R001" ).getQuantity() );
+    assertEquals( "stock list changed", 10, theStock.level( "R001" ) );
+    assertEquals( "more than unreserved", 0, theRes.reserveStock( "R001", 7 ) );
+
+    assertFalse( "reserved stock bought", theRes.buyStock( "R001", 7 ) );
+    assertEquals( "level after refusal", 10, theStock.level( "R001" ) );
+    assertTrue( "unreserved not bought", theRes.buyStock( "R001", 6 ) );
+    assertEquals( "level", 4, theStock.level( "R001" ) );
+
+    assertTrue( "reservation not bought", theRes.buyReserved( id ) );
+    assertEquals( "level", 0, theStock.level( "R001" ) );
+    assertFalse( "bought twice", theRes.buyReserved( id ) );
+  }
+
+  @Test
+  public void testBasketUnreservedTooLow() throws Exception
+  {
+    theStock.put( "R002", 100, 5 );
+    theStock.put( "R003", 100, 5 );
+    long id = theRes.reserveStock( "R002", 3 );
+    assertTrue( "not reserved", id > 0 );
+
+    List<Product> unfilled = theRes.buyBasket( basket( 3, 1 ) );
+    assertEquals( "lines unfilled", 1, unfilled.size() );
+    assertEquals( "wrong line", "R002", unfilled.get( 0 ).getProductNum() );
+    assertEquals( "reserved line bought", 5, theStock.level( "R002" ) );
+    assertEquals( "other line bought", 5, theStock.level( "R003" ) );
+
+    assertTrue( "basket not bought", theRes.buyBasket( basket( 2, 1 ) ).isEmpty() );
+    assertEquals( "level", 3, theStock.level( "R002" ) );
+    assertEquals( "level", 4, theStock.level( "R003" ) );
+    assertTrue( "reservation not bought", theRes.buyReserved( id ) );
+    assertEquals( "level", 0, theStock.level( "R002" ) );
+  }
+
+  @Test
+  public void testCancel() throws Exception
+  {
+    theStock.put( "R004", 100, 3 );
+    long id = theRes.reserveStock( "R004", 3 );
+    assertTrue( "not reserved", id > 0 );
+    assertFalse( "reserved stock bought", theRes.buyStock( "R004", 1 ) );
+    theRes.cancelReservation( id );
+    assertEquals( "still reserved", 3, theRes.getDetails( "R004" ).getQuantity() );
+    assertFalse( "cancelled reservation bought", theRes.buyReserved( id ) );
+    assertTrue( "stock not freed", theRes.buyStock( "R004", 3 ) );
+  }
+
+  @Test
+  public void testExpiry() throws Exception
+  {
+    theStock.put( "R005", 100, 3 );
+    long id = theRes.reserveStock( "R005", 2 );
+    assertTrue( "not reserved", id > 0 );
+    assertEquals( "reserved shown", 1, theRes.getDetails( "R005" ).getQuantity() );
+
+    long until = System.currentTimeMillis() + WAIT;
+    while ( Reservations.reserved( "R005" ) > 0 &&
+            System.currentTimeMillis() < until )
+      Thread.sleep( 20 );
+    assertEquals( "not expired", 3, theRes.getDetails( "R005" ).getQuantity() );
+    assertFalse( "expired reservation bought", theRes.buyReserved( id ) );
+    assertEquals( "stock list changed", 3, theStock.level( "R005" ) );
+    assertTrue( "stock not freed", theRes.buyStock( "R005", 3 ) );
+  }
+
+  private Basket basket( int first, int second )
+  {
+    Basket b = new Basket();
+    b.add( Product.ofMinor( "R002", "First",  100, first ) );
+    b.add( Product.ofMinor( "R003", "Second", 100, second ) );
+    return b;
+  }
+}
@@ -0,0 +1,140 @@
+package middle;
+
+import catalogue.Product;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read access to the stock list, the stock levels returned
+ *  are less the stock reserved, see Reservations.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ReservingStockR implements StockReader
+{
+  private final StockReader theStock;           // Stock list
+
+  /**
+   * @param aStock Stock list read from
+   */
+  public ReservingStockR( StockReader aStock )
+  {
+    theStock = aStock;
+  }
+
+  /**
+   * Checks if the product exits in the stock list,
+   *  whether or not all its stock is reserved
+   * @param pNum Product number
+   * @return true if exists otherwise false
+   */
+  public boolean exists( String pNum ) throws StockException
+  {
+    return theStock.exists( pNum );
+  }
+
+  /**
+   * Returns details about the product in the stock list
+   * @param pNum Product number
+   * @return StockNumber, Description, Price, Quantity not reserved
+   */
+  public Product getDetails( String pNum ) throws StockException
+  {
+    return Reservations.available( theStock.getDetails( pNum ) );
+  }
+
+  /**
+   * Returns details about the product in the stock list
+   * @param pNum Product number
+   * @return StockNumber, Description, Price, Quantity not reserved
+   *         or empty if no such product
+   */
+  public Optional<Product> lookup( String pNum ) throws StockException
+  {
+    return theStock.lookup( pNum ).map( Reservations::available );
+  }
+
+  /**
+   * Returns details about many products in the stock list
+   * @param pNums Product numbers
+   * @return Map of product number to details, each quantity
+   *         less the stock reserved
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws StockException
+  {
+    Map<String,Product> res = theStock.getDetails( pNums );
+    res.values().forEach( Reservations::available );
+    return res;
+  }
+
+  /**
+   * Finds products by the words of their descriptions
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip, for later pages
+   * @param max   Most results to return
+   * @return Details of the products found, each quantity
+   *         less the stock reserved
+   */
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    List<Product> res = theStock.search( query, from, max );
+    res.forEach( Reservations::available );
+    return res;
+  }
+
+  /**
+   * Returns the products with least stock not reserved, so
+   *  a product may be low only because of the stock reserved.
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    List<Product> res = new ArrayList<>();
+    for ( Product pr : theStock.lowStock(
+                         below + Reservations.mostReserved(),
+                         max + Reservations.productsReserved() ) )
+      if ( Reservations.available( pr ).getQuantity() < below )
+        res.add( pr );
+    res.sort( Comparator.comparingInt( Product::getQuantity )
+                        .thenComparing( Product::getProductNum ) );
+    return res.size() > max ? new ArrayList<>( res.subList( 0, max ) ) : res;
+  }
+
+  /**
+   * Returns the products with a price in the range given
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first, each
+   *         quantity less the stock reserved
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    List<Product> res = theStock.priceRange( minPrice, maxPrice, max );
+    res.forEach( Reservations::available );
+    return res;
+  }
+
+  /**
+   * Returns an image of the product
+   * @param pNum Product number
+   * @return Image
+   */
+  public ImageIcon getImage( String pNum ) throws StockException
+  {
+    return theStock.getImage( pNum );
+  }
+}
@@ -0,0 +1,131 @@
+package middle;
+
+import catalogue.Basket;
+import catalogue.Product;
+
+import java.util.List;
+
+/**
+ * Read/write access to the stock list that keeps the stock
+ *  reserved (see Reservations) from other customers.
+ * The stock list is only changed when stock is bought.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ReservingStockRW extends ReservingStockR
+                              implements StockReadWriter
+{
+  private final StockReadWriter theStock;       // Stock list
+
+  /**
+   * @param aStock Stock list read from and written to
+   */
+  public ReservingStockRW( StockReadWriter aStock )
+  {
+    super( aStock );
+    theStock = aStock;
+  }
+
+  /**
+   * Customer buys stock, only if enough is not reserved.
+   * @param pNum Product number
+   * @param amount Amount of stock bought
+   * @return true if succeeds else false
+   */
+  public boolean buyStock( String pNum, int amount )
+         throws StockException
+  {
+    return Reservations.buyStock( theStock, pNum, amount );
+  }
+
+  /**
+   * Customer buys the whole basket, only if enough of every
+   *  line is not reserved.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    return Reservations.buyBasket( theStock, bought );
+  }
+
+  /**
+   * Adds stock (Re-stocks) to the store.
+   * @param pNum Product number
+   * @param amount Amount of stock to add
+   */
+  public void addStock( String pNum, int amount )
+         throws StockException
+  {
+    theStock.addStock( pNum, amount );
+  }
+
+  /**
+   * Modifies Stock details for a given product number,
+   *  the stock reserved is kept from the new stock level.
+   * @param detail Product details to change stocklist to
+   */
+  public void modifyStock( Product detail )
+         throws StockException
+  {
+    theStock.modifyStock( detail );
+  }
+
+  /**
+   * Modifies Stock details for each product in the list
+   * @param details Product details to change stocklist to
+   */
+  public void modifyStock( List<Product> details )
+         throws StockException
+  {
+    theStock.modifyStock( details );
+  }
+
+  /**
+   * Reserves stock not already reserved, the stock list is
+   *  not changed until the reservation is bought.
+   * @param pNum   Product number
+   * @param amount Amount of stock to reserve
+   * @return reservation number, 0 if not enough stock
+   */
+  public long reserveStock( String pNum, int amount )
+         throws StockException
+  {
+    return Reservations.reserve( theStock, pNum, amount );
+  }
+
+  /**
+   * Buys the stock reserved
+   * @param id reservation number
+   * @return true if bought, false if expired or cancelled
+   */
+  public boolean buyReserved( long id )
+         throws StockException
+  {
+    return Reservations.buy( theStock, id );
+  }
+
+  /**
+   * Cancels a reservation, the stock is free for others to buy
+   * @param id reservation number
+   */
+  public void cancelReservation( long id )
+         throws StockException
+  {
+    Reservations.cancel( id );
+  }
+
+  /**
+   * Customer gives back stock bought, it is added to the
+   *  stock list and recorded as a return.
+   * @param pNum Product number
+   * @param amount Quantity given back
+   */
+  public void returnStock( String pNum, int amount )
+         throws StockException
+  {
+    theStock.returnStock( pNum, amount );
+  }
+}
@@ -54,12 +54,15 @@ class Server
 
     try
     {
-      theStockR = new R_StockR(urlStockR);            // Stock R
+      MiddleFactory mf = new LocalMiddleFactory();    // Shared by all
+
+      theStockR = new R_StockR(mf.makeStockReader()); // Stock R
       Naming.rebind( urlStockR, theStockR );          //  bind to url
       System.out.println( "StockR  bound to: " +      //  Inform world
                            urlStockR );               //
 
-      theStockRW = new R_StockRW(urlStockRW);         // Stock RW
+      theStockRW =                                    // Stock RW
+        new R_StockRW(mf.makeStockReadWriter());      //
       Naming.rebind( urlStockRW, theStockRW );        //  bind to url
       System.out.println( "StockRW bound to: " +      //  Inform world
                            urlStockRW );              // 
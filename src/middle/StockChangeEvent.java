@@ -0,0 +1,75 @@
+package middle;
+
+import catalogue.Product;
+
+import java.io.Serializable;
+
+/**
+ * A change to the stock list, published after the change is committed.
+ * Events have a sequence number, increasing in the order published,
+ *  and say when and from which till the change was made.
+ * The MODIFIED events of a product are in the order the changes were
+ *  committed with its other events, so a listener applying them ends
+ *  with the stock level held, see StockEvents.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class StockChangeEvent implements Serializable
+{
+  private static final long serialVersionUID = 2;
+
+  /**
+   * The kind of change
+   */
+  public enum Kind
+  {
+    SOLD,           // Stock level reduced by amount
+    RESTOCKED,      // Stock level increased by amount
+    RETURNED,       // Stock level increased by amount given back
+    MODIFIED,       // Product details (and stock level) replaced
+    RESYNC          // Events were lost, re-read any state kept
+  }
+
+  private final long    theSeq;
+  private final Kind    theKind;
+  private final String  theProductNum;  // null for RESYNC
+  private final int     theAmount;      // SOLD/RESTOCKED/RETURNED
+  private final Product theProduct;     // MODIFIED, new details
+  private final long    theTime;        // ms since 1970
+  private final String  theTill;        // Host of the client, or local
+
+  public StockChangeEvent( long seq, Kind kind, String pNum,
+                           int amount, Product product )
+  {
+    this( seq, kind, pNum, amount, product,
+          System.currentTimeMillis(), null );
+  }
+
+  public StockChangeEvent( long seq, Kind kind, String pNum,
+                           int amount, Product product,
+                           long time, String till )
+  {
+    theSeq        = seq;
+    theKind       = kind;
+    theProductNum = pNum;
+    theAmount     = amount;
+    theProduct    = product;
+    theTime       = time;
+    theTill       = till;
+  }
+
+  public long    getSeq()        { return theSeq; }
+  public Kind    getKind()       { return theKind; }
+  public String  getProductNum() { return theProductNum; }
+  public int     getAmount()     { return theAmount; }
+  public Product getProduct()    { return theProduct; }
+  public long    getTime()       { return theTime; }
+  public String  getTill()       { return theTill; }
+
+  public String toString()
+  {
+    return String.format( "#%d %s %s %d", theSeq, theKind,
+                          theProductNum, theAmount );
+  }
+}
@@ -0,0 +1,359 @@
+package middle;
+
+import catalogue.Product;
+import debug.DEBUG;
+
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Changes to the stock list are published here by the stock list
+// implementations once committed, and passed on to the listeners.
+// Each listener has its own bounded queue and thread, so a slow
+// listener (for example one in another program reached by RMI) holds
+// up neither the sale nor the other listeners.
+// Events are numbered and published under a lock, so every listener
+// sees them in the same order.
+// The changes to a product are published in the order they were made
+// where that matters. A layer changing the stock list holds the
+// products changed, from before the change until it is published,
+// see changing() and replacing(). Amounts taken or added (SOLD,
+// RESTOCKED, RETURNED) are held shared, as they give the same stock
+// level in any order, so they may be published in another order than
+// made. Details replaced (MODIFIED), which set the stock level, are
+// held alone, so no amount made before is published after them, or
+// made after published before them. A product is held by one of
+// STRIPES locks, taken in order so that holds do not deadlock.
+// If a listener falls so far behind that
+// its queue fills, the events queued for it are thrown away and it is
+// sent a RESYNC event, telling it to read again any state it keeps.
+// A layer that changes the stock list on behalf of a sale it has
+// already published (such as HotStockRW) does so quietly.
+// An event says which till made the change, the host of the RMI
+// client calling, or for a call made in this program the system
+// property catshop.till.
+// Recorders (such as the sales ledger) must see every event, so are
+// called in the thread publishing, in order, and are never dropped.
+// A recorder must only queue the event, not wait.
+
+/**
+ * Publishes changes to the stock list to the listeners subscribed.
+ * There is one stream of changes for the program.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class StockEvents
+{
+  private static final int QUEUE =
+    Integer.getInteger( "catshop.events.queue", 1000 );
+
+  private static final String TILL =
+    System.getProperty( "catshop.till", "local" );
+  private static final int    STRIPES = 64;         // Product locks
+
+  private static final AtomicLong theIds = new AtomicLong();
+  private static final Map<Long,Subscriber> theSubscribers =
+    new ConcurrentHashMap<>();
+  private static final ThreadLocal<int[]> theQuiet =
+    ThreadLocal.withInitial( () -> new int[1] );
+  private static final List<StockListener> theRecorders =
+    new CopyOnWriteArrayList<>();
+  private static final ReentrantReadWriteLock[] theStripes =
+    new ReentrantReadWriteLock[ STRIPES ];
+  private static long theSeq = 0;           // Last published
+
+  static
+  {
+    for ( int i = 0; i < STRIPES; i++ )
+      theStripes[i] = new ReentrantReadWriteLock();
+  }
+
+  private StockEvents() {}
+
+  /**
+   * Products held while they are changed and the changes published,
+   *  released by close()
+   */
+  public static final class Held implements AutoCloseable
+  {
+    private final List<Lock> theLocks = new ArrayList<>();
+
+    private Held( Collection<String> pNums, boolean alone )
+    {
+      TreeSet<Integer> stripes = new TreeSet<>();   // In order, so
+      for ( String pNum : pNums )                   //  no deadlock
+        stripes.add( Math.floorMod( pNum.trim().hashCode(), STRIPES ) );
+      for ( int stripe : stripes )
+      {
+        Lock lock = alone ? theStripes[ stripe ].writeLock()
+                          : theStripes[ stripe ].readLock();
+        lock.lock();
+        theLocks.add( lock );
+      }
+    }
+
+    /**
+     * Release the products held
+     */
+    public void close()
+    {
+      for ( int i = theLocks.size() - 1; i >= 0; i-- )
+        theLocks.get( i ).unlock();
+      theLocks.clear();
+    }
+  }
+
+  /**
+   * Hold a product while an amount is taken from or added to its
+   *  stock and published. Others may do the same at the same time.
+   * @param pNum Product number
+   * @return the hold, to be closed once the change is published
+   */
+  public static Held changing( String pNum )
+  {
+    return new Held( Collections.singletonList( pNum ), false );
+  }
+
+  /**
+   * Hold products while amounts are taken from or added to their
+   *  stock and published. Others may do the same at the same time.
+   * @param pNums Product numbers
+   * @return the hold, to be closed once the changes are published
+   */
+  public static Held changing( Collection<String> pNums )
+  {
+    return new Held( pNums, false );
+  }
+
+  /**
+   * Hold products alone while their details are replaced and
+   *  published. Waits for changes being made to be published.
+   * A thread holding a product with changing() must not call this.
+   * @param pNums Product numbers
+   * @return the hold, to be closed once the changes are published
+   */
+  public static Held replacing( Collection<String> pNums )
+  {
+    return new Held( pNums, true );
+  }
+
+  /**
+   * A listener, its filter and its queue of events
+   */
+  private static class Subscriber implements Runnable
+  {
+    private final long                           theId;
+    private final StockListener                  theListener;
+    private final Set<String>                    theProducts; // null all
+    private final BlockingQueue<StockChangeEvent> theQueue =
+      new ArrayBlockingQueue<>( QUEUE );
+
+    private Subscriber( long id, StockListener l, Set<String> pNums )
+    {
+      theId       = id;
+      theListener = l;
+      theProducts = pNums;
+    }
+
+    private boolean wants( StockChangeEvent e )
+    {
+      return theProducts == null ||
+             e.getKind() == StockChangeEvent.Kind.RESYNC ||
+             theProducts.contains( e.getProductNum().trim() );
+    }
+
+    /**
+     * Queue the event, called in order of publication
+     */
+    private void offer( StockChangeEvent e )
+    {
+      if ( ! wants( e ) ) return;
+      if ( theQueue.offer( e ) ) return;
+      theQueue.clear();                             // Too far behind
+      DEBUG.traceA( "StockEvents: listener %d overflowed at #%d",
+                    theId, e.getSeq() );
+      theQueue.offer( new StockChangeEvent( e.getSeq(),
+                            StockChangeEvent.Kind.RESYNC, null, 0, null ) );
+    }
+
+    public void run()
+    {
+      try
+      {
+        while ( theSubscribers.get( theId ) == this )
+        {
+          StockChangeEvent e = theQueue.take();
+          if ( theSubscribers.get( theId ) != this ) break;
+          theListener.stockChanged( e );
+        }
+      } catch ( InterruptedException e )
+      {
+        // Unsubscribed
+      } catch ( Exception e )
+      {
+        DEBUG.traceA( "StockEvents: listener %d removed\n%s",
+                      theId, e.getMessage() );
+        theSubscribers.remove( theId );
+      }
+    }
+  }
+
+  /**
+   * Subscribe to changes to the stock list
+   * @param l     Listener, called on a thread of its own
+   * @param pNums Products of interest, null for all
+   * @return subscription number, used to unsubscribe
+   */
+  public static long subscribe( StockListener l, Collection<String> pNums )
+  {
+    Set<String> products = null;
+    if ( pNums != null )
+    {
+      products = new HashSet<>();
+      for ( String pNum : pNums )
+        products.add( pNum.trim() );
+    }
+    long id = theIds.incrementAndGet();
+    Subscriber s = new Subscriber( id, l, products );
+    theSubscribers.put( id, s );
+    Thread t = new Thread( s, "StockEvents " + id );
+    t.setDaemon( true );
+    t.start();
+    DEBUG.trace( "StockEvents: subscribe %d %s", id,
+                 products == null ? "all" : products );
+    return id;
+  }
+
+  /**
+   * Add a recorder, told of every change in the thread making it
+   * @param r Recorder, must not wait
+   */
+  public static void addRecorder( StockListener r )
+  {
+    theRecorders.add( r );
+  }
+
+  /**
+   * Stop a listener being told of changes
+   * @param id subscription number from subscribe()
+   */
+  public static void unsubscribe( long id )
+  {
+    Subscriber s = theSubscribers.remove( id );
+    if ( s != null )
+      s.theQueue.offer( new StockChangeEvent( 0,              // Wakes it
+                          StockChangeEvent.Kind.RESYNC, null, 0, null ) );
+  }
+
+  /**
+   * Customer bought stock
+   * @param pNum   Product number
+   * @param amount Amount bought
+   */
+  public static void sold( String pNum, int amount )
+  {
+    publish( StockChangeEvent.Kind.SOLD, pNum, amount, null );
+  }
+
+  /**
+   * Stock added
+   * @param pNum   Product number
+   * @param amount Amount added
+   */
+  public static void restocked( String pNum, int amount )
+  {
+    publish( StockChangeEvent.Kind.RESTOCKED, pNum, amount, null );
+  }
+
+  /**
+   * Stock given back by a customer
+   * @param pNum   Product number
+   * @param amount Amount given back
+   */
+  public static void returned( String pNum, int amount )
+  {
+    publish( StockChangeEvent.Kind.RETURNED, pNum, amount, null );
+  }
+
+  /**
+   * Product details, including the stock level, replaced
+   * @param detail New details
+   */
+  public static void modified( Product detail )
+  {
+    Product copy = Product.ofMinor( detail.getProductNum(),
+                                    detail.getDescription(),
+                                    detail.getPriceMinor(), detail.getQuantity() );
+    publish( StockChangeEvent.Kind.MODIFIED, detail.getProductNum(),
+             detail.getQuantity(), copy );
+  }
+
+  /**
+   * Stop publishing changes made by this thread,
+   *  must be followed by endQuiet()
+   */
+  public static void beginQuiet()
+  {
+    theQuiet.get()[0]++;
+  }
+
+  /**
+   * Publish changes made by this thread again
+   */
+  public static void endQuiet()
+  {
+    theQuiet.get()[0]--;
+  }
+
+  private static void publish( StockChangeEvent.Kind kind, String pNum,
+                               int amount, Product product )
+  {
+    if ( theQuiet.get()[0] > 0 ) return;
+    String till = till();
+    synchronized ( StockEvents.class )                 // One order for all
+    {
+      StockChangeEvent e =
+        new StockChangeEvent( ++theSeq, kind, pNum.trim(), amount, product,
+                              System.currentTimeMillis(), till );
+      for ( StockListener r : theRecorders )
+        try
+        {
+          r.stockChanged( e );
+        } catch ( Exception ex )
+        {
+          DEBUG.traceA( "StockEvents: recorder %s", ex.getMessage() );
+        }
+      for ( Subscriber s : theSubscribers.values() )
+        s.offer( e );
+    }
+  }
+
+  /**
+   * The till making the change
+   */
+  private static String till()
+  {
+    try
+    {
+      return RemoteServer.getClientHost();         // Called by RMI
+    } catch ( ServerNotActiveException e )
+    {
+      return TILL;                                 // Called locally
+    }
+  }
+}
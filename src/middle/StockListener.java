@@ -0,0 +1,19 @@
+package middle;
+
+/**
+  * Told of changes to the stock list.
+  * @author  Mike Smith University of Brighton
+  * @version 1.0
+  */
+
+public interface StockListener
+{
+  /**
+   * Called for each change, in order, on a thread belonging
+   *  to this listener.
+   * A listener that throws an exception is unsubscribed.
+   * @param event The change
+   * @throws Exception if the listener can no longer be told of changes
+   */
+  void stockChanged( StockChangeEvent event ) throws Exception;
+}
@@ -1,7 +1,10 @@
 package middle;
 
+import catalogue.Basket;
 import catalogue.Product;
 
+import java.util.List;
+
 /**
   * Interface for read/write access to the stock list.
   * @author  Mike Smith University of Brighton
@@ -20,6 +23,15 @@ public interface StockReadWriter extends StockReader
    */
   boolean buyStock(String pNum, int amount) throws StockException;
 
+  /**
+   * Customer buys every line of the basket as one transaction,
+   * either all the stock levels are decremented or none are.
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   * @throws middle.StockException if issue
+   */
+  List<Product> buyBasket(Basket bought) throws StockException;
+
   /**
    * Adds stock (Restocks) to store.
    * @param pNum Product number
@@ -36,4 +48,78 @@ public interface StockReadWriter extends StockReader
    */
   void modifyStock(Product detail) throws StockException;
 
+  /**
+   * Modifies Stock details for each product in the list,
+   *  e.g. the price file from head office.
+   * @param details Replace with these versions of the products
+   * @throws middle.StockException if issue
+   */
+  default void modifyStock(List<Product> details) throws StockException
+  {
+    for ( Product pr : details )
+      modifyStock( pr );
+  }
+
+  /**
+   * Reserves stock for a short time, see Reservations. The stock
+   * list is only changed when the reservation is bought, and only
+   * ReservingStockRW keeps reserved stock from other customers.
+   * @param pNum Product number
+   * @param amount Quantity of product
+   * @return reservation number, 0 if not enough stock
+   * @throws middle.StockException if issue
+   */
+  default long reserveStock(String pNum, int amount) throws StockException
+  {
+    return Reservations.reserve( this, pNum, amount );
+  }
+
+  /**
+   * Customer buys the stock reserved.
+   * @param id reservation number from reserveStock()
+   * @return true if bought, false if the reservation has expired
+   * @throws middle.StockException if issue
+   */
+  default boolean buyReserved(long id) throws StockException
+  {
+    return Reservations.buy( this, id );
+  }
+
+  /**
+   * Cancels the reservation, the stock list is not changed.
+   * @param id reservation number from reserveStock()
+   * @throws middle.StockException if issue
+   */
+  default void cancelReservation(long id) throws StockException
+  {
+    Reservations.cancel( id );
+  }
+
+  /**
+   * Customer gives back stock bought, it is added to the
+   *  stock list and recorded as a return, not a restock.
+   * @param pNum Product number
+   * @param amount Quantity given back
+   * @throws middle.StockException if issue
+   */
+  default void returnStock(String pNum, int amount) throws StockException
+  {
+    StockEvents.Held held = StockEvents.changing( pNum );
+    try
+    {
+      StockEvents.beginQuiet();
+      try
+      {
+        addStock( pNum, amount );
+      } finally
+      {
+        StockEvents.endQuiet();
+      }
+      StockEvents.returned( pNum, amount );
+    } finally
+    {
+      held.close();
+    }
+  }
+
 }
@@ -3,6 +3,10 @@ package middle;
 import catalogue.Product;
 
 import javax.swing.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
   * Interface for read access to the stock list.
@@ -29,6 +33,68 @@ public interface StockReader
    */
   
   Product getDetails(String pNum) throws StockException;
+
+  /**
+   * Returns details about the product in the stock list,
+   *  combining exists() and getDetails() in a single request
+   * @param pNum Product nymber
+   * @return StockNumber, Description, Price, Quantity
+   *         or empty if no such product
+   * @throws StockException if issue
+   */
+
+  Optional<Product> lookup(String pNum) throws StockException;
+
+  /**
+   * Returns details about many products in the stock list
+   *  in a single request
+   * @param pNums Product numbers
+   * @return Map of product number to StockNumber, Description, Price,
+   *         Quantity in the order asked for, unknown products are left out
+   * @throws StockException if issue
+   */
+
+  Map<String,Product> getDetails(Collection<String> pNums)
+          throws StockException;
+
+  /**
+   * Finds products by the words of their descriptions
+   * @param query Words, each matching the start of a word
+   *              of the description
+   * @param from  Number of results to skip, for later pages
+   * @param max   Most results to return
+   * @return StockNumber, Description, Price, Quantity of the
+   *         products found, best match first
+   * @throws StockException if issue
+   */
+
+  List<Product> search(String query, int from, int max)
+          throws StockException;
+
+  /**
+   * Returns the products with least stock, for reordering
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return StockNumber, Description, Price, Quantity of the
+   *         products, lowest stock level first
+   * @throws StockException if issue
+   */
+
+  List<Product> lowStock(int below, int max)
+          throws StockException;
+
+  /**
+   * Returns the cheapest products in a band of prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return StockNumber, Description, Price, Quantity of the
+   *         products, cheapest first
+   * @throws StockException if issue
+   */
+
+  List<Product> priceRange(long minPrice, long maxPrice, int max)
+          throws StockException;
   
   
   /**
@@ -39,4 +105,30 @@ public interface StockReader
    */
   
   ImageIcon getImage(String pNum) throws StockException;
+
+  /**
+   * Subscribe to changes to the stock list, made after they are
+   *  committed, see StockEvents
+   * @param l     Listener, told of each change in order
+   * @param pNums Products of interest, null for all
+   * @return subscription number, used to unsubscribe
+   * @throws StockException if issue
+   */
+
+  default long addStockListener(StockListener l, Collection<String> pNums)
+          throws StockException
+  {
+    return StockEvents.subscribe( l, pNums );
+  }
+
+  /**
+   * Stop a listener being told of changes to the stock list
+   * @param id subscription number from addStockListener()
+   * @throws StockException if issue
+   */
+
+  default void removeStockListener(long id) throws StockException
+  {
+    StockEvents.unsubscribe( id );
+  }
 }
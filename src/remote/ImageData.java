@@ -0,0 +1,43 @@
+package remote;
+
+import java.io.Serializable;
+
+/**
+ * A picture sent from the middle tier to a client.
+ * The picture is identified by a hash of its content,
+ *  the content (compressed image bytes) is only sent
+ *  if the client does not already hold a picture with that hash.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public class ImageData implements Serializable
+{
+  private static final long serialVersionUID = 1;
+
+  private final String theHash;      // Of the content
+  private final byte[] theBytes;     // null if client has it
+
+  public ImageData( String aHash, byte[] bytes )
+  {
+    theHash  = aHash;
+    theBytes = bytes;
+  }
+
+  /**
+   * @return hash identifying the content of the picture
+   */
+  public String getHash()
+  {
+    return theHash;
+  }
+
+  /**
+   * @return the compressed picture or null if not sent,
+   *         as the client already holds it
+   */
+  public byte[] getBytes()
+  {
+    return theBytes;
+  }
+}
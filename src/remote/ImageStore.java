@@ -0,0 +1,72 @@
+package remote;
+
+import debug.DEBUG;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Encodes pictures as PNG for sending to clients.
+ * The stock object returns the same ImageIcon while it holds the
+ *  picture in its cache, so each picture is only encoded and
+ *  hashed once.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+class ImageStore
+{
+  private static final Map<ImageIcon,ImageData> theEncoded =
+    Collections.synchronizedMap( new WeakHashMap<>() );
+
+  /**
+   * Return the picture to send to a client
+   * @param icon      The picture
+   * @param knownHash Hash of the picture the client holds, or null
+   * @return hash and bytes, bytes left out if the client holds them
+   *         or null if there is no picture
+   */
+  static ImageData get( ImageIcon icon, String knownHash )
+  {
+    if ( icon == null || icon.getIconWidth() <= 0 ) return null;
+    ImageData data = theEncoded.computeIfAbsent( icon, ImageStore::encode );
+    if ( data == null ) return null;
+    return data.getHash().equals( knownHash )
+           ? new ImageData( data.getHash(), null )
+           : data;
+  }
+
+  private static ImageData encode( ImageIcon icon )
+  {
+    BufferedImage image = new BufferedImage( icon.getIconWidth(),
+                                             icon.getIconHeight(),
+                                             BufferedImage.TYPE_INT_RGB );
+    Graphics2D g = image.createGraphics();
+    g.drawImage( icon.getImage(), 0, 0, null );
+    g.dispose();
+    try
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ImageIO.write( image, "png", out );
+      byte[] bytes = out.toByteArray();
+      StringBuilder hash = new StringBuilder();
+      for ( byte b : MessageDigest.getInstance( "SHA-1" ).digest( bytes ) )
+        hash.append( String.format( "%02x", b ) );
+      DEBUG.trace( "ImageStore: encoded %d bytes %s", bytes.length, hash );
+      return new ImageData( hash.toString(), bytes );
+    } catch ( IOException | NoSuchAlgorithmException e )
+    {
+      DEBUG.traceA( "ImageStore: %s", e.getMessage() );
+      return null;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package remote;
+
+import middle.StockChangeEvent;
+import middle.StockListener;
+
+import java.rmi.RemoteException;
+
+// Made by the client and passed to the middle tier, which calls it
+// for each change. The middle tier calls it from one thread per
+// listener so the changes arrive in order.
+
+/**
+ * Makes a listener in the client available to the middle tier.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+public class      R_StockListener
+       extends    java.rmi.server.UnicastRemoteObject
+       implements RemoteStockListener_I
+{
+  private static final long serialVersionUID = 1;
+  private final transient StockListener theListener;
+
+  /**
+   * Export the listener
+   * @param l The listener to tell of changes
+   * @throws java.rmi.RemoteException if issue
+   */
+  public R_StockListener( StockListener l )
+         throws RemoteException
+  {
+    theListener = l;
+  }
+
+  /**
+   * Tell the listener of the change, if it fails the
+   *  middle tier stops sending changes
+   * @param event The change
+   */
+  public void stockChanged( StockChangeEvent event )
+         throws RemoteException
+  {
+    try
+    {
+      theListener.stockChanged( event );
+    } catch ( Exception e )
+    {
+      throw new RemoteException( "Listener: " + e.getMessage(), e );
+    }
+  }
+}
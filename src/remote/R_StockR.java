@@ -3,13 +3,16 @@ package remote;
 import catalogue.Product;
 import dbAccess.StockR;
 import middle.StockException;
+import middle.StockReader;
 
 import javax.swing.*;
 import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-// There can only be 1 ResultSet opened per statement
-// so no simultaneous use of the statement object
-// hence the synchronized methods
+// The stock object uses a pool of connections so calls
+// from different clients are not serialised here
 
 /**
  * Implements Read access to the stock list,
@@ -22,12 +25,23 @@ public class      R_StockR
        implements RemoteStockR_I
 {
   private static final long serialVersionUID = 1;
-  private StockR aStockR = null;
+  private StockReader aStockR = null;
 
   public R_StockR( String url )
          throws RemoteException, StockException
   {
-    aStockR = new StockR();
+    this( new StockR() );
+  }
+
+  /**
+   * Make the stock object available remotely
+   * @param aStock The (middle tier) stock object to use
+   * @throws java.rmi.RemoteException if issue
+   */
+  public R_StockR( StockReader aStock )
+         throws RemoteException
+  {
+    aStockR = aStock;
   }
 
   /**
@@ -35,7 +49,7 @@ public class      R_StockR
    * @param pNum The product number
    * @return true if exists otherwise false
    */
-  public synchronized boolean exists( String pNum )
+  public boolean exists( String pNum )
          throws RemoteException, StockException
   {
     return aStockR.exists( pNum );
@@ -46,12 +60,74 @@ public class      R_StockR
    * @param pNum The product number
    * @return StockNumber, Description, Price, Quantity
    */
-  public synchronized Product getDetails( String pNum )
+  public Product getDetails( String pNum )
          throws RemoteException, StockException
   {
     return aStockR.getDetails( pNum );
   }
+
+  /**
+   * Returns details about the product in the stock list
+   *  in a single request
+   * @param pNum The product number
+   * @return StockNumber, Description, Price, Quantity
+   *         or null if no such product
+   */
+  public Product lookup( String pNum )
+         throws RemoteException, StockException
+  {
+    return aStockR.lookup( pNum ).orElse( null );
+  }
+
+  /**
+   * Returns details about many products in the stock list
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws RemoteException, StockException
+  {
+    return aStockR.getDetails( pNums );
+  }
   
+  /**
+   * Finds products by the words of their descriptions
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
+   */
+  public List<Product> search( String query, int from, int max )
+         throws RemoteException, StockException
+  {
+    return aStockR.search( query, from, max );
+  }
+
+  /**
+   * Returns the products with least stock
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   */
+  public List<Product> lowStock( int below, int max )
+         throws RemoteException, StockException
+  {
+    return aStockR.lowStock( below, max );
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws RemoteException, StockException
+  {
+    return aStockR.priceRange( minPrice, maxPrice, max );
+  }
+
   /**
    * Returns an image of the product
    * BUG However this will not work for distributed version
@@ -59,10 +135,47 @@ public class      R_StockR
    * @param pNum The product number
    * @return Image
    */
-  public synchronized ImageIcon getImage( String pNum )
+  public ImageIcon getImage( String pNum )
          throws RemoteException, StockException
   {
     return aStockR.getImage( pNum );
   }
 
+  /**
+   * Returns the picture of the product for sending to a client,
+   *  the bytes are only sent if the client does not hold them
+   * @param pNum The product number
+   * @param knownHash Hash of the picture the client holds, or null
+   * @return hash and bytes of the picture or null if none
+   */
+  public ImageData getImageData( String pNum, String knownHash )
+         throws RemoteException, StockException
+  {
+    return ImageStore.get( aStockR.getImage( pNum ), knownHash );
+  }
+
+  /**
+   * Subscribe a listener in a client to changes to the stock list,
+   *  the listener is unsubscribed if it can not be reached
+   * @param l The listener in the client
+   * @param pNums Products of interest, null for all
+   * @return subscription number, used to unsubscribe
+   */
+  public long addStockListener( RemoteStockListener_I l,
+                                Collection<String> pNums )
+         throws RemoteException, StockException
+  {
+    return aStockR.addStockListener( l::stockChanged, pNums );
+  }
+
+  /**
+   * Stop a listener in a client being told of changes
+   * @param id subscription number from addStockListener()
+   */
+  public void removeStockListener( long id )
+         throws RemoteException, StockException
+  {
+    aStockR.removeStockListener( id );
+  }
+
 }
@@ -1,15 +1,19 @@
 package remote;
 
+import catalogue.Basket;
 import catalogue.Product;
 import dbAccess.StockRW;
 import middle.StockException;
+import middle.StockReadWriter;
 
 import javax.swing.*;
 import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
-// There can only be 1 ResultSet opened per statement
-// so no simultaneous use of the statement object
-// hence the synchronized methods
+// The stock object uses a pool of connections so calls
+// from different clients are not serialised here
 
 /**
  * Implements Read/Write access to the stock list,
@@ -23,11 +27,11 @@ public class      R_StockRW
        implements RemoteStockRW_I
 {
   private static final long serialVersionUID = 1;
-  private StockRW aStockRW = null;
+  private StockReadWriter aStockRW = null;
 
   /**
    * All transactions are done via StockRW to ensure
-   * that a single connection to the database is used for all transactions
+   * that all transactions share the same pool of connections
    * @param url of remote object
    * @throws java.rmi.RemoteException if issue
    * @throws middle.StockException if issue
@@ -35,7 +39,18 @@ public class      R_StockRW
   public R_StockRW(String url)
          throws RemoteException, StockException
   {
-    aStockRW = new StockRW();
+    this( new StockRW() );
+  }
+
+  /**
+   * Make the stock object available remotely
+   * @param aStock The (middle tier) stock object to use
+   * @throws java.rmi.RemoteException if issue
+   */
+  public R_StockRW( StockReadWriter aStock )
+         throws RemoteException
+  {
+    aStockRW = aStock;
   }
   
   /**
@@ -44,7 +59,7 @@ public class      R_StockRW
    * @return true if product exists else false
    * @throws middle.StockException if underlying error
    */
-  public synchronized boolean exists( String pNum )
+  public boolean exists( String pNum )
          throws StockException
   {
     return aStockRW.exists( pNum );
@@ -56,19 +71,86 @@ public class      R_StockRW
    * @return StockNumber, Description, Price, Quantity
    * @throws middle.StockException if underlying error
    */
-  public synchronized Product getDetails( String pNum )
+  public Product getDetails( String pNum )
          throws StockException
   {
     return aStockRW.getDetails( pNum );
   }
 
+  /**
+   * Returns details about the product in the stock list
+   *  in a single request
+   * @param pNum The product number
+   * @return StockNumber, Description, Price, Quantity
+   *         or null if no such product
+   * @throws middle.StockException if underlying error
+   */
+  public Product lookup( String pNum )
+         throws StockException
+  {
+    return aStockRW.lookup( pNum ).orElse( null );
+  }
+
+  /**
+   * Returns details about many products in the stock list
+   * @param pNums The product numbers
+   * @return Map of product number to details, unknown products left out
+   * @throws middle.StockException if underlying error
+   */
+  public Map<String,Product> getDetails( Collection<String> pNums )
+         throws StockException
+  {
+    return aStockRW.getDetails( pNums );
+  }
+
+  /**
+   * Finds products by the words of their descriptions
+   * @param query Words, each matching the start of a word
+   * @param from  Number of results to skip
+   * @param max   Most results to return
+   * @return Details of the products found, best match first
+   * @throws middle.StockException if underlying error
+   */
+  public List<Product> search( String query, int from, int max )
+         throws StockException
+  {
+    return aStockRW.search( query, from, max );
+  }
+
+  /**
+   * Returns the products with least stock
+   * @param below Stock level, only products with less are returned
+   * @param max   Most products to return
+   * @return Details of the products, lowest stock level first
+   * @throws middle.StockException if underlying error
+   */
+  public List<Product> lowStock( int below, int max )
+         throws StockException
+  {
+    return aStockRW.lowStock( below, max );
+  }
+
+  /**
+   * Returns the cheapest products in a band of prices
+   * @param minPrice Lowest price, in pence
+   * @param maxPrice Highest price, in pence
+   * @param max      Most products to return
+   * @return Details of the products, cheapest first
+   * @throws middle.StockException if underlying error
+   */
+  public List<Product> priceRange( long minPrice, long maxPrice, int max )
+         throws StockException
+  {
+    return aStockRW.priceRange( minPrice, maxPrice, max );
+  }
+
   /**
    * Returns an image of the product in the stock list
    * @param pNum The product number
    * @return image
    * @throws middle.StockException if underlying error
    */
-  public synchronized ImageIcon getImage( String pNum )
+  public ImageIcon getImage( String pNum )
          throws StockException
   {
     return aStockRW.getImage( pNum );
@@ -85,19 +167,31 @@ public class      R_StockRW
   // Need to Fix
   //  What happens if can not commit data
   //
-  public synchronized boolean buyStock( String pNum, int amount )
+  public boolean buyStock( String pNum, int amount )
          throws StockException
   {
     return aStockRW.buyStock( pNum, amount );
   }
 
+  /**
+   * Buys every line of the basket in one transaction
+   * @param bought Products and quantities bought
+   * @return The lines that could not be filled, empty if all bought
+   * @throws middle.StockException if underlying error
+   */
+  public List<Product> buyBasket( Basket bought )
+         throws StockException
+  {
+    return aStockRW.buyBasket( bought );
+  }
+
   /**
    * Adds (Restocks) stock to the product list
    * @param pNum The product number
    * @param amount Quantity
    * @throws middle.StockException if underlying error
    */
-  public synchronized void addStock( String pNum, int amount )
+  public void addStock( String pNum, int amount )
          throws StockException
   {
     aStockRW.addStock( pNum, amount );
@@ -110,9 +204,106 @@ public class      R_StockRW
    * @param product The product to be modified
    * @throws middle.StockException if underlying error
    */
-  public synchronized void modifyStock( Product product )
+  public void modifyStock( Product product )
               throws StockException
   {
     aStockRW.modifyStock( product );
   }
+
+  /**
+   * Modifies Stock details for each product in the list
+   * @param products The products to be modified
+   * @throws middle.StockException if underlying error
+   */
+  public void modifyStock( List<Product> products )
+              throws StockException
+  {
+    aStockRW.modifyStock( products );
+  }
+
+  /**
+   * Reserves stock for a short time
+   * @param pNum The product number
+   * @param amount The amount to reserve
+   * @return reservation number, 0 if not enough stock
+   * @throws middle.StockException if underlying error
+   */
+  public long reserveStock( String pNum, int amount )
+         throws StockException
+  {
+    return aStockRW.reserveStock( pNum, amount );
+  }
+
+  /**
+   * Buys the stock reserved
+   * @param id reservation number
+   * @return true if bought, false if the reservation has expired
+   * @throws middle.StockException if underlying error
+   */
+  public boolean buyReserved( long id )
+         throws StockException
+  {
+    return aStockRW.buyReserved( id );
+  }
+
+  /**
+   * Cancels the stock reserved
+   * @param id reservation number
+   * @throws middle.StockException if underlying error
+   */
+  public void cancelReservation( long id )
+         throws StockException
+  {
+    aStockRW.cancelReservation( id );
+  }
+
+  /**
+   * Customer gives back stock bought
+   * @param pNum product number
+   * @param amount amount given back
+   * @throws middle.StockException if underlying error
+   */
+  public void returnStock( String pNum, int amount )
+         throws StockException
+  {
+    aStockRW.returnStock( pNum, amount );
+  }
+
+  /**
+   * Returns the picture of the product for sending to a client,
+   *  the bytes are only sent if the client does not hold them
+   * @param pNum The product number
+   * @param knownHash Hash of the picture the client holds, or null
+   * @return hash and bytes of the picture or null if none
+   */
+  public ImageData getImageData( String pNum, String knownHash )
+         throws StockException
+  {
+    return ImageStore.get( aStockRW.getImage( pNum ), knownHash );
+  }
+
+  /**
+   * Subscribe a listener in a client to changes to the stock list,
+   *  the listener is unsubscribed if it can not be reached
+   * @param l The listener in the client
+   * @param pNums Products of interest, null for all
+   * @return subscription number, used to unsubscribe
+   */
+  public long addStockListener( RemoteStockListener_I l,
+                                Collection<String> pNums )
+         throws StockException
+  {
+    return aStockRW.addStockListener( l::stockChanged, pNums );
+  }
+
+  /**
+   * Stop a listener in a client being told of changes
+   * @param id subscription number from addStockListener()
+   */
+  public void removeStockListener( long id )
+         throws StockException
+  {
+    aStockRW.removeStockListener( id );
+  }
+
 }
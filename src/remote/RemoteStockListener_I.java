@@ -0,0 +1,20 @@
+package remote;
+
+import middle.StockChangeEvent;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Defines the RMI interface of a listener, held by a client,
+ *  told of changes to the stock list.
+ * @author  Mike Smith University of Brighton
+ * @version 1.0
+ */
+
+public interface RemoteStockListener_I
+       extends Remote
+{
+  void stockChanged(StockChangeEvent event)
+       throws RemoteException;
+}
@@ -5,11 +5,13 @@
 
 package remote;
 
+import catalogue.Basket;
 import catalogue.Product;
 import middle.StockException;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Defines the RMI interface for read/write access to the stock object.
@@ -22,9 +24,21 @@ public interface RemoteStockRW_I
 {
   boolean buyStock(String number, int amount)
           throws RemoteException, StockException;
+  List<Product> buyBasket(Basket bought)
+          throws RemoteException, StockException;
   void    addStock(String number, int amount)
           throws RemoteException, StockException;
   void    modifyStock(Product detail)
           throws RemoteException, StockException;
+  void    modifyStock(List<Product> details)
+          throws RemoteException, StockException;
+  long    reserveStock(String number, int amount)
+          throws RemoteException, StockException;
+  boolean buyReserved(long id)
+          throws RemoteException, StockException;
+  void    cancelReservation(long id)
+          throws RemoteException, StockException;
+  void    returnStock(String number, int amount)
+          throws RemoteException, StockException;
 }
 
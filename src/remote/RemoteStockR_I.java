@@ -6,6 +6,9 @@ import middle.StockException;
 import javax.swing.*;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Defines the RMI interface for read access to the stock object.
@@ -20,7 +23,24 @@ public interface RemoteStockR_I
             throws RemoteException, StockException;
   Product   getDetails(String number)
             throws RemoteException, StockException;
+  Product   lookup(String number)
+            throws RemoteException, StockException;
+  Map<String,Product> getDetails(Collection<String> numbers)
+            throws RemoteException, StockException;
+  List<Product> search(String query, int from, int max)
+            throws RemoteException, StockException;
+  List<Product> lowStock(int below, int max)
+            throws RemoteException, StockException;
+  List<Product> priceRange(long minPrice, long maxPrice, int max)
+            throws RemoteException, StockException;
   ImageIcon getImage(String number)
             throws RemoteException, StockException;
+  ImageData getImageData(String number, String knownHash)
+            throws RemoteException, StockException;
+  long      addStockListener(RemoteStockListener_I l,
+                             Collection<String> numbers)
+            throws RemoteException, StockException;
+  void      removeStockListener(long id)
+            throws RemoteException, StockException;
 }
 